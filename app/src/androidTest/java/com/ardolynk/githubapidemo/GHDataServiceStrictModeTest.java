@@ -0,0 +1,163 @@
+package com.ardolynk.githubapidemo;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.StrictMode;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ServiceTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Loads lists with a strict policy on the main thread, so disk access or background work
+ * ({@link GHTrace#beginBackground(String)} sections) showing up there kills the test process</p>
+ * <p>Delivered pages are bound right away, as the activity does. Pages go from {@link StubGitHubServer},
+ * so the network path is checked offline as well</p>
+ */
+@RunWith(AndroidJUnit4.class)
+public class GHDataServiceStrictModeTest {
+
+    private final static String SEARCH_STRING = "strictmode";
+    private final static int ROW_COUNT = 40;
+    private final static long SNAPSHOT_TIMEOUT_SEC = 5;
+    private final static long NETWORK_TIMEOUT_SEC = 30;
+    private final static int RATE_LIMIT = 30;
+    private final static long RATE_WINDOW = 60 * 1000;
+    private final static int TOTAL_COUNT = 1000;
+
+    @Rule
+    public final ServiceTestRule mServiceRule = new ServiceTestRule();
+
+    private GHDataService mService;
+    private StubGitHubServer mServer;
+
+    @After
+    public void tearDown() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.setThreadPolicy(StrictMode.ThreadPolicy.LAX);
+                if (mService != null) {
+                    mService.setListListener(null);
+                    mService.setHostOverride(null);
+                }
+            }
+        });
+        if (mServer != null) {
+            mServer.stop();
+        }
+    }
+
+    @Test
+    public void restoreList_bindsSnapshotWithoutMainThreadWork() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        new GHListSnapshot(makeItems(ROW_COUNT), 2, true, SEARCH_STRING, new GHPagePlan(ROW_COUNT / 2, ROW_COUNT / 2))
+                .write(new File(context.getFilesDir(), GHDataService.SNAPSHOT_FILE));
+
+        final CountDownLatch delivered = new CountDownLatch(1);
+        startStrict(new Runnable() {
+            @Override
+            public void run() {
+                mService.restoreList(SEARCH_STRING);
+            }
+        }, GHDataService.FLAG_SNAPSHOT, delivered);
+        assertTrue(delivered.await(SNAPSHOT_TIMEOUT_SEC, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void startLoadingList_bindsPageWithoutMainThreadWork() throws Exception {
+        mServer = new StubGitHubServer(new GHRateLimiter.Clock() {
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+        }, RATE_LIMIT, RATE_WINDOW, TOTAL_COUNT);
+        mServer.start();
+
+        //A search not seen before, so the page is neither cached nor found in the local index
+
+        final String searchString = SEARCH_STRING + System.currentTimeMillis();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        startStrict(new Runnable() {
+            @Override
+            public void run() {
+                mService.setHostOverride(mServer.getUrl());
+                mService.startLoadingList(searchString);
+            }
+        }, 0, delivered);
+        assertTrue(delivered.await(NETWORK_TIMEOUT_SEC, TimeUnit.SECONDS));
+        assertTrue(mServer.getRequestCount() > 0);
+    }
+
+    /**
+     * Binds the service, then sets the strict policy and starts loading on the main thread
+     *
+     * @param flags Flags the awaited delivery has (besides others)
+     * @param delivered Counted down once a page with the flags is bound
+     */
+    private void startStrict(final Runnable start, final int flags, final CountDownLatch delivered)
+            throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mService = ((GHDataService.LocalBinder) mServiceRule.bindService(
+                new Intent(context, GHDataService.class))).getService();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final GHListAdapter adapter = new GHListAdapter(context, mService);
+                final ListView parent = new ListView(context);
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .detectCustomSlowCalls()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+                mService.setListListener(new GHDataService.ListListener() {
+                    @Override
+                    public void onListLoaded(List<GHData.Item> data, int pageNum, int resultFlags) {
+                        adapter.populateData(data, resultFlags, pageNum);
+                        View rowView = null;
+                        for (int position = 0; position < adapter.getCount() - 1; position++) {
+                            rowView = adapter.getView(position, rowView, parent);
+                        }
+                        if ((resultFlags & flags) == flags && (resultFlags & GHDataService.FLAG_ERROR) == 0
+                                && !data.isEmpty()) {
+                            delivered.countDown();
+                        }
+                    }
+                });
+                start.run();
+            }
+        });
+    }
+
+    private static List<GHData.Item> makeItems(int count) {
+        final List<GHData.Item> items = new ArrayList<GHData.Item>(count);
+        for (int i = 0; i < count; i++) {
+            final GHData.Item.Owner owner = new GHData.Item.Owner("owner" + i,
+                    "https://avatars.githubusercontent.com/u/" + (500000 + i) + "?v=4");
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName("project-" + i);
+            item.setStarCount(1000 - i);
+            item.setProjectURL("https://github.com/" + owner.getLogin() + "/" + item.getProjectName());
+            item.setOwner(owner);
+            items.add(item);
+        }
+        return items;
+    }
+}
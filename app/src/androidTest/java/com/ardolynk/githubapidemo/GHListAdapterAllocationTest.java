@@ -0,0 +1,100 @@
+package com.ardolynk.githubapidemo;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ServiceTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+import android.widget.ListView;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Measures bytes allocated by {@link GHListAdapter#getView(int, View, android.view.ViewGroup)} per bound
+ * row while a scripted fling recycles a screen of row views</p>
+ * <p>Allocated bytes are the runtime's count (<code>art.gc.bytes-allocated</code>), so allocations of other
+ * threads meanwhile are in it as well, the limit leaves room for them</p>
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 23)
+public class GHListAdapterAllocationTest {
+
+    private final static String BYTES_ALLOCATED = "art.gc.bytes-allocated";
+    private final static int ROW_COUNT = 600;
+    private final static int VISIBLE_ROWS = 12;
+
+    //The project name is the only string decoded for every row, the rest comes from caches
+
+    private final static long MAX_BYTES_PER_ROW = 256;
+
+    @Rule
+    public final ServiceTestRule mServiceRule = new ServiceTestRule();
+
+    @Test
+    public void fling_allocatesLittlePerRow() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final GHDataService service = ((GHDataService.LocalBinder) mServiceRule.bindService(
+                new Intent(context, GHDataService.class))).getService();
+        final long[] allocated = new long[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final GHListAdapter adapter = new GHListAdapter(context, service);
+                adapter.populateData(makeItems(ROW_COUNT), 0, 1);
+                final ListView parent = new ListView(context);
+                final View[] rowViews = new View[VISIBLE_ROWS];
+
+                //The first half inflates row views and warms up the code, the second one is measured
+
+                fling(adapter, parent, rowViews, 0, ROW_COUNT / 2);
+                final long allocatedBefore = getAllocatedBytes();
+                fling(adapter, parent, rowViews, ROW_COUNT / 2, ROW_COUNT);
+                allocated[0] = getAllocatedBytes() - allocatedBefore;
+            }
+        });
+
+        final long perRow = allocated[0] / (ROW_COUNT / 2);
+        assertTrue("Too many bytes allocated per row: " + perRow, perRow <= MAX_BYTES_PER_ROW);
+    }
+
+    private static long getAllocatedBytes() {
+        return Long.parseLong(Debug.getRuntimeStat(BYTES_ALLOCATED));
+    }
+
+    private static void fling(GHListAdapter adapter, ListView parent, View[] rowViews, int from, int to) {
+        for (int position = from; position < to; position++) {
+            final int slot = position % rowViews.length;
+            assertEquals(0, adapter.getItemViewType(position));
+            rowViews[slot] = adapter.getView(position, rowViews[slot], parent);
+        }
+    }
+
+    private static List<GHData.Item> makeItems(int count) {
+        final List<GHData.Item> items = new ArrayList<GHData.Item>(count);
+        for (int i = 0; i < count; i++) {
+
+            //Owners repeat every few rows like they do in real results
+
+            final GHData.Item.Owner owner = new GHData.Item.Owner("owner" + (i / 3),
+                    "https://avatars.githubusercontent.com/u/" + (500000 + i / 3) + "?v=4");
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName("project-" + i);
+            item.setStarCount(25000 - i * 7);
+            item.setProjectURL("https://github.com/" + owner.getLogin() + "/" + item.getProjectName());
+            item.setOwner(owner);
+            items.add(item);
+        }
+        return items;
+    }
+}
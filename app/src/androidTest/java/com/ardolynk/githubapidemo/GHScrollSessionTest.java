@@ -0,0 +1,288 @@
+package com.ardolynk.githubapidemo;
+
+import android.app.SearchManager;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.SdkSuppress;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.rule.ServiceTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v4.widget.SwipeRefreshLayout;
+import android.util.Log;
+import android.view.WindowManager;
+import android.widget.ListView;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Runs {@link GHActivity} against {@link StubGitHubServer} through a scripted session: a cold start,
+ * a fling through several pages, a search and a refresh, then a return to the first list (shown from
+ * the cache and revalidated with "304 Not Modified") and a search once the rate limit is used up
+ * (rejected with 403 until the window resets). Every phase is recorded by
+ * {@link GHSessionRecorder}, and the report is written to <code>session_report.json</code> in the
+ * external files directory of the app (and logged), to compare across builds</p>
+ * <p>Network conditions and the session are set by instrumentation arguments, e.g.
+ * <code>-e latency_ms 300 -e bandwidth 100000</code>:
+ *  <ul>
+ *      <li><code>latency_ms</code> delay before every response</li>
+ *      <li><code>bandwidth</code> response bytes per second of a connection (0 for no limit)</li>
+ *      <li><code>rate_limit</code> search requests allowed per minute</li>
+ *      <li><code>item_padding</code> bytes added to every search item</li>
+ *      <li><code>total_count</code> number of search results</li>
+ *      <li><code>fling_pages</code> number of pages to fling through</li>
+ *  </ul>
+ * </p>
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = 16)
+public class GHScrollSessionTest {
+
+    private final static String TAG = "GHScrollSession";
+    private final static String REPORT_FILE = "session_report.json";
+    private final static String SEARCH_STRING = "compiler";
+    private final static String RATE_LIMITED_SEARCH_STRING = "parser";
+    private final static long RATE_WINDOW = 60 * 1000;
+    private final static int AVATAR_SIZE = 96;
+    private final static int FLING_DURATION_MS = 250;
+    private final static long PHASE_TIMEOUT_SEC = 60;
+    private final static long RATE_LIMITED_MS = 5 * 1000;
+    private final static long BUDGET_POLL_MS = 500;
+
+    private final static String ARG_LATENCY = "latency_ms";
+    private final static String ARG_BANDWIDTH = "bandwidth";
+    private final static String ARG_RATE_LIMIT = "rate_limit";
+    private final static String ARG_ITEM_PADDING = "item_padding";
+    private final static String ARG_TOTAL_COUNT = "total_count";
+    private final static String ARG_FLING_PAGES = "fling_pages";
+
+    @Rule
+    public final ServiceTestRule mServiceRule = new ServiceTestRule();
+
+    @Rule
+    public final ActivityTestRule<GHActivity> mActivityRule = new ActivityTestRule<GHActivity>(GHActivity.class, false, false);
+
+    private GHDataService mService;
+
+    @Test
+    public void session_reportsWhatUserFeels() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+
+        //Nothing saved or cached by previous runs, so it's a cold start
+
+        deleteContents(context.getFilesDir());
+        deleteContents(context.getCacheDir());
+
+        final int latency = getArgument(ARG_LATENCY, 150);
+        final int bandwidth = getArgument(ARG_BANDWIDTH, 500 * 1024);
+        final int rateLimit = getArgument(ARG_RATE_LIMIT, 30);
+        final int itemPadding = getArgument(ARG_ITEM_PADDING, 0);
+        final int totalCount = getArgument(ARG_TOTAL_COUNT, 5000);
+        final int flingPages = getArgument(ARG_FLING_PAGES, 10);
+        final StubGitHubServer server = new StubGitHubServer(new GHRateLimiter.Clock() {
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+        }, rateLimit, RATE_WINDOW, totalCount);
+        server.setLatency(latency);
+        server.setBandwidth(bandwidth);
+        server.setItemPadding(itemPadding);
+        server.setAvatar(makeAvatar());
+        server.start();
+        try {
+            final GHSessionRecorder recorder = new GHSessionRecorder(InstrumentationRegistry.getInstrumentation(),
+                    server, getRefreshRate(context));
+            recorder.putConfig(ARG_LATENCY, latency);
+            recorder.putConfig(ARG_BANDWIDTH, bandwidth);
+            recorder.putConfig(ARG_RATE_LIMIT, rateLimit);
+            recorder.putConfig(ARG_ITEM_PADDING, itemPadding);
+            recorder.putConfig(ARG_TOTAL_COUNT, totalCount);
+            recorder.putConfig(ARG_FLING_PAGES, flingPages);
+
+            //The activity binds the same service instance, already sending requests to the stub
+
+            mService = ((GHDataService.LocalBinder) mServiceRule.bindService(
+                    new Intent(context, GHDataService.class))).getService();
+            mService.setHostOverride(server.getUrl());
+
+            runSession(recorder, server, flingPages);
+
+            final File directory = context.getExternalFilesDir(null);
+            final File reportFile = new File(directory != null ? directory : context.getFilesDir(), REPORT_FILE);
+            recorder.writeReport(reportFile);
+            Log.i(TAG, "Report written to " + reportFile + "\n" + recorder.getReport());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void runSession(GHSessionRecorder recorder, final StubGitHubServer server, final int flingPages)
+            throws Exception {
+
+        //Cold start: the time to the first row of the first page
+
+        recorder.startPhase("cold_start", new GHSessionRecorder.ReadyCheck() {
+            @Override
+            public boolean isReady(ListView listView) {
+                return (mService.getPageNum() > 0 && GHSessionRecorder.hasRows(listView));
+            }
+        }, null);
+        final GHActivity activity = mActivityRule.launchActivity(null);
+        final ListView listView = (ListView) activity.findViewById(R.id.list_view);
+        final SwipeRefreshLayout refreshLayout = (SwipeRefreshLayout) activity.findViewById(R.id.refresh_layout);
+        recorder.setListView(listView);
+        assertTrue("No rows on cold start", recorder.awaitReady(PHASE_TIMEOUT_SEC));
+        recorder.endPhase();
+
+        //Fling: the time to get through the pages, and the loading row shown on the way
+
+        recorder.startPhase("fling", new GHSessionRecorder.ReadyCheck() {
+            @Override
+            public boolean isReady(ListView view) {
+                return (mService.getPageNum() >= flingPages || !mService.hasNext());
+            }
+        }, null);
+        final long flingEnd = System.currentTimeMillis() + PHASE_TIMEOUT_SEC * 1000;
+        while (!recorder.isReady() && System.currentTimeMillis() < flingEnd) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    listView.smoothScrollBy(listView.getHeight() * 2, FLING_DURATION_MS);
+                }
+            });
+            Thread.sleep(FLING_DURATION_MS);
+        }
+        assertTrue("Pages not flung through", recorder.awaitReady(0));
+        recorder.endPhase();
+
+        //Search: the time to the first row found, as typed in the search view
+
+        recorder.startPhase("search", new GHSessionRecorder.ReadyCheck() {
+            @Override
+            public boolean isReady(ListView view) {
+                return (SEARCH_STRING.equals(mService.getRecentSearchString()) && !refreshLayout.isRefreshing()
+                        && GHSessionRecorder.hasRows(view));
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                activity.onNewIntent(new Intent(Intent.ACTION_SEARCH).putExtra(SearchManager.QUERY, SEARCH_STRING));
+            }
+        });
+        assertTrue("No rows found", recorder.awaitReady(PHASE_TIMEOUT_SEC));
+        recorder.endPhase();
+
+        //Refresh: the time to reload the shown pages, as pulled down
+
+        recorder.startPhase("refresh", new GHSessionRecorder.ReadyCheck() {
+            @Override
+            public boolean isReady(ListView view) {
+                return !refreshLayout.isRefreshing();
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                refreshLayout.setRefreshing(true);
+                mService.refreshList();
+            }
+        });
+        assertTrue("List not refreshed", recorder.awaitReady(PHASE_TIMEOUT_SEC));
+        recorder.endPhase();
+
+        //Revalidate: the first list again, its cached pages are shown and confirmed by "304 Not Modified"
+
+        awaitBudget(GHRateLimiter.Priority.PREFETCH);
+        final int notModifiedCount = server.getNotModifiedCount();
+        recorder.startPhase("revalidate", new GHSessionRecorder.ReadyCheck() {
+            @Override
+            public boolean isReady(ListView view) {
+                return ("".equals(mService.getRecentSearchString()) && GHSessionRecorder.hasRows(view)
+                        && server.getNotModifiedCount() > notModifiedCount);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                mService.startLoadingList("");
+            }
+        });
+        assertTrue("Cached list not revalidated", recorder.awaitReady(PHASE_TIMEOUT_SEC));
+        recorder.endPhase();
+
+        //Rate limited: a search while the app counts on budget the server has run out of, it's retried after the reset
+
+        awaitBudget(GHRateLimiter.Priority.VISIBLE);
+        final int rejectedCount = server.getRejectedCount();
+        server.exhaustRateLimit(RATE_LIMITED_MS);
+        recorder.startPhase("rate_limited", new GHSessionRecorder.ReadyCheck() {
+            @Override
+            public boolean isReady(ListView view) {
+                return (RATE_LIMITED_SEARCH_STRING.equals(mService.getRecentSearchString())
+                        && !refreshLayout.isRefreshing() && GHSessionRecorder.hasRows(view));
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                activity.onNewIntent(new Intent(Intent.ACTION_SEARCH)
+                        .putExtra(SearchManager.QUERY, RATE_LIMITED_SEARCH_STRING));
+            }
+        });
+        assertTrue("Nothing found after the rate limit reset", recorder.awaitReady(PHASE_TIMEOUT_SEC));
+        recorder.endPhase();
+        assertTrue("Search not rate limited", server.getRejectedCount() > rejectedCount);
+    }
+
+    /**
+     * Waits for the app to have rate limit budget for the work of the priority, so the next phase
+     * isn't held back by the phases before
+     */
+    private void awaitBudget(GHRateLimiter.Priority priority) throws InterruptedException {
+        final long end = System.currentTimeMillis() + RATE_WINDOW * 2;
+        while (mService.getRateLimiter().isLow(priority) && System.currentTimeMillis() < end) {
+            Thread.sleep(BUDGET_POLL_MS);
+        }
+        assertFalse("No rate limit budget", mService.getRateLimiter().isLow(priority));
+    }
+
+    private static int getArgument(String name, int defaultValue) {
+        final Bundle arguments = InstrumentationRegistry.getArguments();
+        final String value = (arguments != null ? arguments.getString(name) : null);
+        return (value != null ? Integer.parseInt(value) : defaultValue);
+    }
+
+    private static float getRefreshRate(Context context) {
+        return ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRefreshRate();
+    }
+
+    private static byte[] makeAvatar() {
+        final Bitmap bitmap = Bitmap.createBitmap(AVATAR_SIZE, AVATAR_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.GRAY);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, output);
+        bitmap.recycle();
+        return output.toByteArray();
+    }
+
+    private static void deleteContents(File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+            file.delete();
+        }
+    }
+}
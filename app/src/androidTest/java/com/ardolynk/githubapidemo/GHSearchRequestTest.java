@@ -0,0 +1,106 @@
+package com.ardolynk.githubapidemo;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.HurlStack;
+import com.android.volley.toolbox.NoCache;
+import com.android.volley.toolbox.RequestFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks ETag revalidation of {@link GHSearchRequest} through Volley against {@link StubGitHubServer}:
+ * a page is stored with its ETag, a conditional request of it gets "304 Not Modified" without using
+ * the rate limit, and a changed page comes with a new ETag
+ */
+@RunWith(AndroidJUnit4.class)
+public class GHSearchRequestTest {
+
+    private final static String API_URL = "https://api.github.com";
+    private final static long TIMEOUT_SEC = 10;
+
+    private final static GHRateLimiter.Clock CLOCK = new GHRateLimiter.Clock() {
+        @Override
+        public long now() {
+            return 0;
+        }
+    };
+
+    private StubGitHubServer mServer;
+    private RequestQueue mQueue;
+    private GHPageCache mCache;
+    private GHRateLimiter mRateLimiter;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StubGitHubServer(CLOCK, 10, 60000, 500);
+        mServer.start();
+        mRateLimiter = new GHRateLimiter(CLOCK, new GHRateLimiter.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delay) {}
+
+            @Override
+            public void unschedule(Runnable task) {}
+        }, 10, 60000);
+        mQueue = new RequestQueue(new NoCache(), new BasicNetwork(new HurlStack()));
+        mQueue.start();
+        final File directory = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "search-request-test");
+        mCache = new GHPageCache(directory, 1024 * 1024);
+        mCache.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mQueue.stop();
+        mServer.stop();
+        mCache.clear();
+    }
+
+    @Test
+    public void conditionalRequest_getsNotModified() throws Exception {
+        final GHPageKey key = new GHPageKey("", "Kotlin", 1, 30);
+        final GHPage page = request(key, null);
+        assertFalse(page.isNotModified());
+        assertEquals(30, page.getItems().size());
+        assertNotNull(page.getEtag());
+        assertEquals(page.getEtag(), mCache.get(key).etag);
+        assertEquals(9, mRateLimiter.getRemaining());
+
+        final GHPage revalidated = request(key, page.getEtag());
+        assertTrue(revalidated.isNotModified());
+        assertNull(revalidated.getItems());
+        assertEquals(page.getEtag(), revalidated.getEtag());
+        assertEquals(1, mServer.getNotModifiedCount());
+        assertEquals(9, mRateLimiter.getRemaining());
+
+        //Page content changed on the server
+
+        mServer.setItemPadding(10);
+        final GHPage changed = request(key, page.getEtag());
+        assertFalse(changed.isNotModified());
+        assertEquals(page.getItems(), changed.getItems());
+        assertNotEquals(page.getEtag(), changed.getEtag());
+        assertEquals(changed.getEtag(), mCache.get(key).etag);
+        assertEquals(1, mServer.getNotModifiedCount());
+    }
+
+    private GHPage request(GHPageKey key, String etag) throws Exception {
+        final RequestFuture<GHPage> future = RequestFuture.newFuture();
+        final String url = mServer.getUrl() + key.getUrl().substring(API_URL.length());
+        final GHSearchRequest request = new GHSearchRequest(key, url, etag, mCache, future, future);
+        request.setRateLimiter(mRateLimiter);
+        future.setRequest(mQueue.add(request));
+        return future.get(TIMEOUT_SEC, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,243 @@
+package com.ardolynk.githubapidemo;
+
+import android.app.Instrumentation;
+import android.view.Choreographer;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.ProgressBar;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Records what a user feels of a list session, phase by phase: the time it takes to get the phase
+ * done (e.g. to show the first row), the time the loading row is on screen at every page boundary,
+ * frames dropped, and bytes transferred from {@link StubGitHubServer}, along with requests it answered
+ * "304 Not Modified" or rejected by the rate limit</p>
+ * <p>Frames are watched by a {@link Choreographer} callback on the main thread while a phase lasts.
+ * A frame coming more than one refresh interval after the previous one counts the intervals skipped
+ * as dropped frames</p>
+ * <p>Phases are started and ended on the instrumentation thread, the report is a JSON object
+ * of the session config and phases</p>
+ */
+public class GHSessionRecorder implements Choreographer.FrameCallback {
+
+    private final static long NANOS_PER_MS = 1000000;
+
+    /**
+     * Tells whether a phase is done, it's checked on the main thread every frame
+     */
+    public interface ReadyCheck {
+        boolean isReady(ListView listView);
+    }
+
+    private final Instrumentation mInstrumentation;
+    private final StubGitHubServer mServer;
+    private final long mFrameInterval;
+    private final JsonObject mConfig = new JsonObject();
+    private final JsonArray mPhases = new JsonArray();
+    private ListView mListView;
+
+    //Phase state, on the main thread
+
+    private String mPhaseName;
+    private ReadyCheck mReadyCheck;
+    private CountDownLatch mReady;
+    private long mPhaseStart;
+    private long mReadyTime;
+    private long mLastFrameTime;
+    private int mFrameCount;
+    private int mDroppedFrameCount;
+    private long mSpinnerStart;
+    private JsonArray mSpinnerTimes;
+    private long mSearchBytes;
+    private long mAvatarBytes;
+    private int mRequestCount;
+    private int mAvatarCount;
+    private int mNotModifiedCount;
+    private int mRejectedCount;
+
+    /**
+     * @param refreshRate Display refresh rate in frames per second
+     */
+    public GHSessionRecorder(Instrumentation instrumentation, StubGitHubServer server, float refreshRate) {
+        mInstrumentation = instrumentation;
+        mServer = server;
+        mFrameInterval = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    }
+
+    /**
+     * Adds a session parameter to the report
+     */
+    public void putConfig(String name, long value) {
+        mConfig.addProperty(name, value);
+    }
+
+    /**
+     * Sets the list the user sees, frames are checked against it since then
+     */
+    public void setListView(final ListView listView) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mListView = listView;
+            }
+        });
+    }
+
+    /**
+     * Starts a phase, and the action getting it done right after that
+     *
+     * @param action Action run on the main thread, or null
+     */
+    public void startPhase(final String name, final ReadyCheck readyCheck, final Runnable action) {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mPhaseName = name;
+                mReadyCheck = readyCheck;
+                mReady = new CountDownLatch(1);
+                mPhaseStart = System.nanoTime();
+                mReadyTime = 0;
+                mLastFrameTime = 0;
+                mFrameCount = 0;
+                mDroppedFrameCount = 0;
+                mSpinnerStart = 0;
+                mSpinnerTimes = new JsonArray();
+                mSearchBytes = mServer.getSearchBytes();
+                mAvatarBytes = mServer.getAvatarBytes();
+                mRequestCount = mServer.getRequestCount();
+                mAvatarCount = mServer.getAvatarCount();
+                mNotModifiedCount = mServer.getNotModifiedCount();
+                mRejectedCount = mServer.getRejectedCount();
+                Choreographer.getInstance().postFrameCallback(GHSessionRecorder.this);
+                if (action != null) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return True if the phase got done in time
+     */
+    public boolean awaitReady(long timeoutSec) throws InterruptedException {
+        return mReady.await(timeoutSec, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return True if the phase is done already
+     */
+    public boolean isReady() {
+        return (mReady.getCount() == 0);
+    }
+
+    /**
+     * Ends the phase and adds it to the report
+     */
+    public void endPhase() {
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().removeFrameCallback(GHSessionRecorder.this);
+                final long now = System.nanoTime();
+                if (mSpinnerStart != 0) {
+                    mSpinnerTimes.add((now - mSpinnerStart) / NANOS_PER_MS);
+                }
+                long spinnerTime = 0;
+                for (int i = 0; i < mSpinnerTimes.size(); i++) {
+                    spinnerTime += mSpinnerTimes.get(i).getAsLong();
+                }
+                final JsonObject phase = new JsonObject();
+                phase.addProperty("name", mPhaseName);
+                phase.addProperty("ready_ms", mReadyTime != 0 ? (mReadyTime - mPhaseStart) / NANOS_PER_MS : -1);
+                phase.addProperty("duration_ms", (now - mPhaseStart) / NANOS_PER_MS);
+                phase.addProperty("frames", mFrameCount);
+                phase.addProperty("dropped_frames", mDroppedFrameCount);
+                phase.addProperty("spinner_ms", spinnerTime);
+                phase.add("spinner_ms_per_boundary", mSpinnerTimes);
+                phase.addProperty("search_requests", mServer.getRequestCount() - mRequestCount);
+                phase.addProperty("search_bytes", mServer.getSearchBytes() - mSearchBytes);
+                phase.addProperty("not_modified", mServer.getNotModifiedCount() - mNotModifiedCount);
+                phase.addProperty("rate_limited", mServer.getRejectedCount() - mRejectedCount);
+                phase.addProperty("avatar_requests", mServer.getAvatarCount() - mAvatarCount);
+                phase.addProperty("avatar_bytes", mServer.getAvatarBytes() - mAvatarBytes);
+                mPhases.add(phase);
+            }
+        });
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (mLastFrameTime != 0) {
+            final long skipped = (frameTimeNanos - mLastFrameTime + mFrameInterval / 2) / mFrameInterval - 1;
+            mDroppedFrameCount += Math.max(0, skipped);
+        }
+        mLastFrameTime = frameTimeNanos;
+        mFrameCount++;
+
+        if (mListView != null) {
+            final boolean spinnerShown = isSpinnerShown();
+            if (spinnerShown && mSpinnerStart == 0) {
+                mSpinnerStart = frameTimeNanos;
+            }
+            else if (!spinnerShown && mSpinnerStart != 0) {
+                mSpinnerTimes.add((frameTimeNanos - mSpinnerStart) / NANOS_PER_MS);
+                mSpinnerStart = 0;
+            }
+            if (mReadyTime == 0 && mReadyCheck.isReady(mListView)) {
+                mReadyTime = Math.max(frameTimeNanos, mPhaseStart);
+                mReady.countDown();
+            }
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * @return True if the loading row (the one asking the service for the next page) is on screen
+     */
+    private boolean isSpinnerShown() {
+        final View lastView = mListView.getChildAt(mListView.getChildCount() - 1);
+        return (lastView instanceof ProgressBar);
+    }
+
+    /**
+     * @return True if the list shows a row of a repository
+     */
+    public static boolean hasRows(ListView listView) {
+        for (int i = 0; i < listView.getChildCount(); i++) {
+            if (listView.getChildAt(i).findViewById(R.id.full_name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The report, it's valid once phases are ended
+     */
+    public String getReport() {
+        final JsonObject report = new JsonObject();
+        report.add("config", mConfig);
+        report.add("phases", mPhases);
+        return new GsonBuilder().setPrettyPrinting().create().toJson(report);
+    }
+
+    public void writeReport(File file) throws IOException {
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+    }
+}
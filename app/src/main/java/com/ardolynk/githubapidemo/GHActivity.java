@@ -1,23 +1,33 @@
 package com.ardolynk.githubapidemo;
 
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.app.SearchManager;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
-import android.os.ResultReceiver;
+import android.os.StrictMode;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.text.InputType;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.SearchView;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Created by Michael Tikhonenko on 2/7/17.
@@ -33,84 +43,170 @@ public class GHActivity extends Activity {
     private GHDataService mService;
     private ServiceConnection mServiceConnection;
     private String mRecentSearchString;
+    private GHQueryScheduler mQueryScheduler;
+    private GHStartupTimer mStartupTimer;
 
     private final static int SEARCH_STRING__MIN_LENGTH = 3;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mStartupTimer = GHStartupTimer.start();
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+
+            //Disk access and background work (parsing, decoding, diffing) on the main thread are reported
+
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder().detectAll().penaltyLog().build());
+        }
         super.onCreate(savedInstanceState);
         setContentView(R.layout.main_view);
         mLoadHintView = findViewById(R.id.load_hint);
         mListView = (ListView) findViewById(R.id.list_view);
         mRecentSearchString = null;
         mRefreshLayout = (SwipeRefreshLayout) findViewById(R.id.refresh_layout);
+        mQueryScheduler = new GHQueryScheduler(new Handler(), getResources().getInteger(R.integer.search_debounce_ms),
+                new GHQueryScheduler.Listener() {
+            @Override
+            public void onQuery(String query) {
+                if (mService != null) {
+                    mService.startLoadingList(query);
+                    mRecentSearchString = query;
+                    mLoadHintView.setVisibility(View.GONE);
+                    mRefreshLayout.setRefreshing(true);
+                }
+            }
+        });
 
         mServiceConnection = new ServiceConnection() {
             @Override
             public void onServiceConnected(ComponentName name, IBinder service) {
 
-                //Initial data load
+                //Initial data load, the list shown last time goes first if there's one
 
                 mService = ((GHDataService.LocalBinder) service).getService();
-                mService.startLoadingList("");
+                mService.setListListener(mListListener);
+                mQueryScheduler.setRateLimiter(mService.getRateLimiter());
+                mService.setLanguages(getSearchLanguages(false));
+                mService.setKeysetPaging(getResources().getBoolean(R.bool.keyset_paging));
+                mService.restoreList("");
                 mRefreshLayout.setRefreshing(true);
             }
 
             @Override
             public void onServiceDisconnected(ComponentName name) {
+                mQueryScheduler.setRateLimiter(null);
                 mService = null;
             }
         };
 
-        Intent serviceIntent = new Intent(this, GHDataService.class);
-        serviceIntent.putExtra(GHDataService.RECEIVER, new ResultReceiver(new Handler()) {
+        mRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
             @Override
-            public void onReceiveResult(int resultCode, Bundle resultBundle) {
+            public void onRefresh() {
 
-                //List data loaded
+                //Reload shown pages by pull
 
-                int resultFlags = resultBundle.getInt(GHDataService.RESULT_FLAGS);
-                final List<GHData.Item> resultData = (List<GHData.Item>) resultBundle.getSerializable(GHDataService.RESULT_DATA);
-                if (mListAdapter == null) {
-                    mListAdapter = new GHListAdapter(GHActivity.this, mService);
-                    mListView.setAdapter(mListAdapter);
+                if (mService == null) {
+                    mRefreshLayout.setRefreshing(false);
+                }
+                else {
+                    mLoadHintView.setVisibility(View.GONE);
+                    mService.refreshList();
                 }
-                mListAdapter.populateData(resultData, resultFlags);
+            }
+        });
+
+        bindService(new Intent(this, GHDataService.class), mServiceConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    private final GHDataService.ListListener mListListener = new GHDataService.ListListener() {
+        @Override
+        public void onListLoaded(List<GHData.Item> data, int pageNum, int flags) {
+
+            //List data loaded
+
+            if (mListAdapter == null) {
+                mListAdapter = new GHListAdapter(GHActivity.this, mService);
+                mListView.setAdapter(mListAdapter);
+                mListView.setOnScrollListener(mListAdapter);
+                mListAdapter.setRefreshListener(mRefreshListener);
+                mService.getMemoryGovernor().addListener(mListAdapter);
+            }
+            mListAdapter.populateData(data, flags, pageNum);
+            if ((flags & (GHDataService.FLAG_LOCAL | GHDataService.FLAG_SNAPSHOT)) == 0) {
+
+                //Local and saved results are shown while the actual ones are loading
+
                 mRefreshLayout.setRefreshing(false);
+            }
+            if (mStartupTimer != null && !data.isEmpty()) {
+                measureFirstRow(flags);
+            }
 
-                if ((resultFlags & GHDataService.FLAG_APPEND) == 0) {
+            if ((flags & (GHDataService.FLAG_APPEND | GHDataService.FLAG_REFRESH)) == 0) {
 
-                    //List loaded from scratch, scroll to the top
+                //List loaded from scratch, scroll to the top
 
-                    mListView.setSelectionAfterHeaderView();
-                }
+                mListView.setSelectionAfterHeaderView();
+            }
 
-                if ((resultFlags & GHDataService.FLAG_ERROR) != 0) {
-                    if (mListAdapter.getCount() == 0) {
-                        mLoadHintView.setVisibility(View.VISIBLE);
+            if ((flags & GHDataService.FLAG_ERROR) != 0) {
+                if (mListAdapter.getCount() == 0) {
+                    mLoadHintView.setVisibility(View.VISIBLE);
+                }
+            }
+        }
+    };
+
+    /**
+     * Reports the startup time once the first rows are about to be drawn
+     */
+    private void measureFirstRow(int flags) {
+        final String source;
+        if ((flags & GHDataService.FLAG_SNAPSHOT) != 0) {
+            source = "snapshot";
+        }
+        else if ((flags & GHDataService.FLAG_LOCAL) != 0) {
+            source = "local index";
+        }
+        else {
+            source = "network";
+        }
+        final GHStartupTimer startupTimer = mStartupTimer;
+        mStartupTimer = null;
+        mListView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (mListView.getChildCount() > 0) {
+                    mListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    startupTimer.onFirstRowRendered(source);
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                        reportFullyDrawn();
                     }
                 }
+                return true;
             }
         });
+    }
 
-        mRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
-            @Override
-            public void onRefresh() {
+    private final GHListAdapter.RefreshListener mRefreshListener = new GHListAdapter.RefreshListener() {
+        @Override
+        public void onRefreshApplied(int[] newPositions) {
 
-                //Reload list by pull
+            //Keep the first visible row that's still there at the same place on the screen
 
-                if (mService == null) {
-                    mRefreshLayout.setRefreshing(false);
-                }
-                else {
-                    mLoadHintView.setVisibility(View.GONE);
-                    mService.startLoadingList(mRecentSearchString);;
+            final int firstPosition = mListView.getFirstVisiblePosition();
+            final View firstView = mListView.getChildAt(0);
+            final int top = (firstView != null ? firstView.getTop() : 0);
+            for (int position = firstPosition; position < newPositions.length; position++) {
+                final int newPosition = newPositions[position];
+                if (newPosition != GHListDiff.NO_POSITION) {
+                    if (newPosition != position || position != firstPosition) {
+                        mListView.setSelectionFromTop(newPosition, (position == firstPosition ? top : 0));
+                    }
+                    return;
                 }
             }
-        });
-
-        bindService(serviceIntent, mServiceConnection, Context.BIND_AUTO_CREATE);
-    }
+        }
+    };
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
@@ -134,6 +230,10 @@ public class GHActivity extends Activity {
 
             @Override
             public boolean onMenuItemActionCollapse(MenuItem item) {
+                mQueryScheduler.reset();
+                if (mListAdapter != null) {
+                    mListAdapter.clearLocalFilter();
+                }
                 if (mRecentSearchString != null) {
                     mRecentSearchString = null;
                     mService.startLoadingList("");
@@ -143,7 +243,7 @@ public class GHActivity extends Activity {
             }
         });
 
-        //Prevent submission for too short requests
+        //Prevent submission for too short requests, search as you type otherwise
 
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
@@ -153,27 +253,147 @@ public class GHActivity extends Activity {
 
             @Override
             public boolean onQueryTextChange(String newText) {
+                if (newText.length() < SEARCH_STRING__MIN_LENGTH) {
+                    mQueryScheduler.cancel();
+                    if (mListAdapter != null) {
+                        mListAdapter.clearLocalFilter();
+                    }
+                    return false;
+                }
+
+                //Filter what we have while the query is pending, if it extends the one the list was loaded for
+
+                final String loadedSearchString = (mService != null ? mService.getRecentSearchString() : null);
+                if (mListAdapter != null && loadedSearchString != null
+                        && newText.toLowerCase(Locale.getDefault()).startsWith(loadedSearchString.toLowerCase(Locale.getDefault()))) {
+                    mListAdapter.filterLocally(newText);
+                }
+                mQueryScheduler.onQueryChanged(newText);
                 return false;
             }
         });
         return true;
     }
 
+    /**
+     * @param moreLanguages True to search the languages opted in as well
+     */
+    private List<String> getSearchLanguages(boolean moreLanguages) {
+        final List<String> languages = new ArrayList<String>(
+                Arrays.asList(getResources().getStringArray(R.array.search_languages)));
+        if (moreLanguages) {
+            languages.addAll(Arrays.asList(getResources().getStringArray(R.array.more_search_languages)));
+        }
+        return languages;
+    }
+
+    /**
+     * <p>Asks for a GraphQL API token, search pages go by the GraphQL API with one, and by REST without</p>
+     * <p>The token is kept by the service until the app is closed, it's never stored</p>
+     */
+    private void askGraphQLToken() {
+        final EditText tokenView = new EditText(this);
+        tokenView.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+        tokenView.setHint(R.string.graphql_token_hint);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.graphql_token_title)
+                .setView(tokenView)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        if (mService == null) {
+                            return;
+                        }
+                        final String token = tokenView.getText().toString().trim();
+                        mService.setTransport(token.isEmpty() ? GHSearchTransport.REST : new GHGraphQLTransport(token));
+                        mQueryScheduler.setRateLimiter(mService.getRateLimiter());
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.menu_graphql_token).setVisible(getResources().getBoolean(R.bool.graphql_transport));
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_graphql_token) {
+            askGraphQLToken();
+            return true;
+        }
+        if (item.getItemId() == R.id.menu_more_languages && mService != null) {
+
+            //Every language searched costs requests of its own, so the list is loaded again only on demand
+
+            item.setChecked(!item.isChecked());
+            mService.setLanguages(getSearchLanguages(item.isChecked()));
+            mService.startLoadingList(mService.getRecentSearchString());
+            mRefreshLayout.setRefreshing(true);
+            return true;
+        }
+        if (mListAdapter == null) {
+            return super.onOptionsItemSelected(item);
+        }
+
+        //Loaded items are sorted and filtered in memory, the list is not loaded again
+
+        switch (item.getItemId()) {
+            case R.id.menu_sort_loaded:
+                mListAdapter.setOrder(GHListQuery.Order.LOADED);
+                item.setChecked(true);
+                return true;
+            case R.id.menu_sort_name:
+                mListAdapter.setOrder(GHListQuery.Order.NAME);
+                item.setChecked(true);
+                return true;
+            case R.id.menu_sort_owner:
+                mListAdapter.setOrder(GHListQuery.Order.OWNER);
+                item.setChecked(true);
+                return true;
+            case R.id.menu_min_stars:
+                item.setChecked(!item.isChecked());
+                mListAdapter.setMinStars(item.isChecked() ? getResources().getInteger(R.integer.min_stars_filter)
+                        : GHListQuery.NO_MIN_STARS);
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
     @Override
     protected void onNewIntent(Intent intent) {
         if (Intent.ACTION_SEARCH.equals(intent.getAction())) {
             String query = intent.getStringExtra(SearchManager.QUERY);
             if (query.length() >= SEARCH_STRING__MIN_LENGTH) {
-                mService.startLoadingList(query);
-                mRecentSearchString = query;
-                mLoadHintView.setVisibility(View.GONE);
-                mRefreshLayout.setRefreshing(true);
+                mQueryScheduler.submit(query);
             }
         }
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        //The UI is shown again, so the full memory budget is back
+
+        if (mService != null) {
+            mService.getMemoryGovernor().reset();
+        }
+    }
+
     @Override
     public void onDestroy() {
+        mQueryScheduler.cancel();
+        if (mService != null) {
+            mService.setListListener(null);
+            if (mListAdapter != null) {
+                mService.getMemoryGovernor().removeListener(mListAdapter);
+            }
+        }
         unbindService(mServiceConnection);
         super.onDestroy();
     }
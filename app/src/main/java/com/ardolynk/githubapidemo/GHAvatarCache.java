@@ -0,0 +1,119 @@
+package com.ardolynk.githubapidemo;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+import com.android.volley.toolbox.ImageLoader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Memory tier of the avatar cache</p>
+ * <p>Unlike the entry-count based cache, its budget is a share of the memory budget in bytes
+ * (see {@link GHMemoryGovernor}), and the bitmaps are evicted by their actual byte count. Missed
+ * avatars are looked up in the disk tier (see {@link GHAvatarRequest}) before going to network</p>
+ */
+public class GHAvatarCache implements ImageLoader.ImageCache {
+
+    private final LruCache<String, Bitmap> mCache;
+    private final AtomicInteger mDiskHitCount = new AtomicInteger();
+    private final AtomicInteger mNetworkLoadCount = new AtomicInteger();
+
+    /**
+     * @param maxSize Memory budget in bytes
+     */
+    public GHAvatarCache(int maxSize) {
+        mCache = new LruCache<String, Bitmap>(Math.max(1, maxSize)) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Changes the memory budget, evicting least recently used bitmaps over it
+     *
+     * @param maxSize Memory budget in bytes (nothing is kept if it's zero)
+     */
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            mCache.evictAll();
+        }
+        mCache.resize(Math.max(1, maxSize));
+    }
+
+    @Override
+    public Bitmap getBitmap(String url) {
+        return mCache.get(url);
+    }
+
+    @Override
+    public void putBitmap(String url, Bitmap bitmap) {
+        mCache.put(url, bitmap);
+    }
+
+    void onDiskHit() {
+        mDiskHitCount.incrementAndGet();
+    }
+
+    void onNetworkLoad() {
+        mNetworkLoadCount.incrementAndGet();
+    }
+
+    /**
+     * @return Number of avatars found in memory
+     */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * @return Number of avatars not found in memory
+     */
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * @return Number of avatars evicted from memory to fit the budget
+     */
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @return Number of memory misses served by the disk tier
+     */
+    public int getDiskHitCount() {
+        return mDiskHitCount.get();
+    }
+
+    /**
+     * @return Number of avatars downloaded and decoded from full size images
+     */
+    public int getNetworkLoadCount() {
+        return mNetworkLoadCount.get();
+    }
+
+    /**
+     * @return Memory used by cached bitmaps in bytes
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    /**
+     * @return Memory budget in bytes
+     */
+    public int getMaxSize() {
+        return mCache.maxSize();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("avatars: %d/%d bytes, hits %d, misses %d, evictions %d, disk hits %d, network loads %d",
+                getSize(), getMaxSize(), getHitCount(), getMissCount(), getEvictionCount(),
+                getDiskHitCount(), getNetworkLoadCount());
+    }
+}
@@ -0,0 +1,252 @@
+package com.ardolynk.githubapidemo;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import com.android.volley.Cache;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * <p>Avatar image request backed by the disk tier of the avatar cache</p>
+ * <p>The image is decoded right at the requested size: the bounds are read first,
+ * then the image is subsampled with {@link BitmapFactory.Options#inSampleSize} and
+ * scaled down to the exact size if needed. Intermediate subsampled bitmaps are pooled and reused
+ * by next decodes where the platform allows it, the pool is released under memory pressure</p>
+ * <p>JPEG images are decoded to {@link Bitmap.Config#RGB_565}, other ones keep their alpha channel</p>
+ * <p>A downloaded avatar is stored to the request queue disk cache already resized and
+ * re-encoded, so subsequent loads (including the ones after app restart) decode a small
+ * image instead of downloading the full size one</p>
+ * <p>Decoding is skipped for requests cancelled meanwhile (e.g. for list rows recycled
+ * during a fling), a downloaded original is just kept in disk cache in this case</p>
+ */
+public class GHAvatarRequest extends Request<Bitmap> {
+
+    private final static String HEADER_RESIZED = "X-GH-Resized";
+    private final static int PNG_QUALITY = 100;
+    private final static long SOFT_TTL = 24 * 60 * 60 * 1000L;
+    private final static long TTL = 30 * SOFT_TTL;
+    private final static int TIMEOUT_MS = 1000;
+    private final static int MAX_RETRIES = 2;
+    private final static float BACKOFF_MULT = 2f;
+    private final static int MAX_REUSABLE_BITMAPS = 4;
+
+    private final static ArrayDeque<Bitmap> sReusableBitmaps = new ArrayDeque<Bitmap>();
+
+    private final Response.Listener<Bitmap> mListener;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final Priority mPriority;
+    private final GHAvatarCache mAvatarCache;
+    private final GHMetrics.Histogram mDecodeTime;
+
+    /**
+     * @param url Image URL
+     * @param maxWidth Maximum width of the decoded bitmap (zero means no limit)
+     * @param maxHeight Maximum height of the decoded bitmap (zero means no limit)
+     * @param priority Request priority (prefetch requests should have a lower one)
+     * @param avatarCache Avatar cache to report disk tier hits to
+     * @param decodeTime Histogram to record decode time to
+     */
+    public GHAvatarRequest(String url, Response.Listener<Bitmap> listener, int maxWidth, int maxHeight,
+                           Response.ErrorListener errorListener, Priority priority, GHAvatarCache avatarCache,
+                           GHMetrics.Histogram decodeTime) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(new DefaultRetryPolicy(TIMEOUT_MS, MAX_RETRIES, BACKOFF_MULT));
+        mListener = listener;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mPriority = priority;
+        mAvatarCache = avatarCache;
+        mDecodeTime = decodeTime;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        final boolean resized = (response.headers != null && response.headers.containsKey(HEADER_RESIZED));
+        if (isCanceled()) {
+
+            //Nobody waits for this bitmap anymore, so don't decode it
+
+            return Response.success(null, resized ? null : makeCacheEntry(response.data, false));
+        }
+
+        final Bitmap bitmap;
+        final long startTime = GHMetrics.Histogram.start();
+        GHTrace.beginBackground("GH avatar decode");
+        try {
+            bitmap = decode(response.data, mMaxWidth, mMaxHeight);
+        } catch (OutOfMemoryError e) {
+            return Response.error(new ParseError(e));
+        } finally {
+            GHTrace.end();
+            mDecodeTime.stop(startTime);
+        }
+        if (bitmap == null) {
+            return Response.error(new ParseError(response));
+        }
+        if (resized) {
+            mAvatarCache.onDiskHit();
+            return Response.success(bitmap, null);
+        }
+        mAvatarCache.onNetworkLoad();
+
+        //Replace the original image with the resized one in disk cache
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (!bitmap.compress(Bitmap.CompressFormat.PNG, PNG_QUALITY, output)) {
+            return Response.success(bitmap, makeCacheEntry(response.data, false));
+        }
+        return Response.success(bitmap, makeCacheEntry(output.toByteArray(), true));
+    }
+
+    /**
+     * Drops intermediate bitmaps kept for reuse
+     */
+    public static void releaseReusableBitmaps() {
+        synchronized (sReusableBitmaps) {
+            sReusableBitmaps.clear();
+        }
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+
+    private static Cache.Entry makeCacheEntry(byte[] data, boolean resized) {
+        final long now = System.currentTimeMillis();
+        final Cache.Entry entry = new Cache.Entry();
+        entry.data = data;
+        entry.serverDate = now;
+        entry.softTtl = now + SOFT_TTL;
+        entry.ttl = now + TTL;
+        entry.responseHeaders = (resized ? Collections.singletonMap(HEADER_RESIZED, "1")
+                : Collections.<String, String>emptyMap());
+        return entry;
+    }
+
+    private static Bitmap decode(byte[] data, int maxWidth, int maxHeight) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        final int actualWidth = options.outWidth;
+        final int actualHeight = options.outHeight;
+        if (actualWidth <= 0 || actualHeight <= 0) {
+            return null;
+        }
+
+        //Fit into the maximum size keeping the aspect ratio
+
+        int desiredWidth = actualWidth;
+        int desiredHeight = actualHeight;
+        if (maxWidth > 0 && desiredWidth > maxWidth) {
+            desiredHeight = Math.max(1, desiredHeight * maxWidth / desiredWidth);
+            desiredWidth = maxWidth;
+        }
+        if (maxHeight > 0 && desiredHeight > maxHeight) {
+            desiredWidth = Math.max(1, desiredWidth * maxHeight / desiredHeight);
+            desiredHeight = maxHeight;
+        }
+
+        //JPEG has no alpha channel, other formats (e.g. PNG identicons) may be transparent
+
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = ("image/jpeg".equals(options.outMimeType) ? Bitmap.Config.RGB_565
+                : Bitmap.Config.ARGB_8888);
+        options.inSampleSize = findSampleSize(actualWidth, actualHeight, desiredWidth, desiredHeight);
+        final boolean exactSize = (actualWidth / options.inSampleSize == desiredWidth
+                && actualHeight / options.inSampleSize == desiredHeight);
+
+        //Subsampled bitmap is an intermediate one if it's going to be scaled, so it can be reused.
+        //Decoding into a bitmap of different size requires KitKat
+
+        final boolean reuse = (!exactSize && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT);
+        Bitmap sampled = null;
+        if (reuse) {
+            options.inMutable = true;
+            options.inBitmap = pollReusableBitmap(options.inPreferredConfig);
+            if (options.inBitmap != null) {
+                try {
+                    sampled = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+                } catch (IllegalArgumentException e) {
+
+                    //Reusable bitmap is too small
+
+                }
+                if (sampled == null) {
+                    offerReusableBitmap(options.inBitmap);
+                    options.inBitmap = null;
+                }
+            }
+        }
+        if (sampled == null) {
+            sampled = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (sampled == null || exactSize) {
+            return sampled;
+        }
+
+        final Bitmap scaled = Bitmap.createScaledBitmap(sampled, desiredWidth, desiredHeight, true);
+        if (scaled != sampled) {
+            if (reuse) {
+                offerReusableBitmap(sampled);
+            }
+            else {
+                sampled.recycle();
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * @return Pooled bitmap of the config, or null if there's none
+     */
+    private static Bitmap pollReusableBitmap(Bitmap.Config config) {
+        synchronized (sReusableBitmaps) {
+            for (Iterator<Bitmap> iterator = sReusableBitmaps.iterator(); iterator.hasNext(); ) {
+                final Bitmap bitmap = iterator.next();
+                if (bitmap.getConfig() == config) {
+                    iterator.remove();
+                    return bitmap;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts a bitmap no longer used to the pool, or recycles it if the pool is full
+     */
+    private static void offerReusableBitmap(Bitmap bitmap) {
+        synchronized (sReusableBitmaps) {
+            if (sReusableBitmaps.size() < MAX_REUSABLE_BITMAPS) {
+                sReusableBitmaps.offer(bitmap);
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+    private static int findSampleSize(int actualWidth, int actualHeight, int desiredWidth, int desiredHeight) {
+        int sampleSize = 1;
+        while (actualWidth / (sampleSize * 2) >= desiredWidth && actualHeight / (sampleSize * 2) >= desiredHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ardolynk.githubapidemo;
+
+/**
+ * <p>Formats counters for list rows without going through {@link String#format}</p>
+ * <p>Digits are written into a char buffer the caller keeps per view, and the view is given the buffer
+ * itself ({@link android.widget.TextView#setText(char[], int, int)}), so formatting doesn't allocate
+ * whatever the count is</p>
+ */
+public class GHCountFormatter {
+
+    //Length of the longest int, i.e. "-2147483648"
+
+    private final static int MAX_LENGTH = 11;
+
+    private final String mPrefix;
+
+    /**
+     * @param prefix Text to put before the number
+     */
+    public GHCountFormatter(String prefix) {
+        mPrefix = prefix;
+    }
+
+    /**
+     * @return Buffer any count fits in
+     */
+    public char[] newBuffer() {
+        return new char[mPrefix.length() + MAX_LENGTH];
+    }
+
+    /**
+     * @return Formatted value, a new string every time
+     */
+    public String format(int count) {
+        final char[] buffer = newBuffer();
+        return new String(buffer, 0, format(count, buffer));
+    }
+
+    /**
+     * Writes the formatted value to the start of the buffer
+     *
+     * @param buffer Buffer made by {@link GHCountFormatter#newBuffer()}
+     * @return Length of the formatted value
+     */
+    public int format(int count, char[] buffer) {
+        final int prefixLength = mPrefix.length();
+        mPrefix.getChars(0, prefixLength, buffer, 0);
+        long value = count;
+        final boolean negative = (value < 0);
+        if (negative) {
+            value = -value;
+        }
+        int position = buffer.length;
+        do {
+            buffer[--position] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+        final int digitCount = buffer.length - position;
+        System.arraycopy(buffer, position, buffer, prefixLength, digitCount);
+        return prefixLength + digitCount;
+    }
+}
@@ -6,6 +6,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 
 import lombok.Data;
+import lombok.Value;
 
 /**
  * Created by Michael Tikhonenko on 2/7/17.
@@ -13,10 +14,26 @@ import lombok.Data;
 
 @Data
 public class GHData implements Serializable {
+    public final static int UNKNOWN_COUNT = -1;
+
+    @SerializedName("total_count")
+    private int totalCount = UNKNOWN_COUNT;
     private ArrayList<Item> items;
 
+    /**
+     * Cursor after the last item, given by transports with cursor pagination only (see {@link GHGraphQLTransport})
+     */
+    private transient String endCursor;
+
+    /**
+     * <p>Search result item</p>
+     * <p>Items and owners are static classes, so they don't keep a reference to the enclosing
+     * {@link GHData} (or {@link Item}) and can be shared between pages and components freely</p>
+     */
     @Data
-    public class Item {
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         @SerializedName("name")
         private String projectName;
         @SerializedName("stargazers_count")
@@ -24,11 +41,16 @@ public class GHData implements Serializable {
         private Owner owner;
         @SerializedName("html_url") private String projectURL;
 
-        @Data
-        public class Owner {
-            private String login;
+        /**
+         * Owners are immutable, items of the same owner share one (see {@link GHDataAdapters})
+         */
+        @Value
+        public static class Owner implements Serializable {
+            private static final long serialVersionUID = 1L;
+
+            String login;
             @SerializedName("avatar_url")
-            private String avatarLink;
+            String avatarLink;
         }
     }
 }
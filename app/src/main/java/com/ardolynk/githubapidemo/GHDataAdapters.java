@@ -0,0 +1,220 @@
+package com.ardolynk.githubapidemo;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>Hand-written Gson type adapters of {@link GHData}, {@link GHData.Item} and {@link GHData.Item.Owner}</p>
+ * <p>Fields are bound by name right in the token stream, with no reflection and no intermediate
+ * objects: a page costs one {@link GHData.Item} per row, plus one {@link GHData.Item.Owner} per
+ * distinct owner on the page (repeating owners share a single instance). Unmapped fields are skipped</p>
+ * <p>Use {@link GHDataAdapters#newGson()} wherever a {@link Gson} instance is needed for these types</p>
+ */
+public class GHDataAdapters {
+
+    private final static String FIELD_TOTAL_COUNT = "total_count";
+    private final static String FIELD_ITEMS = "items";
+    private final static String FIELD_NAME = "name";
+    private final static String FIELD_STAR_COUNT = "stargazers_count";
+    private final static String FIELD_URL = "html_url";
+    private final static String FIELD_OWNER = "owner";
+    private final static String FIELD_LOGIN = "login";
+    private final static String FIELD_AVATAR_URL = "avatar_url";
+
+    private GHDataAdapters() {}
+
+    public final static TypeAdapter<GHData.Item.Owner> OWNER = new TypeAdapter<GHData.Item.Owner>() {
+        @Override
+        public void write(JsonWriter writer, GHData.Item.Owner owner) throws IOException {
+            if (owner == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.beginObject();
+            writer.name(FIELD_LOGIN).value(owner.getLogin());
+            writer.name(FIELD_AVATAR_URL).value(owner.getAvatarLink());
+            writer.endObject();
+        }
+
+        @Override
+        public GHData.Item.Owner read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return readOwner(reader);
+        }
+    };
+
+    public final static TypeAdapter<GHData.Item> ITEM = new TypeAdapter<GHData.Item>() {
+        @Override
+        public void write(JsonWriter writer, GHData.Item item) throws IOException {
+            if (item == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.beginObject();
+            writer.name(FIELD_NAME).value(item.getProjectName());
+            writer.name(FIELD_STAR_COUNT).value(item.getStarCount());
+            writer.name(FIELD_URL).value(item.getProjectURL());
+            writer.name(FIELD_OWNER);
+            OWNER.write(writer, item.getOwner());
+            writer.endObject();
+        }
+
+        @Override
+        public GHData.Item read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return readItem(reader, null);
+        }
+    };
+
+    public final static TypeAdapter<GHData> DATA = new TypeAdapter<GHData>() {
+        @Override
+        public void write(JsonWriter writer, GHData data) throws IOException {
+            if (data == null) {
+                writer.nullValue();
+                return;
+            }
+            writer.beginObject();
+            if (data.getTotalCount() != GHData.UNKNOWN_COUNT) {
+                writer.name(FIELD_TOTAL_COUNT).value(data.getTotalCount());
+            }
+            if (data.getItems() != null) {
+                writer.name(FIELD_ITEMS);
+                writer.beginArray();
+                final List<GHData.Item> items = data.getItems();
+                for (int i = 0; i < items.size(); i++) {
+                    ITEM.write(writer, items.get(i));
+                }
+                writer.endArray();
+            }
+            writer.endObject();
+        }
+
+        @Override
+        public GHData read(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            final GHData data = new GHData();
+            final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>();
+            data.setItems(items);
+            final HashMap<GHData.Item.Owner, GHData.Item.Owner> owners = new HashMap<GHData.Item.Owner, GHData.Item.Owner>();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (FIELD_TOTAL_COUNT.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                    data.setTotalCount(reader.nextInt());
+                }
+                else if (FIELD_ITEMS.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        }
+                        else {
+                            items.add(readItem(reader, owners));
+                        }
+                    }
+                    reader.endArray();
+                }
+                else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return data;
+        }
+    };
+
+    /**
+     * @return Gson instance with the adapters registered
+     */
+    public static Gson newGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(GHData.class, DATA)
+                .registerTypeAdapter(GHData.Item.class, ITEM)
+                .registerTypeAdapter(GHData.Item.Owner.class, OWNER)
+                .create();
+    }
+
+    /**
+     * @param owners Owners met so far to share, or null to not share them
+     */
+    private static GHData.Item readItem(JsonReader reader, HashMap<GHData.Item.Owner, GHData.Item.Owner> owners)
+            throws IOException {
+        final GHData.Item item = new GHData.Item();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            }
+            else if (FIELD_NAME.equals(name)) {
+                item.setProjectName(reader.nextString());
+            }
+            else if (FIELD_STAR_COUNT.equals(name)) {
+                item.setStarCount(reader.nextInt());
+            }
+            else if (FIELD_URL.equals(name)) {
+                item.setProjectURL(reader.nextString());
+            }
+            else if (FIELD_OWNER.equals(name)) {
+                final GHData.Item.Owner owner = readOwner(reader);
+                final GHData.Item.Owner sharedOwner = (owners != null ? owners.get(owner) : null);
+                if (sharedOwner == null) {
+                    if (owners != null) {
+                        owners.put(owner, owner);
+                    }
+                    item.setOwner(owner);
+                }
+                else {
+                    item.setOwner(sharedOwner);
+                }
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return item;
+    }
+
+    private static GHData.Item.Owner readOwner(JsonReader reader) throws IOException {
+        String login = null;
+        String avatarLink = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            }
+            else if (FIELD_LOGIN.equals(name)) {
+                login = reader.nextString();
+            }
+            else if (FIELD_AVATAR_URL.equals(name)) {
+                avatarLink = reader.nextString();
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new GHData.Item.Owner(login, avatarLink);
+    }
+}
@@ -2,107 +2,277 @@ package com.ardolynk.githubapidemo;
 
 import android.app.Service;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Binder;
-import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.ResultReceiver;
-import android.util.LruCache;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.widget.Toast;
 
-import com.android.volley.Request;
+import com.android.volley.ParseError;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.ImageLoader;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HurlStack;
 import com.android.volley.toolbox.NetworkImageView;
-import com.android.volley.toolbox.StringRequest;
 import com.android.volley.toolbox.Volley;
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <p>This service is used to download project list data and avatar images</p>
- * <p>On binding, you should put your {@link ResultReceiver} as an intent extras
- * with {@link GHDataService#RECEIVER} key</p>
- *<p>The receiver bundle contains following extras
+ * <p>Bind to the service locally and register a {@link ListListener} with
+ * {@link GHDataService#setListListener(ListListener)}. Pages are handed to the listener on the main
+ * thread by reference: the item list is shared with the service (and the page cache), so it's
+ * read only and never copied or serialized on the way</p>
+ * <p>The service state is kept on the main thread, and all the work on the way to it is done elsewhere:
+ * responses are parsed (and written to the page cache) on Volley network threads, the page cache,
+ * the local index and the list snapshot are read and written on a single cache thread, and avatars
+ * are decoded on the avatar queue threads. The main thread only gets results ready to bind, and drops
+ * ones of a list replaced meanwhile</p>
+ * <p>The listener receives the page number and an integer value of flags that contains following bits
  *  <ul>
- *      <li>{@link GHDataService#RESULT_DATA} Downloaded data as a list of {@link com.ardolynk.githubapidemo.GHData.Item} objects</li>
- *      <li>{@link GHDataService#RESULT_FLAGS} is an integer value that contains following bits
- *          <ul>
- *              <li>{@link GHDataService#FLAG_APPEND} shows we have the next page data portion
- *              (otherwise our list should be cleared first)</li>
- *              <li>{@link GHDataService#FLAG_HAS_NEXT} shows we probably have next page to load</li>
- *              <li>{@link GHDataService#FLAG_CONDITION_CHANGED} shows the search string was different
- *              than previous one</li>
- *              <li>{@link GHDataService#FLAG_ERROR} shows that some error occurred, and we got no valid data</li>
- *          </ul>
- *      </li>
+ *      <li>{@link GHDataService#FLAG_APPEND} shows we have the next page data portion
+ *      (otherwise our list should be cleared first)</li>
+ *      <li>{@link GHDataService#FLAG_HAS_NEXT} shows we probably have next page to load</li>
+ *      <li>{@link GHDataService#FLAG_CONDITION_CHANGED} shows the search string was different
+ *      than previous one</li>
+ *      <li>{@link GHDataService#FLAG_ERROR} shows that some error occurred, and we got no valid data</li>
+ *      <li>{@link GHDataService#FLAG_REVALIDATED} shows the data is an updated content of the page
+ *      delivered from cache before (so it should replace that page rather than be appended)</li>
+ *      <li>{@link GHDataService#FLAG_LOCAL} shows the data is found in the local index of previously
+ *      seen repositories, it's shown until the first page arrives (or instead of it when offline)</li>
+ *      <li>{@link GHDataService#FLAG_REFRESH} shows the data is the list shown with its first pages
+ *      reloaded (see {@link GHDataService#refreshList()}), so it should be merged into the list</li>
+ *      <li>{@link GHDataService#FLAG_SNAPSHOT} shows the data is the list saved on the previous run
+ *      (see {@link GHDataService#restoreList(String)}), it's being refreshed already</li>
  *  </ul>
  * </p>
  *
  */
 public class GHDataService extends Service {
 
-    private final static String URL_TEMPLATE = "https://api.github.com/search/repositories?q=%s%%20language:Kotlin&sort=stars&order=desc&page=%d&per_page=%d";
-
-    public final static String RECEIVER = "com.ardolynk.githubapidemo.RECEIVER";
-    public final static String RESULT_DATA = "com.ardolynk.githubapidemo.RESULT_DATA";
-    public final static String RESULT_FLAGS = "com.ardolynk.githubapidemo.RESULT_FLAGS";
-
     public final static int FLAG_APPEND = 1;
     public final static int FLAG_HAS_NEXT = FLAG_APPEND << 1;
     public final static  int FLAG_CONDITION_CHANGED = FLAG_HAS_NEXT << 1;
     public final static  int FLAG_ERROR = FLAG_CONDITION_CHANGED << 1;
+    public final static  int FLAG_REVALIDATED = FLAG_ERROR << 1;
+    public final static  int FLAG_LOCAL = FLAG_REVALIDATED << 1;
+    public final static  int FLAG_REFRESH = FLAG_LOCAL << 1;
+    public final static  int FLAG_SNAPSHOT = FLAG_REFRESH << 1;
+
+    /**
+     * Receives loaded pages in page order, on the main thread
+     */
+    public interface ListListener {
+        /**
+         * @param data Page items (empty on error), read only and shared with the service
+         * @param pageNum Number of the delivered page
+         * @param flags Combination of FLAG_* bits
+         */
+        void onListLoaded(List<GHData.Item> data, int pageNum, int flags);
+    }
 
-    public final static int LIST_LOAD_FINISHED = 0;
 
-    private final static int IMAGE_CASHE_SIZE = 32;
-    private final static int PER_PAGE = 30;
+    private final static int AVATAR_HEAP_FRACTION = 8;
+    private final static int AVATAR_DISK_CACHE_SIZE = 4 * 1024 * 1024;
+    private final static int AVATAR_THREAD_COUNT = 2;
+    private final static String AVATAR_CACHE_DIR = "avatars";
+    private final static int MIN_PAGE_SIZE = 25;
+    private final static int FAST_FIRST_PAGE_SIZE = 50;
+    private final static int MAX_PAGE_SIZE = 100;
+    private final static long FAST_PAGE_LATENCY_MS = 500;
+    private final static int LOCAL_RESULT_COUNT = 30;
+    private final static int SEARCH_INDEX_MAX_ROWS = 20000;
+    private final static String DEFAULT_LANGUAGE = "Kotlin";
     private final static int STATUS_FORBIDDEN = 403;
+    private final static String PAGE_CACHE_DIR = "pages";
+    private final static long PAGE_CACHE_SIZE = 1024 * 1024;
+    private final static Object LIST_REQUEST_TAG = new Object();
+    private final static int PREFETCH_MIN_DISTANCE = 5;
+    private final static int PREFETCH_MAX_DISTANCE = 60;
+    private final static int MAX_PREFETCH_PAGES = 2;
+    private final static int PREFETCH_HEAP_FRACTION = 64;
+    private final static int PREFETCH_PAGE_BYTES = 128 * 1024;
+    private final static int MAX_CONCURRENT_PAGES = 3;
+    private final static long SEARCH_RATE_WINDOW = 60 * 1000;
+    private final static int GRAPHQL_RATE_LIMIT = 5000;
+    private final static long GRAPHQL_RATE_WINDOW = 60 * 60 * 1000;
+    private final static int MAX_RATE_LIMIT_RETRIES = 3;
+    private final static String SEARCH_INDEX_FILE = "search.index";
+    final static String SNAPSHOT_FILE = "list.snapshot";
+    private final static int MAX_SNAPSHOT_PAGES = 2;
+    private final static int MAX_REFRESH_PAGES = 1;
+    private final static String MERGED_LIST_PREFIX = "merged:";
+    private final static String SCHEME_SEPARATOR = "://";
 
-    private ArrayList<GHData.Item> mRecentData;
+    private List<GHData.Item> mRecentData;
     private int mPageNum;
     private boolean mHasNext;
-    private StringRequest mListRequest;
     private RequestQueue mRequestQueue;
-    private ImageLoader mImageLoader;
-    private ResultReceiver mListLoadReceiver;
+    private RequestQueue mAvatarQueue;
+    private GHImageLoader mImageLoader;
+    private ListListener mListListener;
     private String mActualSearchString;
     private String mRecentSearchString;
-    private Gson mGson = new Gson();
+    private GHPageCache mPageCache;
+    private ExecutorService mCacheExecutor;
+    private Handler mHandler;
+    private int mLoadGeneration;
+    private GHPrefetchPolicy mPrefetchPolicy;
+    private GHPagePipeline<GHPage> mPagePipeline;
+    private GHPagePlan mPagePlan;
+    private List<String> mLanguages = Collections.singletonList(DEFAULT_LANGUAGE);
+    private boolean mKeysetPaging;
+    private GHSearchTransport mTransport = GHSearchTransport.REST;
+    private String mListLanguage;
+    private String mMergedCacheLanguage;
+    private GHPageMerger mPageMerger;
+    private int mMergeStartPage;
+    private GHRateLimiter mRateLimiter;
+    private GHRateLimiter mGraphQLRateLimiter;
+    private GHSearchIndex mSearchIndex;
+    private int mRefreshPages;
+    private ArrayList<GHData.Item> mRefreshItems;
+    private ArrayList<GHData.Item> mShownItems;
+    private Future<GHListSnapshot> mSnapshot;
+    private GHMemoryGovernor mMemoryGovernor;
+    private volatile String mHostOverride;
+    private final GHMetrics mMetrics = new GHMetrics();
+    private final GHMetrics.Histogram mRequestTime = mMetrics.histogram(GHMetrics.PAGE_REQUEST);
+    private final GHMetrics.Histogram mParseTime = mMetrics.histogram(GHMetrics.PAGE_PARSE);
+    private final GHMetrics.Histogram mCacheReadTime = mMetrics.histogram(GHMetrics.PAGE_CACHE_READ);
+    private final GHMetrics.Histogram mDeliverTime = mMetrics.histogram(GHMetrics.PAGE_DELIVER);
+    private final GHMetrics.Counter mCacheHits = mMetrics.counter(GHMetrics.PAGE_CACHE_HIT);
+    private final GHMetrics.Counter mCacheMisses = mMetrics.counter(GHMetrics.PAGE_CACHE_MISS);
 
     @Override
     public void onCreate() {
         mRecentSearchString = "";
         mPageNum = 0;
-        mRequestQueue = Volley.newRequestQueue(this);
-        mImageLoader = new ImageLoader(mRequestQueue, new ImageLoader.ImageCache() {
-            private final LruCache<String, Bitmap> mCache = new LruCache<String, Bitmap>(IMAGE_CASHE_SIZE);
+        mHandler = new Handler();
+        mPrefetchPolicy = new GHPrefetchPolicy(PREFETCH_MIN_DISTANCE, PREFETCH_MAX_DISTANCE);
+        mPagePipeline = new GHPagePipeline<GHPage>(mListFetcher, mPageConsumer, MAX_CONCURRENT_PAGES);
+        mPagePlan = new GHPagePlan(MIN_PAGE_SIZE, MAX_PAGE_SIZE);
 
+        //Search budget of the app, it's capped even if the server allows more
+
+        final int searchRateLimit = getResources().getInteger(R.integer.search_calls_per_minute);
+        mRateLimiter = newRateLimiter(searchRateLimit, SEARCH_RATE_WINDOW);
+        mRateLimiter.setMaxLimit(searchRateLimit);
+        mGraphQLRateLimiter = newRateLimiter(GRAPHQL_RATE_LIMIT, GRAPHQL_RATE_WINDOW);
+        mPageCache = new GHPageCache(new File(getCacheDir(), PAGE_CACHE_DIR), PAGE_CACHE_SIZE);
+        mSearchIndex = new GHSearchIndex(new File(getFilesDir(), SEARCH_INDEX_FILE), SEARCH_INDEX_MAX_ROWS);
+        mCacheExecutor = Executors.newSingleThreadExecutor();
+        mShownItems = new ArrayList<GHData.Item>();
+        mMemoryGovernor = GHMemoryGovernor.forContext(this);
+
+        //Read the previous list right away, it's going to be shown before anything else
+
+        final File snapshotFile = new File(getFilesDir(), SNAPSHOT_FILE);
+        mSnapshot = mCacheExecutor.submit(new Callable<GHListSnapshot>() {
             @Override
-            public Bitmap getBitmap(String url) {
-                return mCache.get(url);
+            public GHListSnapshot call() {
+                return GHListSnapshot.read(snapshotFile);
             }
+        });
+        mRequestQueue = Volley.newRequestQueue(this, new HurlStack(mUrlRewriter));
+
+        //Avatars have a separate queue, its disk cache keeps resized images
 
+        mAvatarQueue = new RequestQueue(new DiskBasedCache(new File(getCacheDir(), AVATAR_CACHE_DIR), AVATAR_DISK_CACHE_SIZE),
+                new BasicNetwork(new HurlStack(mUrlRewriter)), AVATAR_THREAD_COUNT);
+        mAvatarQueue.start();
+        mImageLoader = new GHImageLoader(mAvatarQueue, new GHAvatarCache(mMemoryGovernor.getBudget(AVATAR_HEAP_FRACTION)),
+                getResources().getDimensionPixelSize(R.dimen.avatar_size), mMetrics);
+        mMemoryGovernor.addListener(mMemoryListener);
+    }
+
+    private GHRateLimiter newRateLimiter(int limit, long window) {
+        return new GHRateLimiter(new GHRateLimiter.Clock() {
+            @Override
+            public long now() {
+                return System.currentTimeMillis();
+            }
+        }, new GHRateLimiter.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delay) {
+                mHandler.postDelayed(task, delay);
+            }
+
+            @Override
+            public void unschedule(Runnable task) {
+                mHandler.removeCallbacks(task);
+            }
+        }, limit, window);
+    }
+
+    @Override
+    public void onDestroy() {
+        mListListener = null;
+        mRequestQueue.cancelAll(LIST_REQUEST_TAG);
+        mRateLimiter.cancelAll();
+        mGraphQLRateLimiter.cancelAll();
+        mLoadGeneration++;
+        final GHListSnapshot snapshot = makeSnapshot();
+        final File snapshotFile = new File(getFilesDir(), SNAPSHOT_FILE);
+        mCacheExecutor.execute(new Runnable() {
             @Override
-            public void putBitmap(String url, Bitmap bitmap) {
-                mCache.put(url, bitmap);
+            public void run() {
+                mSearchIndex.commit();
+                if (snapshot != null) {
+                    try {
+                        snapshot.write(snapshotFile);
+                    } catch (IOException e) {}
+                }
             }
         });
+        mMemoryGovernor.removeListener(mMemoryListener);
+        mCacheExecutor.shutdown();
+        mImageLoader.cancelPrefetch();
+        mAvatarQueue.stop();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        mMemoryGovernor.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        mMemoryGovernor.onLowMemory();
     }
 
     @Override
     public IBinder onBind(Intent intent) {
-        mListLoadReceiver = (ResultReceiver) intent.getParcelableExtra(RECEIVER);
         return new LocalBinder();
     }
 
+    /**
+     * Sets the listener to hand loaded pages to
+     *
+     * @param listener The listener, or null to stop delivery
+     */
+    public void setListListener(ListListener listener) {
+        mListListener = listener;
+    }
+
 
     /**
      * @return Number of data pages loaded from server
@@ -112,10 +282,27 @@ public class GHDataService extends Service {
     }
 
     /**
-     * @return Number of items on each loaded page
+     * @param pageNum Page number, starting from 1
+     * @return Number of rows before the page in the current list
      */
-    public int getPageSize() {
-        return PER_PAGE;
+    public int getPageOffset(int pageNum) {
+        return mPagePlan.getOffset(pageNum);
+    }
+
+    /**
+     * @param pageNum Page number, starting from 1
+     * @return Number of rows on the page of the current list (the last page may have less)
+     */
+    public int getPageSize(int pageNum) {
+        return mPagePlan.getPageSize(pageNum);
+    }
+
+    /**
+     * @param row Row of the current list
+     * @return Number of the page containing the row
+     */
+    public int getRowPage(int row) {
+        return mPagePlan.getPage(row);
     }
 
     /**
@@ -139,6 +326,71 @@ public class GHDataService extends Service {
         return mHasNext;
     }
 
+    /**
+     * <p>Sets languages of repositories to search, they're used from the next list loaded</p>
+     * <p>Several languages are searched separately and in parallel, and the results are merged
+     * by star count (see {@link GHPageMerger})</p>
+     *
+     * @param languages One or more languages (as in the <code>language:</code> search qualifier)
+     */
+    public void setLanguages(List<String> languages) {
+        if (languages.isEmpty()) {
+            throw new IllegalArgumentException("No languages to search");
+        }
+        mLanguages = new ArrayList<String>(languages);
+    }
+
+    /**
+     * <p>Sets whether lists go on by star ranges past the first {@link GHPage#MAX_SEARCH_RESULTS}
+     * results, it's used from the next list loaded</p>
+     * <p>A list of a single language is paged by offset up to the search cap (so its pages are cached
+     * and revalidated as usual), and by star ranges (see {@link GHPageMerger}) once scrolled past it.
+     * Lists of several languages are merged by star ranges from the start then</p>
+     */
+    public void setKeysetPaging(boolean keysetPaging) {
+        mKeysetPaging = keysetPaging;
+    }
+
+    /**
+     * <p>Sets the way search pages are requested, it's used from the next page request</p>
+     * <p>Pages are the same whatever the transport is, so pages cached by another one are used as well.
+     * Pages the transport can't request (see {@link GHSearchTransport#select(GHPageKey, String)}) go by
+     * {@link GHSearchTransport#REST}, every transport has a rate limiter of its own</p>
+     *
+     * @param transport {@link GHSearchTransport#REST} (the default) or {@link GHGraphQLTransport}
+     */
+    public void setTransport(GHSearchTransport transport) {
+        mTransport = transport;
+    }
+
+    /**
+     * <p>Sends all requests (search pages and avatars) to another server, keeping their paths, it's
+     * used from the next request</p>
+     * <p>This is meant for tests against a local stub of GitHub, as the one of the session harness</p>
+     *
+     * @param hostOverride Base URL of the server, e.g. <code>http://127.0.0.1:8080</code>, or null
+     *                     to send requests to their own hosts
+     */
+    public void setHostOverride(String hostOverride) {
+        mHostOverride = hostOverride;
+    }
+
+    /**
+     * Rewrites request URLs to the host override (if any), it's called on network threads
+     */
+    private final HurlStack.UrlRewriter mUrlRewriter = new HurlStack.UrlRewriter() {
+        @Override
+        public String rewriteUrl(String originalUrl) {
+            final String hostOverride = mHostOverride;
+            final int hostStart = originalUrl.indexOf(SCHEME_SEPARATOR);
+            if (hostOverride == null || hostStart < 0) {
+                return originalUrl;
+            }
+            final int pathStart = originalUrl.indexOf('/', hostStart + SCHEME_SEPARATOR.length());
+            return hostOverride + (pathStart >= 0 ? originalUrl.substring(pathStart) : "");
+        }
+    };
+
     /**
      * Initiates loading a first portion of project list
      *
@@ -146,100 +398,880 @@ public class GHDataService extends Service {
      */
     public void startLoadingList(String searchString) {
         mActualSearchString = (searchString != null ? searchString : "");
-        processLoadingList(false, searchString);
+        cancelLoading();
+        startList(choosePagePlan());
+        resetPipeline(1);
+        mPagePipeline.request(1);
+        queryLocalIndex();
+    }
+
+    /**
+     * <p>Shows the list saved when the service stopped last time, and refreshes it</p>
+     * <p>The saved list is read and decoded on a worker thread, then delivered with
+     * {@link GHDataService#FLAG_SNAPSHOT} and reloaded as by {@link GHDataService#refreshList()}.
+     * If there's no matching list saved, it's loaded as by {@link GHDataService#startLoadingList(String)}.
+     * This should be called instead of the latter for the first list the service shows</p>
+     *
+     * @param searchString Search string of the list to show (the saved one is shown only if it matches)
+     */
+    public void restoreList(String searchString) {
+        final String actualSearchString = (searchString != null ? searchString : "");
+        mActualSearchString = actualSearchString;
+        final Future<GHListSnapshot> snapshotRead = mSnapshot;
+        mSnapshot = null;
+        if (snapshotRead == null || mPageNum != 0) {
+            startLoadingList(actualSearchString);
+            return;
+        }
+
+        //The snapshot is read first thing on the executor, so it's there by the time this task runs
+
+        final int generation = mLoadGeneration;
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                GHListSnapshot snapshot = null;
+                try {
+                    snapshot = snapshotRead.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {}
+                final GHListSnapshot result = snapshot;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+
+                        //Dropped if another list is requested meanwhile
+
+                        if (generation != mLoadGeneration) {
+                            return;
+                        }
+                        if (result == null || mPageNum != 0 || result.getItems().isEmpty()
+                                || !result.getSearchString().equals(actualSearchString)) {
+                            startLoadingList(actualSearchString);
+                        }
+                        else {
+                            deliverSnapshot(result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void deliverSnapshot(GHListSnapshot snapshot) {
+        mActualSearchString = snapshot.getSearchString();
+        mRecentSearchString = mActualSearchString;
+        mPageNum = snapshot.getPageNum();
+        mHasNext = snapshot.hasNext();
+        mShownItems = new ArrayList<GHData.Item>(snapshot.getItems());
+        startList(snapshot.getPagePlan());
+        final int lastPageStart = Math.min(mShownItems.size(), mPagePlan.getOffset(mPageNum));
+        mRecentData = Collections.unmodifiableList(new ArrayList<GHData.Item>(
+                mShownItems.subList(lastPageStart, mShownItems.size())));
+        notifyListener(Collections.unmodifiableList(snapshot.getItems()), mPageNum,
+                FLAG_SNAPSHOT | (mHasNext ? FLAG_HAS_NEXT : 0));
+        refreshList();
+    }
+
+    /**
+     * @return Snapshot of the first pages of the shown list, or null if nothing is shown
+     */
+    private GHListSnapshot makeSnapshot() {
+        if (mPageNum == 0 || mShownItems.isEmpty()) {
+            return null;
+        }
+        final int pageNum = Math.min(mPageNum, MAX_SNAPSHOT_PAGES);
+        final List<GHData.Item> items = new ArrayList<GHData.Item>(
+                mShownItems.subList(0, Math.min(mShownItems.size(), mPagePlan.getOffset(pageNum + 1))));
+        return new GHListSnapshot(items, pageNum, mHasNext || pageNum < mPageNum, mRecentSearchString, mPagePlan);
+    }
+
+    /**
+     * @return Number of pages prefetched ahead (and held until shown) the memory budget allows
+     */
+    private int getMaxPrefetchPages() {
+        return Math.min(MAX_PREFETCH_PAGES, mMemoryGovernor.getBudget(PREFETCH_HEAP_FRACTION) / PREFETCH_PAGE_BYTES);
+    }
+
+    /**
+     * Shrinks the avatar cache and prefetched pages to the memory budget, and drops what can be loaded
+     * again once it's low
+     */
+    private final GHMemoryGovernor.Listener mMemoryListener = new GHMemoryGovernor.Listener() {
+        @Override
+        public void onMemoryBudgetChanged(GHMemoryGovernor governor) {
+            mImageLoader.getAvatarCache().resize(governor.getBudget(AVATAR_HEAP_FRACTION));
+            mPagePipeline.dropPrefetched(getMaxPrefetchPages());
+            if (governor.isTrimmingRows()) {
+                GHAvatarRequest.releaseReusableBitmaps();
+                trimShownItems();
+            }
+            if (governor.isReleasingCaches()) {
+                mCacheExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mSearchIndex.release();
+                    }
+                });
+            }
+        }
+    };
+
+    /**
+     * <p>Keeps only the rows of the shown list that go to the snapshot, the rest are reloaded
+     * by {@link GHDataService#reloadPage(int)} once needed</p>
+     * <p>Pages of a single language are in the page cache already, merged pages are put there
+     * under a key of their own</p>
+     */
+    private void trimShownItems() {
+        final int keptCount = mPagePlan.getOffset(MAX_SNAPSHOT_PAGES + 1);
+        if (mRefreshPages > 0 || mShownItems.size() <= keptCount) {
+            return;
+        }
+        for (int page = MAX_SNAPSHOT_PAGES + 1; mPagePlan.getOffset(page) < mShownItems.size(); page++) {
+            if (isMergedPage(page)) {
+                final GHPageKey key = makeCacheKey(page);
+                final List<GHData.Item> items = new ArrayList<GHData.Item>(mShownItems.subList(key.getOffset(),
+                        Math.min(mShownItems.size(), key.getOffset() + key.getPerPage())));
+                mCacheExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mPageCache.put(key, null, GHData.UNKNOWN_COUNT, items);
+                    }
+                });
+            }
+        }
+        mShownItems.subList(keptCount, mShownItems.size()).clear();
+        mShownItems.trimToSize();
+    }
+
+    /**
+     * <p>Reloads the first pages of the current search (up to {@link GHDataService#MAX_REFRESH_PAGES}),
+     * bypassing the page cache</p>
+     * <p>The reloaded pages are delivered at once with {@link GHDataService#FLAG_REFRESH}, followed by
+     * the rest of the rows shown, so the shown list can be updated in place. Other pages kept for
+     * the snapshot are revalidated by their ETags then, and the ones after them are revalidated as usual
+     * once they're read from the page cache again. If nothing is shown yet, the list is loaded from scratch</p>
+     */
+    public void refreshList() {
+        if (mPageNum == 0 || !mActualSearchString.equals(mRecentSearchString)) {
+            startLoadingList(mActualSearchString);
+            return;
+        }
+        cancelLoading();
+        mRefreshPages = Math.min(mPageNum, MAX_REFRESH_PAGES);
+        mRefreshItems = new ArrayList<GHData.Item>(mShownItems.size());
+        resetPipeline(1);
+        mPagePipeline.request(mRefreshPages);
+    }
+
+    /**
+     * <p>Page sizes for a new list: the first page is bigger if recent pages came fast, and pages
+     * grow up to {@link GHDataService#MAX_PAGE_SIZE} as the list is scrolled</p>
+     * <p>Volley hands over a response only once its body is read to the end, so a small first page
+     * is what puts the first rows on screen early, while big later pages save requests</p>
+     */
+    private GHPagePlan choosePagePlan() {
+        final boolean fast = (mRequestTime.getCount() > 0 && mPrefetchPolicy.getLatency() < FAST_PAGE_LATENCY_MS);
+        return new GHPagePlan(fast ? FAST_FIRST_PAGE_SIZE : MIN_PAGE_SIZE, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Sets up loading a new list of the current search string and languages
+     */
+    private void startList(GHPagePlan plan) {
+        mPagePlan = plan;
+        mMergedCacheLanguage = MERGED_LIST_PREFIX + TextUtils.join(",", mLanguages);
+        mMergeStartPage = 1;
+        if (mLanguages.size() > 1) {
+            mListLanguage = null;
+            mPageMerger = new GHPageMerger(mPageFetcher, mActualSearchString, mLanguages, plan, mKeysetPaging);
+        }
+        else {
+            mListLanguage = mLanguages.get(0);
+            mPageMerger = null;
+        }
+    }
+
+    /**
+     * <p>Goes on with a single language list by star ranges after a page that reached the search cap,
+     * if keyset paging is on</p>
+     * <p>Pages before stay paged by offset, so they're cached and revalidated as usual</p>
+     */
+    private void startKeysetPaging(GHPageKey key, GHPage page) {
+        if (!mKeysetPaging || mPageMerger != null || page.hasNext()
+                || page.getItems().size() < key.getPerPage()
+                || key.getOffset() + key.getPerPage() < GHPage.MAX_SEARCH_RESULTS) {
+            return;
+        }
+        mPageMerger = new GHPageMerger(mPageFetcher, mActualSearchString, mLanguages, mPagePlan, true);
+        mPageMerger.startAfter(key.getPage() + 1, page.getItems());
+        mMergeStartPage = key.getPage() + 1;
+    }
+
+    /**
+     * @return True if the page of the shown list is merged by {@link GHPageMerger}
+     */
+    private boolean isMergedPage(int page) {
+        return (mPageMerger != null && page >= mMergeStartPage);
     }
 
     /**
-     * Initiates loading a next portion of project list (i.e. the next page)
+     * @return Key the page of the shown list is cached with, merged pages have a language of their own
+     */
+    private GHPageKey makeCacheKey(int page) {
+        return mPagePlan.makeKey(mRecentSearchString, (isMergedPage(page) ? mMergedCacheLanguage : mListLanguage),
+                page);
+    }
+
+    private void resetPipeline(int firstPage) {
+        mPagePipeline.reset(mActualSearchString, mListLanguage, mPagePlan, firstPage);
+    }
+
+    private void cancelLoading() {
+
+        //Pending requests, revalidations and prefetches belong to the list we're going to replace
+
+        mRequestQueue.cancelAll(LIST_REQUEST_TAG);
+        mRateLimiter.cancelAll();
+        mGraphQLRateLimiter.cancelAll();
+        mImageLoader.cancelPrefetch();
+        mLoadGeneration++;
+        mRefreshPages = 0;
+        mRefreshItems = null;
+        if (mPageMerger != null) {
+            mPageMerger.restart();
+        }
+    }
+
+    /**
+     * <p>Initiates loading a next portion of project list (i.e. the next page)</p>
+     * <p>A prefetched page is delivered instantly, a page being prefetched is delivered
+     * as soon as it arrives</p>
      *
      * @see GHDataService#getPageNum()
-     * @see GHDataService#getPageSize()
+     * @see GHDataService#getPageSize(int)
      */
     public void continueLoadingList() {
-        processLoadingList(true, mRecentSearchString);
+        mPagePipeline.request(mPageNum + 1);
     }
 
-    private void processLoadingList(final boolean continueLoading, String searchString) {
-        final int nextPageNum = (continueLoading ? mPageNum + 1 : 1);
-        String url = null;
-        try {
-            url = String.format(URL_TEMPLATE, URLEncoder.encode(mActualSearchString, "UTF-8"), nextPageNum, PER_PAGE);
-        } catch (UnsupportedEncodingException e) {}
-        if (mListRequest != null) {
-            mListRequest.cancel();
+    /**
+     * Reports the list scroll position, so the next pages can be prefetched before
+     * the user reaches the end of the list
+     *
+     * @param lastVisiblePosition Position of the last visible row
+     * @param itemCount Number of loaded rows
+     */
+    public void onListScrolled(int lastVisiblePosition, int itemCount) {
+        mPrefetchPolicy.onScroll(lastVisiblePosition, SystemClock.uptimeMillis());
+        final int distance = mPrefetchPolicy.getPrefetchDistance();
+        if (itemCount == 0 || itemCount - lastVisiblePosition > distance || !mHasNext
+                || !mActualSearchString.equals(mRecentSearchString)) {
+            return;
         }
-        mListRequest = new StringRequest(Request.Method.GET, url,
-                new Response.Listener<String>() {
+
+        //Prefetch as many pages as the user is expected to scroll through while they're loading
+
+        final int prefetchEnd = lastVisiblePosition + distance;
+        final int maxPrefetchPages = getMaxPrefetchPages();
+        for (int i = 1; i <= maxPrefetchPages && (i == 1 || mPagePlan.getOffset(mPageNum + i) < prefetchEnd); i++) {
+
+            //Pages past the search cap are there only by star ranges, once the page reaching it is loaded
+
+            if (!isMergedPage(mPageNum + i) && mPagePlan.getOffset(mPageNum + i) >= GHPage.MAX_SEARCH_RESULTS) {
+                break;
+            }
+            mPagePipeline.prefetch(mPageNum + i);
+        }
+    }
+
+    /**
+     * <p>Delivers a page of the shown list once again, e.g. after the listener dropped its rows
+     * to save memory</p>
+     * <p>The page is taken from memory or the page cache, and loaded from network if it's in neither.
+     * A merged page can't be loaded on its own, so the list is refreshed then, and it ends with
+     * the pages still shown (see {@link GHDataService#refreshList()}). It's delivered as
+     * {@link GHDataService#FLAG_REVALIDATED}, so it replaces the page shown</p>
+     *
+     * @param pageNum Page number, starting from 1
+     */
+    public void reloadPage(final int pageNum) {
+        if (pageNum < 1 || pageNum > mPageNum || mRefreshPages > 0
+                || !mActualSearchString.equals(mRecentSearchString)) {
+            return;
+        }
+        final GHPageKey key = makeCacheKey(pageNum);
+        final int end = key.getOffset() + key.getPerPage();
+        if (key.getOffset() < mShownItems.size() && (end <= mShownItems.size() || pageNum == mPageNum)) {
+            deliverReloadedPage(key, new ArrayList<GHData.Item>(
+                    mShownItems.subList(key.getOffset(), Math.min(end, mShownItems.size()))));
+            return;
+        }
+        final int generation = mLoadGeneration;
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final GHPageCache.Entry entry = mPageCache.get(key);
+                mHandler.post(new Runnable() {
                     @Override
-                    public void onResponse(String response) {
-                        final Bundle resultBundle = new Bundle();
-                        int resultFlags = 0;
-                        try {
-                            final ArrayList<GHData.Item> newData = mGson.fromJson(response, GHData.class).getItems();
-                            resultBundle.putSerializable(RESULT_DATA, newData);
-                            if (newData.size() == PER_PAGE) {
-                                mHasNext = true;
-                                resultFlags |= FLAG_HAS_NEXT;
+                    public void run() {
+                        if (generation != mLoadGeneration) {
+                            return;
+                        }
+                        if (entry != null) {
+                            deliverReloadedPage(key, entry.items);
+                        }
+                        else if (isMergedPage(pageNum)) {
+                            refreshList();
+                        }
+                        else {
+                            requestPage(key, new GHPagePipeline.Callback<GHPage>() {
+                                @Override
+                                public void onSuccess(GHPage result) {
+                                    if (generation == mLoadGeneration) {
+                                        deliverReloadedPage(key, result.getItems());
+                                    }
+                                }
+
+                                @Override
+                                public void onFailure(Exception error) {
+
+                                    //Rows stay dropped until the list is refreshed
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void deliverReloadedPage(GHPageKey key, List<GHData.Item> items) {
+        notifyListener(Collections.unmodifiableList(items), key.getPage(),
+                FLAG_REVALIDATED | FLAG_APPEND | (mHasNext ? FLAG_HAS_NEXT : 0));
+    }
+
+    private final GHPagePipeline.Consumer<GHPage> mPageConsumer = new GHPagePipeline.Consumer<GHPage>() {
+        @Override
+        public void onPageReady(GHPageKey key, GHPage page) {
+            if (mRefreshPages > 0) {
+                onRefreshPageReady(key, page);
+                return;
+            }
+            startKeysetPaging(key, page);
+            deliverPage(key, page, key.getPage() > 1, 0);
+            if (page.isCached()) {
+                revalidatePage(key, page.getEtag());
+            }
+        }
+
+        @Override
+        public void onPageFailed(GHPageKey key, Exception error) {
+            if (mRefreshPages > 0) {
+
+                //Keep the list shown, loading goes on after its last page
+
+                mRefreshPages = 0;
+                mRefreshItems = null;
+                resetPipeline(mPageNum + 1);
+                deliverError((VolleyError) error, true);
+                return;
+            }
+            deliverError((VolleyError) error, key.getPage() > 1);
+        }
+    };
+
+    /**
+     * Fetches list pages, merging pages of every language if there are several (or pages of star ranges
+     * past the search cap)
+     */
+    private final GHPagePipeline.Fetcher<GHPage> mListFetcher = new GHPagePipeline.Fetcher<GHPage>() {
+        @Override
+        public void fetch(GHPageKey key, GHPagePipeline.Callback<GHPage> callback) {
+            (isMergedPage(key.getPage()) ? mPageMerger : mPageFetcher).fetch(key, callback);
+        }
+
+        @Override
+        public void cancel(GHPageKey key) {
+            (isMergedPage(key.getPage()) ? mPageMerger : mPageFetcher).cancel(key);
+        }
+    };
+
+    /**
+     * Looks up the page cache first, and loads the page from network if it's not there
+     */
+    private final GHPagePipeline.Fetcher<GHPage> mPageFetcher = new GHPagePipeline.Fetcher<GHPage>() {
+        @Override
+        public void fetch(final GHPageKey key, final GHPagePipeline.Callback<GHPage> callback) {
+            if (mRefreshPages > 0) {
+                requestPage(key, callback);
+                return;
+            }
+            final int generation = mLoadGeneration;
+            mCacheExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final long startTime = GHMetrics.Histogram.start();
+                    GHTrace.beginBackground("GH page cache read");
+                    final GHPageCache.Entry entry;
+                    try {
+                        entry = mPageCache.get(key);
+                    } finally {
+                        GHTrace.end();
+                        mCacheReadTime.stop(startTime);
+                    }
+                    (entry != null ? mCacheHits : mCacheMisses).increment();
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation != mLoadGeneration) {
+                                return;
                             }
-                            if (!mActualSearchString.equals(mRecentSearchString)) {
-                                resultFlags |= FLAG_CONDITION_CHANGED;
+                            if (entry != null) {
+                                onPageFetched(new GHPage(key, entry.items, entry.etag, false, true, entry.totalCount), callback);
                             }
-
-                            mRecentData = newData;
-                            mRecentSearchString = mActualSearchString;
-                            if (!continueLoading) {
-                                mPageNum = 0;
+                            else {
+                                requestPage(key, callback);
                             }
-                            mPageNum++;
-                        }
-                        catch(JsonSyntaxException exception) {
-                            Toast.makeText(GHDataService.this, R.string.parse_error, Toast.LENGTH_LONG).show();
                         }
+                    });
+                }
+            });
+        }
 
-                        if (continueLoading) {
-                            resultFlags |= FLAG_APPEND;
-                        }
-                        resultBundle.putInt(RESULT_FLAGS, resultFlags);
-                        mListLoadReceiver.send(LIST_LOAD_FINISHED, resultBundle);
+        @Override
+        public void cancel(GHPageKey key) {
+
+            //Network requests are cancelled all at once by tag, and cache lookups are dropped by generation
+        }
+    };
+
+    private void requestPage(GHPageKey key, GHPagePipeline.Callback<GHPage> callback) {
+        submitPageRequest(key, callback, 0, 0);
+    }
+
+    /**
+     * Queues a page request to the rate limiter, visible pages go first
+     *
+     * @param attempt Number of retries after the rate limit was hit
+     * @param delay Delay before the request in milliseconds
+     */
+    private void submitPageRequest(final GHPageKey key, final GHPagePipeline.Callback<GHPage> callback,
+                                   final int attempt, long delay) {
+        final GHRateLimiter.Priority priority = (mPagePipeline.isRequested(key.getPage()) ?
+                GHRateLimiter.Priority.VISIBLE : GHRateLimiter.Priority.PREFETCH);
+        final GHSearchTransport transport = mTransport.select(key, null);
+        final GHRateLimiter rateLimiter = getRateLimiter(transport);
+        final int generation = mLoadGeneration;
+        rateLimiter.submit(priority, new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mLoadGeneration) {
+                    return;
+                }
+                final long startTime = GHMetrics.Histogram.start();
+                final GHSearchRequest request = transport.newRequest(key, null, mPageCache,
+                        new Response.Listener<GHPage>() {
+                            @Override
+                            public void onResponse(GHPage response) {
+                                final long latency = (System.nanoTime() - startTime) / 1000;
+                                mRequestTime.record(latency);
+                                mPrefetchPolicy.onPageLatency(latency / 1000);
+                                onPageFetched(response, callback);
+                            }
+                        }, new Response.ErrorListener() {
+                            @Override
+                            public void onErrorResponse(VolleyError error) {
+                                if (isRateLimited(rateLimiter, error) && attempt < MAX_RATE_LIMIT_RETRIES) {
+
+                                    //Retry once the limit window resets
+
+                                    if (attempt == 0 && mPagePipeline.isRequested(key.getPage())) {
+                                        Toast.makeText(GHDataService.this, R.string.forbidden_error, Toast.LENGTH_LONG).show();
+                                    }
+                                    submitPageRequest(key, callback, attempt + 1, rateLimiter.getRetryDelay(attempt + 1));
+                                    return;
+                                }
+                                callback.onFailure(error);
+                            }
+                        });
+                request.setRateLimiter(rateLimiter);
+                request.setParseTime(mParseTime);
+                request.setTag(LIST_REQUEST_TAG);
+                mRequestQueue.add(request);
+            }
+        }, delay);
+    }
+
+    /**
+     * @return Rate limiter of requests going by the transport, the GraphQL API has a budget of its own
+     */
+    private GHRateLimiter getRateLimiter(GHSearchTransport transport) {
+        return (transport == GHSearchTransport.REST ? mRateLimiter : mGraphQLRateLimiter);
+    }
 
-                        mListRequest = null;
+    private static boolean isRateLimited(GHRateLimiter rateLimiter, VolleyError error) {
+        return (error.networkResponse != null
+                && rateLimiter.onResponse(error.networkResponse.statusCode, error.networkResponse.headers));
+    }
+
+    private void onPageFetched(GHPage page, GHPagePipeline.Callback<GHPage> callback) {
+
+        //Pages are fetched for a single language, merged pages are made of them
+
+        if (!page.isCached()) {
+            addToLocalIndex(page.getKey(), page.getItems());
+        }
+        if (!mPagePipeline.isRequested(page.getKey().getPage()) && !mRateLimiter.isLow(GHRateLimiter.Priority.AVATAR)) {
+
+            //Prefetched page, warm up avatar cache for it unless we're short of budget
+
+            for (GHData.Item item : page.getItems()) {
+                if (item.getOwner() != null) {
+                    mImageLoader.prefetch(GHImageLoader.getSizedUrl(item.getOwner().getAvatarLink(),
+                            mImageLoader.getAvatarSize()));
+                }
+            }
+        }
+        callback.onSuccess(page);
+    }
+
+    private void deliverError(VolleyError error, boolean continueLoading) {
+        int resultFlags = FLAG_ERROR;
+        if (!mActualSearchString.equals(mRecentSearchString)) {
+            resultFlags |= FLAG_CONDITION_CHANGED;
+        }
+        if (continueLoading) {
+            resultFlags |= FLAG_APPEND;
+        }
+        final int errorStringResource;
+        if (error instanceof ParseError) {
+            errorStringResource = R.string.parse_error;
+        }
+        else if (error.networkResponse != null && error.networkResponse.statusCode == STATUS_FORBIDDEN) {
+            errorStringResource = R.string.forbidden_error;
+        }
+        else {
+            errorStringResource = R.string.network_error;
+        }
+        Toast.makeText(GHDataService.this, errorStringResource, Toast.LENGTH_LONG).show();
+        if ((resultFlags & FLAG_CONDITION_CHANGED) != 0) {
+            mShownItems.clear();
+        }
+        notifyListener(Collections.<GHData.Item>emptyList(), mPageNum, resultFlags);
+
+        mRecentSearchString = mActualSearchString;
+    }
+
+    private void revalidatePage(final GHPageKey key, final String etag) {
+        final GHSearchTransport transport = mTransport.select(key, etag);
+        final GHRateLimiter rateLimiter = getRateLimiter(transport);
+        if (rateLimiter.isLow(GHRateLimiter.Priority.PREFETCH)) {
+
+            //Keep the budget for visible pages, cached content is good enough for now
+
+            return;
+        }
+        rateLimiter.submit(GHRateLimiter.Priority.PREFETCH, new Runnable() {
+            @Override
+            public void run() {
+                sendRevalidationRequest(transport, rateLimiter, key, etag);
+            }
+        });
+    }
+
+    private void sendRevalidationRequest(GHSearchTransport transport, final GHRateLimiter rateLimiter,
+                                         final GHPageKey key, String etag) {
+        final GHSearchRequest request = transport.newRequest(key, etag, mPageCache,
+                new Response.Listener<GHPage>() {
+                    @Override
+                    public void onResponse(GHPage response) {
+
+                        //Nothing to do if the page is not modified, otherwise replace the cached content
+
+                        if (!response.isNotModified() && key.getSearchString().equals(mRecentSearchString)
+                                && key.getPage() <= mPageNum) {
+                            deliverPage(key, response, true, FLAG_REVALIDATED);
+                        }
+                        if (!response.isNotModified()) {
+                            addToLocalIndex(key, response.getItems());
+                        }
                     }
                 }, new Response.ErrorListener() {
                     @Override
                     public void onErrorResponse(VolleyError error) {
-                        final Bundle resultBundle = new Bundle();
-                        int resultFlags = FLAG_ERROR;
-                        if (!mActualSearchString.equals(mRecentSearchString)) {
-                            resultFlags |= FLAG_CONDITION_CHANGED;
+
+                        //Cached data is already shown, so there's nothing to report
+
+                        isRateLimited(rateLimiter, error);
+                    }
+                });
+        request.setRateLimiter(rateLimiter);
+        request.setParseTime(mParseTime);
+        request.setTag(LIST_REQUEST_TAG);
+        mRequestQueue.add(request);
+    }
+
+    /**
+     * Revalidates shown pages from <code>firstPage</code> to <code>lastPage</code> (inclusive) by the ETags
+     * they're cached with, merged pages have none
+     */
+    private void revalidateShownPages(int firstPage, int lastPage) {
+        final List<GHPageKey> keys = new ArrayList<GHPageKey>();
+        for (int page = firstPage; page <= lastPage && !isMergedPage(page); page++) {
+            keys.add(makeCacheKey(page));
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        final int generation = mLoadGeneration;
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final GHPageKey key : keys) {
+                    final GHPageCache.Entry entry = mPageCache.get(key);
+                    if (entry == null || entry.etag == null) {
+                        continue;
+                    }
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (generation == mLoadGeneration) {
+                                revalidatePage(key, entry.etag);
+                            }
                         }
-                        if (continueLoading) {
-                            resultFlags |= FLAG_APPEND;
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows repositories of the list languages found in the local index while the first page is loading,
+     * the first page replaces them
+     */
+    private void queryLocalIndex() {
+        final int generation = mLoadGeneration;
+        final String searchString = mActualSearchString;
+        final List<String> languages = mLanguages;
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<GHData.Item> items = mSearchIndex.query(searchString, languages, LOCAL_RESULT_COUNT);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+
+                        //Not needed anymore once the first page is delivered (e.g. from cache)
+
+                        if (generation == mLoadGeneration && mPagePipeline.getNextPage() == 1 && !items.isEmpty()) {
+                            deliverLocalResults(items);
                         }
-                        resultBundle.putInt(RESULT_FLAGS, resultFlags);
-                        final int errorStringResource = (error.networkResponse.statusCode == STATUS_FORBIDDEN ?
-                                R.string.forbidden_error : R.string.network_error);
-                        Toast.makeText(GHDataService.this, errorStringResource, Toast.LENGTH_LONG).show();
-                        mListLoadReceiver.send(LIST_LOAD_FINISHED, resultBundle);
-
-                        mRecentSearchString = mActualSearchString;
-                        mListRequest = null;
                     }
                 });
+            }
+        });
+    }
+
+    private void addToLocalIndex(final GHPageKey key, final List<GHData.Item> items) {
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSearchIndex.add(key.getLanguage(), items);
+            }
+        });
+    }
+
+    private void deliverLocalResults(List<GHData.Item> items) {
+        int resultFlags = FLAG_LOCAL;
+        if (!mActualSearchString.equals(mRecentSearchString)) {
+            resultFlags |= FLAG_CONDITION_CHANGED;
+        }
+
+        //The list now shows this search, so a failure of the first page won't clear it
+
+        mRecentSearchString = mActualSearchString;
+        mRecentData = items;
+        mHasNext = false;
+        mPageNum = 0;
+        mShownItems.clear();
+        notifyListener(Collections.unmodifiableList(items), 0, resultFlags);
+    }
+
+    private void onRefreshPageReady(GHPageKey key, GHPage page) {
+        mRefreshItems.addAll(page.getItems());
+        final boolean lastPage = (key.getPage() >= mRefreshPages || !page.hasNext());
+        if (!lastPage) {
+            return;
+        }
+
+        //Rows shown after the refreshed pages stay, unless the list ends earlier now.
+        //Pages trimmed (see trimShownItems()) are not shown anymore, they're loaded again as usual
+
+        int pageNum = key.getPage();
+        if (page.hasNext()) {
+            pageNum = mPageNum;
+            while (pageNum > key.getPage() && mPagePlan.getOffset(pageNum) >= mShownItems.size()) {
+                pageNum--;
+            }
+            mRefreshItems.addAll(mShownItems.subList(
+                    Math.min(mShownItems.size(), mPagePlan.getOffset(key.getPage() + 1)), mShownItems.size()));
+        }
+        final List<GHData.Item> items = Collections.unmodifiableList(mRefreshItems);
+        mShownItems = mRefreshItems;
+        mRefreshPages = 0;
+        mRefreshItems = null;
+        mHasNext = (pageNum == key.getPage() ? page.hasNext() : (pageNum < mPageNum || mHasNext));
+        mPageNum = pageNum;
+        mRecentData = Collections.unmodifiableList(new ArrayList<GHData.Item>(mShownItems.subList(
+                Math.min(mShownItems.size(), mPagePlan.getOffset(mPageNum)), mShownItems.size())));
+        revalidateShownPages(key.getPage() + 1, Math.min(mPageNum, MAX_SNAPSHOT_PAGES));
+
+        //Further pages are loaded again as usual
+
+        resetPipeline(mPageNum + 1);
+
+        int resultFlags = FLAG_REFRESH;
+        if (mHasNext) {
+            resultFlags |= FLAG_HAS_NEXT;
+        }
+        notifyListener(items, mPageNum, resultFlags);
+    }
+
+    /**
+     * Hands the data to the listener, the time it takes (including showing the data) is recorded
+     */
+    private void notifyListener(List<GHData.Item> data, int pageNum, int flags) {
+        if (mListListener == null) {
+            return;
+        }
+        final long startTime = GHMetrics.Histogram.start();
+        GHTrace.begin("GH page deliver");
+        try {
+            mListListener.onListLoaded(data, pageNum, flags);
+        } finally {
+            GHTrace.end();
+            mDeliverTime.stop(startTime);
+        }
+    }
+
+    private void deliverPage(GHPageKey key, GHPage page, boolean continueLoading, int extraFlags) {
+        int resultFlags = extraFlags;
+
+        //Hand over the very same list, just protected from modification
 
-        mRequestQueue.add(mListRequest);
+        final List<GHData.Item> items = page.getItems();
+        final List<GHData.Item> newData = Collections.unmodifiableList(items);
+        if ((extraFlags & FLAG_REVALIDATED) == 0 || key.getPage() == mPageNum) {
+            mHasNext = (page.hasNext() || (!isMergedPage(key.getPage()) && isMergedPage(key.getPage() + 1)));
+        }
+        if (mHasNext) {
+            resultFlags |= FLAG_HAS_NEXT;
+        }
+        if (!mActualSearchString.equals(mRecentSearchString)) {
+            resultFlags |= FLAG_CONDITION_CHANGED;
+        }
+
+        if ((extraFlags & FLAG_REVALIDATED) == 0) {
+            mRecentData = newData;
+            mRecentSearchString = mActualSearchString;
+
+            //Pages are delivered in order, so this is the number of loaded pages
+
+            mPageNum = key.getPage();
+            if (mPageNum == 1) {
+                mShownItems.clear();
+            }
+
+            //Pages after trimmed ones are not kept (see trimShownItems())
+
+            if (mShownItems.size() == key.getOffset()) {
+                mShownItems.addAll(items);
+            }
+        }
+        else if (key.getOffset() < mShownItems.size()) {
+            final int start = key.getOffset();
+            final int end = Math.min(mShownItems.size(), start + key.getPerPage());
+            mShownItems.subList(start, end).clear();
+            mShownItems.addAll(start, items);
+        }
+
+        if (continueLoading) {
+            resultFlags |= FLAG_APPEND;
+        }
+        notifyListener(newData, key.getPage(), resultFlags);
     }
 
     /**
-     * Loads an avatar instantly into {@link NetworkImageView} object
+     * <p>Loads an avatar instantly into {@link NetworkImageView} object</p>
+     * <p>The image is requested and decoded at the avatar view size. A request for a recycled view
+     * is cancelled when the view gets a new URL</p>
      *
      * @param imageView Destination view object
      * @param item Source data item containing image URL
      */
     public void loadAvatar(NetworkImageView imageView, GHData.Item item) {
-        final String url = item.getOwner().getAvatarLink();
+        loadAvatarUrl(imageView, getAvatarUrl(item.getOwner() != null ? item.getOwner().getAvatarLink() : null));
+    }
+
+    /**
+     * Same as {@link GHDataService#loadAvatar(NetworkImageView, GHData.Item)}, but for an URL
+     * already returned by {@link GHDataService#getAvatarUrl(String)} (so it can be reused for rows of the same owner)
+     */
+    public void loadAvatarUrl(NetworkImageView imageView, String avatarUrl) {
         final int placeholderID = R.drawable.avatar_placeholder;
-        mImageLoader.get(url, ImageLoader.getImageListener(imageView, placeholderID, placeholderID));
-        imageView.setImageUrl(url, mImageLoader);
+        imageView.setDefaultImageResId(placeholderID);
+        imageView.setErrorImageResId(placeholderID);
+        imageView.setImageUrl(avatarUrl, mImageLoader);
+    }
+
+    /**
+     * @return URL of the avatar image at the avatar view size
+     */
+    public String getAvatarUrl(String avatarLink) {
+        return GHImageLoader.getSizedUrl(avatarLink, mImageLoader.getAvatarSize());
+    }
+
+    /**
+     * @return Rate limiter of first pages of lists, it's the one of the transport set
+     */
+    public GHRateLimiter getRateLimiter() {
+        return getRateLimiter(mTransport);
+    }
+
+    /**
+     * @return Memory budget of the app, also to register listeners trimming their memory
+     */
+    public GHMemoryGovernor getMemoryGovernor() {
+        return mMemoryGovernor;
+    }
+
+    /**
+     * @return Pipeline stage metrics (see {@link GHMetrics} for stage names)
+     */
+    public GHMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * @return Avatar cache with its hit/miss/eviction counters
+     */
+    public GHAvatarCache getAvatarCache() {
+        return mImageLoader.getAvatarCache();
+    }
+
+    /**
+     * Prints pipeline metrics, e.g.
+     * <code>adb shell dumpsys activity service com.ardolynk.githubapidemo/.GHDataService</code>
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mMetrics.dump(writer);
+        writer.println("avatar cache: " + mImageLoader.getAvatarCache());
+        writer.println("rate limit remaining: " + mRateLimiter.getRemaining());
+        writer.println("GraphQL rate limit remaining: " + mGraphQLRateLimiter.getRemaining());
     }
 
     public class LocalBinder extends Binder {
@@ -247,5 +1279,9 @@ public class GHDataService extends Service {
             return GHDataService.this;
         }
 
+        public GHMetrics getMetrics() {
+            return mMetrics;
+        }
+
     }
 }
@@ -0,0 +1,205 @@
+package com.ardolynk.githubapidemo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * <p>Streaming parser for GitHub GraphQL repository search responses (see {@link GHGraphQLRequest})</p>
+ * <p>Reads the search connection into {@link GHData}: the repository count, the end cursor and the nodes,
+ * with owners repeating on the page sharing a single {@link GHData.Item.Owner} instance, like
+ * {@link GHSearchParser} does. A response with no data fails with the first error message given</p>
+ */
+public class GHGraphQLParser {
+
+    private final static String FIELD_DATA = "data";
+    private final static String FIELD_ERRORS = "errors";
+    private final static String FIELD_MESSAGE = "message";
+    private final static String FIELD_SEARCH = "search";
+    private final static String FIELD_REPOSITORY_COUNT = "repositoryCount";
+    private final static String FIELD_PAGE_INFO = "pageInfo";
+    private final static String FIELD_END_CURSOR = "endCursor";
+    private final static String FIELD_NODES = "nodes";
+    private final static String FIELD_NAME = "name";
+    private final static String FIELD_STAR_COUNT = "stargazerCount";
+    private final static String FIELD_URL = "url";
+    private final static String FIELD_OWNER = "owner";
+    private final static String FIELD_LOGIN = "login";
+    private final static String FIELD_AVATAR_URL = "avatarUrl";
+
+    private GHGraphQLParser() {}
+
+    /**
+     * Parses a search response
+     *
+     * @param source Response body reader
+     * @return Parsed data (the item list is empty if the response contains no nodes)
+     * @throws IOException If reading failed, the response is malformed or has errors only
+     */
+    public static GHData parse(Reader source) throws IOException {
+        final JsonReader reader = new JsonReader(source);
+        GHData data = null;
+        String error = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (FIELD_DATA.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (FIELD_SEARCH.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        data = readSearch(reader);
+                    }
+                    else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            else if (FIELD_ERRORS.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                error = readFirstMessage(reader);
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (data == null) {
+            throw new IOException(error != null ? error : "Empty response");
+        }
+        return data;
+    }
+
+    private static GHData readSearch(JsonReader reader) throws IOException {
+        final GHData data = new GHData();
+        final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>();
+        data.setItems(items);
+        final HashMap<GHData.Item.Owner, GHData.Item.Owner> owners = new HashMap<GHData.Item.Owner, GHData.Item.Owner>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (FIELD_REPOSITORY_COUNT.equals(name) && reader.peek() == JsonToken.NUMBER) {
+                data.setTotalCount(reader.nextInt());
+            }
+            else if (FIELD_PAGE_INFO.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (FIELD_END_CURSOR.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                        data.setEndCursor(reader.nextString());
+                    }
+                    else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            else if (FIELD_NODES.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    }
+                    else {
+                        items.add(readItem(reader, owners));
+                    }
+                }
+                reader.endArray();
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return data;
+    }
+
+    private static GHData.Item readItem(JsonReader reader, HashMap<GHData.Item.Owner, GHData.Item.Owner> owners)
+            throws IOException {
+        final GHData.Item item = new GHData.Item();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            }
+            else if (FIELD_NAME.equals(name)) {
+                item.setProjectName(reader.nextString());
+            }
+            else if (FIELD_STAR_COUNT.equals(name)) {
+                item.setStarCount(reader.nextInt());
+            }
+            else if (FIELD_URL.equals(name)) {
+                item.setProjectURL(reader.nextString());
+            }
+            else if (FIELD_OWNER.equals(name)) {
+                final GHData.Item.Owner owner = readOwner(reader);
+                final GHData.Item.Owner sharedOwner = owners.get(owner);
+                if (sharedOwner == null) {
+                    owners.put(owner, owner);
+                    item.setOwner(owner);
+                }
+                else {
+                    item.setOwner(sharedOwner);
+                }
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return item;
+    }
+
+    private static GHData.Item.Owner readOwner(JsonReader reader) throws IOException {
+        String login = null;
+        String avatarLink = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            }
+            else if (FIELD_LOGIN.equals(name)) {
+                login = reader.nextString();
+            }
+            else if (FIELD_AVATAR_URL.equals(name)) {
+                avatarLink = reader.nextString();
+            }
+            else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new GHData.Item.Owner(login, avatarLink);
+    }
+
+    /**
+     * @return Message of the first error in the array, or null if there's none
+     */
+    private static String readFirstMessage(JsonReader reader) throws IOException {
+        String message = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (message != null || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (FIELD_MESSAGE.equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    message = reader.nextString();
+                }
+                else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return message;
+    }
+}
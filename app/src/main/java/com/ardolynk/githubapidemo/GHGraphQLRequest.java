@@ -0,0 +1,97 @@
+package com.ardolynk.githubapidemo;
+
+import com.android.volley.Response;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * <p>Volley request for a repository search page from the GitHub GraphQL API</p>
+ * <p>The query selects only the fields of {@link GHData.Item}, so the response is a fraction of the REST
+ * one. Results come star sorted, the page starts after the given cursor. The end cursor of the page is
+ * handed to the transport on the network thread, before the page is delivered</p>
+ */
+public class GHGraphQLRequest extends GHSearchRequest {
+
+    public final static String URL = "https://api.github.com/graphql";
+    private final static String QUERY = "query($q: String!, $first: Int!, $after: String) {"
+            + " search(query: $q, type: REPOSITORY, first: $first, after: $after) {"
+            + " repositoryCount pageInfo { endCursor }"
+            + " nodes { ... on Repository { name stargazerCount url owner { login avatarUrl } } } } }";
+    private final static String SORT_QUALIFIER = " sort:stars-desc";
+    private final static String CONTENT_TYPE = "application/json; charset=utf-8";
+    private final static String HEADER_AUTHORIZATION = "Authorization";
+
+    private final String mToken;
+    private final String mCursor;
+    private final GHGraphQLTransport mTransport;
+
+    /**
+     * @param token Access token (the GraphQL API takes no anonymous requests)
+     * @param cursor Cursor of the row before the page, or null for the first one
+     * @param transport Transport to hand the end cursor to
+     * @param cache Page cache to store the response into (may be null)
+     */
+    public GHGraphQLRequest(GHPageKey key, String token, String cursor, GHGraphQLTransport transport, GHPageCache cache,
+                            Response.Listener<GHPage> listener, Response.ErrorListener errorListener) {
+        super(Method.POST, key, URL, null, cache, listener, errorListener);
+        mToken = token;
+        mCursor = cursor;
+        mTransport = transport;
+    }
+
+    /**
+     * @return JSON body of the query for the page
+     */
+    public static String makeBody(GHPageKey key, String cursor) {
+        final StringWriter body = new StringWriter(QUERY.length() + 128);
+        final JsonWriter writer = new JsonWriter(body);
+        try {
+            writer.beginObject();
+            writer.name("query").value(QUERY);
+            writer.name("variables").beginObject();
+            writer.name("q").value(key.getSearchQuery() + SORT_QUALIFIER);
+            writer.name("first").value(key.getPerPage());
+            writer.name("after").value(cursor);
+            writer.endObject();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return body.toString();
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return Collections.singletonMap(HEADER_AUTHORIZATION, "bearer " + mToken);
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] getBody() {
+        try {
+            return makeBody(getKey(), mCursor).getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected GHData parse(Reader reader) throws IOException {
+        final GHData data = GHGraphQLParser.parse(reader);
+        if (mTransport != null && data.getEndCursor() != null) {
+            mTransport.putCursor(getKey(), data.getItems().size(), data.getEndCursor());
+        }
+        return data;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ardolynk.githubapidemo;
+
+import com.android.volley.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Requests search pages from the GitHub GraphQL API (see {@link GHGraphQLRequest})</p>
+ * <p>The API pages by cursor: a page starts after the end cursor of the page before. End cursors are
+ * remembered by the query and the number of rows they follow, so pages requested in order go by cursor.
+ * A page requested ahead of the one before it (e.g. prefetched, reloaded or refreshed) goes by
+ * {@link GHSearchTransport#REST} instead, cursors are opaque and never made up</p>
+ * <p>There are no conditional requests, so a page cached with an ETag is revalidated by REST as well</p>
+ */
+public class GHGraphQLTransport implements GHSearchTransport {
+
+    private final static int MAX_CURSORS = 256;
+
+    private final String mToken;
+    private final Map<String, String> mCursors = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    };
+
+    /**
+     * @param token Access token (the GraphQL API takes no anonymous requests)
+     */
+    public GHGraphQLTransport(String token) {
+        mToken = token;
+    }
+
+    @Override
+    public GHSearchTransport select(GHPageKey key, String etag) {
+        return (etag == null && (key.getOffset() == 0 || getCursor(key) != null) ? this : REST);
+    }
+
+    @Override
+    public GHSearchRequest newRequest(GHPageKey key, String etag, GHPageCache cache,
+                                      Response.Listener<GHPage> listener, Response.ErrorListener errorListener) {
+        if (select(key, etag) != this) {
+            return REST.newRequest(key, etag, cache, listener, errorListener);
+        }
+        return new GHGraphQLRequest(key, mToken, getCursor(key), this, cache, listener, errorListener);
+    }
+
+    /**
+     * @return End cursor of the page before, or null if it's the first page or the cursor is unknown
+     */
+    synchronized String getCursor(GHPageKey key) {
+        if (key.getOffset() == 0) {
+            return null;
+        }
+        return mCursors.get(getCursorKey(key.getSearchQuery(), key.getOffset()));
+    }
+
+    /**
+     * Remembers the end cursor of a page, it's called on network threads
+     *
+     * @param rowCount Number of rows on the page
+     */
+    synchronized void putCursor(GHPageKey key, int rowCount, String cursor) {
+        mCursors.put(getCursorKey(key.getSearchQuery(), key.getOffset() + rowCount), cursor);
+    }
+
+    private static String getCursorKey(String searchQuery, int offset) {
+        return offset + "/" + searchQuery;
+    }
+}
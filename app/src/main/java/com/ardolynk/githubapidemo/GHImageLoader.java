@@ -0,0 +1,123 @@
+package com.ardolynk.githubapidemo;
+
+import android.graphics.Bitmap;
+import android.widget.ImageView;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.ImageLoader;
+
+import java.util.ArrayList;
+
+/**
+ * <p>Image loader using the two-tier avatar cache</p>
+ * <p>Requests with no size limits are decoded at the default avatar size</p>
+ * <p>Avatar requests are served by a separate queue, so its thread count bounds
+ * the number of concurrent downloads and decodes</p>
+ */
+public class GHImageLoader extends ImageLoader {
+
+    private final static ImageListener NO_OP_LISTENER = new ImageListener() {
+        @Override
+        public void onResponse(ImageContainer response, boolean isImmediate) {}
+
+        @Override
+        public void onErrorResponse(VolleyError error) {}
+    };
+
+    private final GHAvatarCache mAvatarCache;
+    private final int mAvatarSize;
+    private final GHMetrics.Histogram mDecodeTime;
+    private final ArrayList<ImageContainer> mPrefetchContainers = new ArrayList<ImageContainer>();
+    private boolean mPrefetching;
+
+    /**
+     * @param queue Request queue with disk cache used as a disk tier
+     * @param avatarCache Memory tier
+     * @param avatarSize Default avatar size in pixels
+     * @param metrics Metrics to record decode time to
+     */
+    public GHImageLoader(RequestQueue queue, GHAvatarCache avatarCache, int avatarSize, GHMetrics metrics) {
+        super(queue, avatarCache);
+        mAvatarCache = avatarCache;
+        mAvatarSize = avatarSize;
+        mDecodeTime = metrics.histogram(GHMetrics.AVATAR_DECODE);
+    }
+
+    public GHAvatarCache getAvatarCache() {
+        return mAvatarCache;
+    }
+
+    /**
+     * @return Default avatar size in pixels
+     */
+    public int getAvatarSize() {
+        return mAvatarSize;
+    }
+
+    /**
+     * <p>Loads an avatar at the default size into the cache in advance</p>
+     * <p>The request has low priority, so it doesn't delay avatars for visible views.
+     * The cache key matches the one of {@link com.android.volley.toolbox.NetworkImageView}
+     * of default avatar size</p>
+     */
+    public void prefetch(String url) {
+        mPrefetching = true;
+        try {
+            final ImageContainer container = get(url, NO_OP_LISTENER, mAvatarSize, mAvatarSize,
+                    ImageView.ScaleType.FIT_CENTER);
+            if (container.getBitmap() == null) {
+                mPrefetchContainers.add(container);
+            }
+        } finally {
+            mPrefetching = false;
+        }
+    }
+
+    /**
+     * Cancels avatar prefetch requests issued so far
+     */
+    public void cancelPrefetch() {
+        for (ImageContainer container : mPrefetchContainers) {
+            container.cancelRequest();
+        }
+        mPrefetchContainers.clear();
+    }
+
+    /**
+     * Makes an avatar URL requesting the image of given size, so the server doesn't send
+     * a much bigger image than we're going to show
+     *
+     * @param url Avatar URL as provided by API
+     * @param size Image size in pixels
+     */
+    public static String getSizedUrl(String url, int size) {
+        if (url == null || size <= 0) {
+            return url;
+        }
+        return url + (url.indexOf('?') < 0 ? "?s=" : "&s=") + size;
+    }
+
+    @Override
+    protected Request<Bitmap> makeImageRequest(String requestUrl, int maxWidth, int maxHeight,
+                                               ImageView.ScaleType scaleType, final String cacheKey) {
+        if (maxWidth == 0 && maxHeight == 0) {
+            maxWidth = mAvatarSize;
+            maxHeight = mAvatarSize;
+        }
+        final Request.Priority priority = (mPrefetching ? Request.Priority.LOW : Request.Priority.NORMAL);
+        return new GHAvatarRequest(requestUrl, new Response.Listener<Bitmap>() {
+            @Override
+            public void onResponse(Bitmap response) {
+                onGetImageSuccess(cacheKey, response);
+            }
+        }, maxWidth, maxHeight, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                onGetImageError(cacheKey, error);
+            }
+        }, priority, mAvatarCache, mDecodeTime);
+    }
+}
@@ -0,0 +1,122 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>Compact binary encoding of {@link GHData.Item} lists</p>
+ * <p>Owners are written once into a table and referenced by index from the items,
+ * since the same owner usually appears on a page several times</p>
+ * <p>Items are decoded from memory (a {@link java.io.ByteArrayInputStream} underneath), so the bytes
+ * left in the input are known. Every count and length read is checked against them, and a broken
+ * input fails with {@link IOException} instead of a huge or negative allocation</p>
+ */
+public class GHItemCodec {
+
+    private final static int NULL_LENGTH = -1;
+
+    //Smallest encoded sizes: an owner has two string lengths, an item has two lengths and two ints
+
+    private final static int MIN_OWNER_SIZE = 8;
+    private final static int MIN_ITEM_SIZE = 16;
+
+    private GHItemCodec() {}
+
+    public static void write(DataOutput output, List<GHData.Item> items) throws IOException {
+        final HashMap<String, Integer> ownerIndices = new HashMap<String, Integer>();
+        final ArrayList<GHData.Item.Owner> owners = new ArrayList<GHData.Item.Owner>();
+        final int[] itemOwners = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            final GHData.Item.Owner owner = items.get(i).getOwner();
+            if (owner == null) {
+                itemOwners[i] = NULL_LENGTH;
+                continue;
+            }
+            final String ownerKey = owner.getLogin() + '\n' + owner.getAvatarLink();
+            Integer index = ownerIndices.get(ownerKey);
+            if (index == null) {
+                index = owners.size();
+                ownerIndices.put(ownerKey, index);
+                owners.add(owner);
+            }
+            itemOwners[i] = index;
+        }
+
+        output.writeInt(owners.size());
+        for (GHData.Item.Owner owner : owners) {
+            writeString(output, owner.getLogin());
+            writeString(output, owner.getAvatarLink());
+        }
+        output.writeInt(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            final GHData.Item item = items.get(i);
+            writeString(output, item.getProjectName());
+            output.writeInt(item.getStarCount());
+            writeString(output, item.getProjectURL());
+            output.writeInt(itemOwners[i]);
+        }
+    }
+
+    public static ArrayList<GHData.Item> read(DataInputStream input) throws IOException {
+        final int ownerCount = readCount(input, MIN_OWNER_SIZE);
+        final GHData.Item.Owner[] owners = new GHData.Item.Owner[ownerCount];
+        for (int i = 0; i < ownerCount; i++) {
+            final String login = readString(input);
+            owners[i] = new GHData.Item.Owner(login, readString(input));
+        }
+        final int itemCount = readCount(input, MIN_ITEM_SIZE);
+        final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName(readString(input));
+            item.setStarCount(input.readInt());
+            item.setProjectURL(readString(input));
+            final int ownerIndex = input.readInt();
+            if (ownerIndex >= ownerCount) {
+                throw new IOException("Invalid owner index " + ownerIndex);
+            }
+            item.setOwner(ownerIndex >= 0 ? owners[ownerIndex] : null);
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_LENGTH);
+        }
+        else {
+            final byte[] bytes = value.getBytes("UTF-8");
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    public static String readString(DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > input.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * @param minEntrySize Smallest encoded size of a counted entry
+     */
+    private static int readCount(DataInputStream input, int minEntrySize) throws IOException {
+        final int count = input.readInt();
+        if (count < 0 || count > input.available() / minEntrySize) {
+            throw new IOException("Invalid count " + count);
+        }
+        return count;
+    }
+}
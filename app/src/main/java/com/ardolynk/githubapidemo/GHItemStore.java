@@ -0,0 +1,427 @@
+package com.ardolynk.githubapidemo;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Compact columnar store of search result rows</p>
+ * <p>Rows are kept in parallel arrays rather than as {@link GHData.Item} objects: star counts
+ * as ints, owner logins and avatar links as IDs in {@link GHStringPool}s (they repeat a lot),
+ * project names and URLs as UTF-8 bytes in a single text buffer. A project URL of the usual
+ * <code>https://github.com/owner/name</code> form isn't stored at all, it's restored from the
+ * owner login and the project name</p>
+ * <p>Items are built on demand by {@link GHItemStore#getItem(int)}, so every call returns a new
+ * copy of the row. Single columns can be read without building the item</p>
+ * <p>Every row has a stamp identifying its content: a row keeps the stamp while it's moved or
+ * copied unchanged, and gets a new one when it's added or modified, so views can tell whether
+ * they show the row already</p>
+ * <p>Content of rows may be dropped to save memory, leaving the rows in place (see
+ * {@link GHItemStore#drop(int, int)})</p>
+ * <p>This class is not thread safe</p>
+ */
+public class GHItemStore {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static String PROJECT_URL_PREFIX = "https://github.com/";
+    private final static int INITIAL_CAPACITY = 32;
+    private final static int INITIAL_TEXT_CAPACITY = 1024;
+
+    private final static byte FLAG_NO_OWNER = 1;
+    private final static byte FLAG_NO_NAME = FLAG_NO_OWNER << 1;
+    private final static byte FLAG_NO_URL = FLAG_NO_NAME << 1;
+    private final static byte FLAG_DERIVED_URL = FLAG_NO_URL << 1;
+    private final static byte FLAG_DROPPED = FLAG_DERIVED_URL << 1;
+
+    private final GHStringPool mLogins;
+    private final GHStringPool mAvatarLinks;
+    private int mSize;
+    private int[] mStarCounts;
+    private int[] mLoginIds;
+    private int[] mAvatarIds;
+    private int[] mTextStarts;
+    private int[] mNameEnds;
+    private byte[] mFlags;
+    private int[] mStamps;
+    private byte[] mText;
+    private int mTextLength;
+    private int mNextStamp = 1;
+
+    public GHItemStore() {
+        this(new GHStringPool(), new GHStringPool(), INITIAL_CAPACITY);
+    }
+
+    private GHItemStore(GHStringPool logins, GHStringPool avatarLinks, int capacity) {
+        mLogins = logins;
+        mAvatarLinks = avatarLinks;
+        allocate(Math.max(1, capacity));
+    }
+
+    /**
+     * @return Number of rows
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return Independent copy of the store, e.g. to read on another thread
+     */
+    public GHItemStore copy() {
+        final GHItemStore copy = new GHItemStore(mLogins.copy(), mAvatarLinks.copy(), mSize);
+        for (int row = 0; row < mSize; row++) {
+            copy.copyRow(this, row);
+        }
+        copy.mNextStamp = mNextStamp;
+        return copy;
+    }
+
+    public void clear() {
+        mLogins.clear();
+        mAvatarLinks.clear();
+        allocate(INITIAL_CAPACITY);
+        mSize = 0;
+    }
+
+    public void add(GHData.Item item) {
+        ensureCapacity(mSize + 1);
+        final int row = mSize;
+        final GHData.Item.Owner owner = item.getOwner();
+        final String login = (owner != null ? owner.getLogin() : null);
+        final String name = item.getProjectName();
+        final String url = item.getProjectURL();
+        byte flags = 0;
+        if (owner == null) {
+            flags |= FLAG_NO_OWNER;
+        }
+        mStarCounts[row] = item.getStarCount();
+        mLoginIds[row] = mLogins.intern(login);
+        mAvatarIds[row] = mAvatarLinks.intern(owner != null ? owner.getAvatarLink() : null);
+        mTextStarts[row] = mTextLength;
+        if (name == null) {
+            flags |= FLAG_NO_NAME;
+        }
+        else {
+            appendText(name);
+        }
+        mNameEnds[row] = mTextLength;
+        if (url == null) {
+            flags |= FLAG_NO_URL;
+        }
+        else if (isDerivedUrl(url, login, name)) {
+            flags |= FLAG_DERIVED_URL;
+        }
+        else {
+            appendText(url);
+        }
+        mFlags[row] = flags;
+        mStamps[row] = mNextStamp++;
+        mSize++;
+    }
+
+    public void addAll(List<GHData.Item> items) {
+        ensureCapacity(mSize + items.size());
+        for (int i = 0; i < items.size(); i++) {
+            add(items.get(i));
+        }
+    }
+
+    /**
+     * Replaces rows from <code>start</code> (inclusive) to <code>end</code> (exclusive) with given items
+     */
+    public void replace(int start, int end, List<GHData.Item> items) {
+        final GHItemStore result = newSibling(mSize - (end - start) + items.size());
+        for (int i = 0; i < start; i++) {
+            result.copyRow(this, i);
+        }
+        result.addAll(items);
+        for (int i = end; i < mSize; i++) {
+            result.copyRow(this, i);
+        }
+        takeRows(result);
+    }
+
+    /**
+     * Replaces all rows with refreshed ones. Rows the diff found unchanged are moved
+     * rather than added again, so they keep their stamps
+     *
+     * @param diff Diff between this store content and the items
+     */
+    public void apply(GHListDiff diff, List<GHData.Item> items) {
+        final GHItemStore result = newSibling(items.size());
+        for (int position = 0; position < items.size(); position++) {
+            final int oldRow = diff.getOldPosition(position);
+            if (oldRow != GHListDiff.NO_POSITION && !diff.isChanged(position)) {
+                result.copyRow(this, oldRow);
+            }
+            else {
+                result.add(items.get(position));
+            }
+        }
+        takeRows(result);
+    }
+
+    /**
+     * <p>Drops content of rows from <code>start</code> (inclusive) to <code>end</code> (exclusive)</p>
+     * <p>Dropped rows stay in place with their star counts only, and the text they had is freed
+     * (the strings of the string pools are not). They get new stamps, and get content back
+     * by {@link GHItemStore#replace(int, int, List)}</p>
+     */
+    public void drop(int start, int end) {
+        final GHItemStore result = newSibling(mSize);
+        for (int i = 0; i < start; i++) {
+            result.copyRow(this, i);
+        }
+        for (int i = start; i < end; i++) {
+            result.addDropped(mStarCounts[i]);
+        }
+        for (int i = end; i < mSize; i++) {
+            result.copyRow(this, i);
+        }
+        takeRows(result);
+    }
+
+    /**
+     * @return True if the row content is dropped, see {@link GHItemStore#drop(int, int)}
+     */
+    public boolean isDropped(int row) {
+        return (mFlags[row] & FLAG_DROPPED) != 0;
+    }
+
+    /**
+     * @return A new item built from the row
+     */
+    public GHData.Item getItem(int row) {
+        final GHData.Item item = new GHData.Item();
+        item.setProjectName(getProjectName(row));
+        item.setStarCount(mStarCounts[row]);
+        item.setProjectURL(getProjectURL(row));
+        if ((mFlags[row] & FLAG_NO_OWNER) == 0) {
+            item.setOwner(new GHData.Item.Owner(getOwnerLogin(row), getAvatarLink(row)));
+        }
+        return item;
+    }
+
+    public void setStarCount(int row, int starCount) {
+        mStarCounts[row] = starCount;
+        mStamps[row] = mNextStamp++;
+    }
+
+    /**
+     * @return Content stamp of the row
+     */
+    public int getStamp(int row) {
+        return mStamps[row];
+    }
+
+    public String getProjectName(int row) {
+        if ((mFlags[row] & FLAG_NO_NAME) != 0) {
+            return null;
+        }
+        return new String(mText, mTextStarts[row], mNameEnds[row] - mTextStarts[row], UTF8);
+    }
+
+    /**
+     * Compares project names of rows without decoding them, ignoring case of ASCII letters
+     * (see {@link GHStringPool#compareFolded}). Rows without a name go last
+     */
+    public int compareProjectNames(int first, int second) {
+        final boolean firstMissing = ((mFlags[first] & FLAG_NO_NAME) != 0);
+        final boolean secondMissing = ((mFlags[second] & FLAG_NO_NAME) != 0);
+        if (firstMissing || secondMissing) {
+            return (firstMissing == secondMissing ? 0 : (firstMissing ? 1 : -1));
+        }
+        return GHStringPool.compareFolded(mText, mTextStarts[first], mNameEnds[first],
+                mTextStarts[second], mNameEnds[second]);
+    }
+
+    /**
+     * @param text Text made by {@link GHStringPool#toFoldedBytes(String)}
+     * @return True if the project name of the row has the text, ignoring case of ASCII letters
+     */
+    public boolean projectNameContains(int row, byte[] text) {
+        return ((mFlags[row] & FLAG_NO_NAME) == 0
+                && GHStringPool.containsFolded(mText, mTextStarts[row], mNameEnds[row], text));
+    }
+
+    public int getStarCount(int row) {
+        return mStarCounts[row];
+    }
+
+    public String getProjectURL(int row) {
+        final byte flags = mFlags[row];
+        if ((flags & FLAG_NO_URL) != 0) {
+            return null;
+        }
+        if ((flags & FLAG_DERIVED_URL) != 0) {
+            return PROJECT_URL_PREFIX + getOwnerLogin(row) + "/" + getProjectName(row);
+        }
+        return new String(mText, mNameEnds[row], getTextEnd(row) - mNameEnds[row], UTF8);
+    }
+
+    /**
+     * @return Owner login, or null if the row has no owner
+     */
+    public String getOwnerLogin(int row) {
+        return mLogins.get(mLoginIds[row]);
+    }
+
+    /**
+     * @return Owner avatar link, or null if the row has no owner
+     */
+    public String getAvatarLink(int row) {
+        return mAvatarLinks.get(mAvatarIds[row]);
+    }
+
+    /**
+     * @return ID of the owner login, the same for all rows of the owner until the store is cleared
+     * ({@link GHStringPool#NO_ID} if the row has no owner)
+     */
+    public int getOwnerLoginId(int row) {
+        return mLoginIds[row];
+    }
+
+    public String getOwnerLoginById(int id) {
+        return mLogins.get(id);
+    }
+
+    /**
+     * Compares owner logins of given IDs without decoding them, see {@link GHStringPool#compareIgnoreCase(int, int)}
+     */
+    public int compareOwnerLogins(int firstId, int secondId) {
+        return mLogins.compareIgnoreCase(firstId, secondId);
+    }
+
+    /**
+     * @param text Text made by {@link GHStringPool#toFoldedBytes(String)}
+     */
+    public boolean ownerLoginEquals(int id, byte[] text) {
+        return mLogins.equalsIgnoreCase(id, text);
+    }
+
+    /**
+     * @param text Text made by {@link GHStringPool#toFoldedBytes(String)}
+     */
+    public boolean ownerLoginContains(int id, byte[] text) {
+        return mLogins.containsIgnoreCase(id, text);
+    }
+
+    /**
+     * @return ID of the owner avatar link, the same for all rows of the owner until the store is cleared
+     * ({@link GHStringPool#NO_ID} if the row has no owner)
+     */
+    public int getAvatarLinkId(int row) {
+        return mAvatarIds[row];
+    }
+
+    public String getAvatarLinkById(int id) {
+        return mAvatarLinks.get(id);
+    }
+
+    /**
+     * @return Empty store sharing string pools (and so string IDs) with this one
+     */
+    private GHItemStore newSibling(int capacity) {
+        final GHItemStore sibling = new GHItemStore(mLogins, mAvatarLinks, capacity);
+        sibling.mNextStamp = mNextStamp;
+        return sibling;
+    }
+
+    private void takeRows(GHItemStore source) {
+        mSize = source.mSize;
+        mStarCounts = source.mStarCounts;
+        mLoginIds = source.mLoginIds;
+        mAvatarIds = source.mAvatarIds;
+        mTextStarts = source.mTextStarts;
+        mNameEnds = source.mNameEnds;
+        mFlags = source.mFlags;
+        mStamps = source.mStamps;
+        mText = source.mText;
+        mTextLength = source.mTextLength;
+        mNextStamp = source.mNextStamp;
+    }
+
+    private int getTextEnd(int row) {
+        return (row + 1 < mSize ? mTextStarts[row + 1] : mTextLength);
+    }
+
+    private void copyRow(GHItemStore source, int row) {
+        ensureCapacity(mSize + 1);
+        final int textStart = source.mTextStarts[row];
+        final int textLength = source.getTextEnd(row) - textStart;
+        ensureTextCapacity(mTextLength + textLength);
+        System.arraycopy(source.mText, textStart, mText, mTextLength, textLength);
+        mStarCounts[mSize] = source.mStarCounts[row];
+        mLoginIds[mSize] = source.mLoginIds[row];
+        mAvatarIds[mSize] = source.mAvatarIds[row];
+        mTextStarts[mSize] = mTextLength;
+        mNameEnds[mSize] = mTextLength + (source.mNameEnds[row] - textStart);
+        mFlags[mSize] = source.mFlags[row];
+        mStamps[mSize] = source.mStamps[row];
+        mTextLength += textLength;
+        mSize++;
+    }
+
+    private void addDropped(int starCount) {
+        ensureCapacity(mSize + 1);
+        mStarCounts[mSize] = starCount;
+        mLoginIds[mSize] = GHStringPool.NO_ID;
+        mAvatarIds[mSize] = GHStringPool.NO_ID;
+        mTextStarts[mSize] = mTextLength;
+        mNameEnds[mSize] = mTextLength;
+        mFlags[mSize] = FLAG_DROPPED | FLAG_NO_OWNER | FLAG_NO_NAME | FLAG_NO_URL;
+        mStamps[mSize] = mNextStamp++;
+        mSize++;
+    }
+
+    private static boolean isDerivedUrl(String url, String login, String name) {
+        if (login == null || name == null) {
+            return false;
+        }
+        final int prefixLength = PROJECT_URL_PREFIX.length();
+        return (url.length() == prefixLength + login.length() + 1 + name.length()
+                && url.startsWith(PROJECT_URL_PREFIX)
+                && url.regionMatches(prefixLength, login, 0, login.length())
+                && url.charAt(prefixLength + login.length()) == '/'
+                && url.regionMatches(prefixLength + login.length() + 1, name, 0, name.length()));
+    }
+
+    private void appendText(String value) {
+        final byte[] bytes = value.getBytes(UTF8);
+        ensureTextCapacity(mTextLength + bytes.length);
+        System.arraycopy(bytes, 0, mText, mTextLength, bytes.length);
+        mTextLength += bytes.length;
+    }
+
+    private void allocate(int capacity) {
+        mStarCounts = new int[capacity];
+        mLoginIds = new int[capacity];
+        mAvatarIds = new int[capacity];
+        mTextStarts = new int[capacity];
+        mNameEnds = new int[capacity];
+        mFlags = new byte[capacity];
+        mStamps = new int[capacity];
+        mText = new byte[INITIAL_TEXT_CAPACITY];
+        mTextLength = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mStarCounts.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, mStarCounts.length * 3 / 2 + 1);
+        mStarCounts = Arrays.copyOf(mStarCounts, newCapacity);
+        mLoginIds = Arrays.copyOf(mLoginIds, newCapacity);
+        mAvatarIds = Arrays.copyOf(mAvatarIds, newCapacity);
+        mTextStarts = Arrays.copyOf(mTextStarts, newCapacity);
+        mNameEnds = Arrays.copyOf(mNameEnds, newCapacity);
+        mFlags = Arrays.copyOf(mFlags, newCapacity);
+        mStamps = Arrays.copyOf(mStamps, newCapacity);
+    }
+
+    private void ensureTextCapacity(int capacity) {
+        if (capacity > mText.length) {
+            mText = Arrays.copyOf(mText, Math.max(capacity, mText.length * 3 / 2));
+        }
+    }
+}
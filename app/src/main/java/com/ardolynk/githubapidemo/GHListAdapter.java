@@ -3,34 +3,75 @@ package com.ardolynk.githubapidemo;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.android.volley.toolbox.NetworkImageView;
 
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Created by Michael Tikhonenko on 2/7/17.
  */
 
-public class GHListAdapter extends ArrayAdapter<GHData.Item> {
+public class GHListAdapter extends BaseAdapter implements AbsListView.OnScrollListener, GHMemoryGovernor.Listener {
+    private final static int VIEW_TYPE_ROW = 0;
+    private final static int VIEW_TYPE_SENTINEL = 1;
+    private final static int VIEW_TYPE_COUNT = 2;
+    private final static int OWNER_CACHE_BITS = 6;
+    private final static int KEPT_ROWS_AROUND = 100;
+
+    /**
+     * Refresh diffs are computed off the main thread, one at a time
+     */
+    private final static ExecutorService sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    public interface RefreshListener {
+        /**
+         * Called once a refreshed list is merged into the shown one
+         *
+         * @param newPositions New positions of previously shown rows
+         *                     ({@link GHListDiff#NO_POSITION} for removed ones)
+         */
+        void onRefreshApplied(int[] newPositions);
+    }
+
+    private Context mContext;
     private GHDataService mService;
     private ProgressBar mSentinelViewNormal;
     private Button mSentinelViewFailure;
     private boolean mNextPageLoading = false;
     private boolean mHasNext = false;
     private boolean mLastUpdateFailed = false;
+    private final GHItemStore mItems = new GHItemStore();
+    private final GHListQuery mQuery = new GHListQuery(mItems);
+    private int mModCount;
+    private int mRefreshGeneration;
+    private RefreshListener mRefreshListener;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final GHMetrics.Histogram mBindTime;
+    private final GHMetrics.Histogram mDiffTime;
+    private final GHCountFormatter mStarCountFormatter = new GHCountFormatter(" ");
+    private final GHTextCache mLoginCache = new GHTextCache(OWNER_CACHE_BITS);
+    private final GHTextCache mAvatarUrlCache = new GHTextCache(OWNER_CACHE_BITS);
+    private final BitSet mReloadingPages = new BitSet();
+    private int mFirstVisiblePosition;
+    private int mVisibleCount;
 
     public GHListAdapter(Context context, GHDataService service) {
-        super(context, 0, new ArrayList<GHData.Item>());
+        mContext = context;
         mSentinelViewNormal = new ProgressBar(context);
         mSentinelViewFailure = new Button(context);
         mSentinelViewFailure.setText(R.string.list_hint_more);
@@ -43,37 +84,252 @@ public class GHListAdapter extends ArrayAdapter<GHData.Item> {
             }
         });
         mService = service;
+        mBindTime = service.getMetrics().histogram(GHMetrics.LIST_BIND);
+        mDiffTime = service.getMetrics().histogram(GHMetrics.LIST_DIFF);
+    }
+
+    public void populateData(List<GHData.Item> data, int flags, int pageNum) {
+        if ((flags & GHDataService.FLAG_REFRESH) != 0) {
+            mergeRefreshed(data, flags, mRefreshGeneration);
+            return;
+        }
+        mModCount++;
+        if ((flags & (GHDataService.FLAG_APPEND | GHDataService.FLAG_ERROR | GHDataService.FLAG_REVALIDATED)) == 0) {
+
+            //A diff of a refresh in progress is not applicable anymore
+
+            mRefreshGeneration++;
+        }
+
+        //Filtering by text is over once the list is replaced, the order and other filters go on
+
+        final boolean listReplaced = ((flags & (GHDataService.FLAG_APPEND | GHDataService.FLAG_ERROR
+                | GHDataService.FLAG_REVALIDATED)) == 0);
+        if (listReplaced) {
+            mQuery.setText(null);
+        }
+        populateUnfiltered(data, flags, pageNum);
+    }
+
+    public void setRefreshListener(RefreshListener listener) {
+        mRefreshListener = listener;
+    }
+
+    /**
+     * <p>Diffs the refreshed list against the shown one on a background thread, and applies
+     * only changed and new rows then</p>
+     * <p>The diff is computed over a snapshot of the shown rows. If they're modified meanwhile,
+     * the diff is computed again, and if the list is replaced, the refresh is dropped</p>
+     */
+    private void mergeRefreshed(final List<GHData.Item> data, final int flags, final int generation) {
+        final int modCount = mModCount;
+        final GHItemStore snapshot = mItems.copy();
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = GHMetrics.Histogram.start();
+                GHTrace.beginBackground("GH list diff");
+                final GHListDiff diff;
+                try {
+                    diff = GHListDiff.compute(snapshot, data);
+                } finally {
+                    GHTrace.end();
+                    mDiffTime.stop(startTime);
+                }
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mRefreshGeneration) {
+                            return;
+                        }
+                        if (modCount != mModCount) {
+                            mergeRefreshed(data, flags, generation);
+                            return;
+                        }
+                        applyRefreshed(diff, data, flags);
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyRefreshed(GHListDiff diff, List<GHData.Item> data, int flags) {
+        mModCount++;
+        if (!diff.isEmpty()) {
+            mItems.apply(diff, data);
+            mQuery.invalidate();
+        }
+        mHasNext = ((flags & GHDataService.FLAG_HAS_NEXT) != 0);
+        mLastUpdateFailed = false;
+        mNextPageLoading = false;
+        mReloadingPages.clear();
+        notifyDataSetChanged();
+
+        //Positions of a sorted or filtered list are not the ones of loaded rows
+
+        if (mRefreshListener != null && !mQuery.isActive()) {
+            mRefreshListener.onRefreshApplied(diff.getNewPositions());
+        }
     }
 
-    public void populateData(List<GHData.Item> data, int flags) {
+    /**
+     * <p>Shows only loaded items matching the query (by project name or owner login)</p>
+     * <p>This gives instant feedback while the actual search is running. No more pages are
+     * loaded while the list is filtered</p>
+     */
+    public void filterLocally(String query) {
+        mQuery.setText(query);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Shows all loaded items again, in the order set
+     */
+    public void clearLocalFilter() {
+        if (mQuery.getText() != null) {
+            mQuery.setText(null);
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * <p>Sorts loaded items (see {@link GHListQuery}), it's done in memory</p>
+     * <p>No more pages are loaded unless the order is {@link GHListQuery.Order#LOADED}
+     * (and the list is not filtered)</p>
+     */
+    public void setOrder(GHListQuery.Order order) {
+        mQuery.setOrder(order);
+        notifyDataSetChanged();
+    }
+
+    public GHListQuery.Order getOrder() {
+        return mQuery.getOrder();
+    }
+
+    /**
+     * Shows only loaded items having at least the star count given
+     *
+     * @param minStars The star count, or {@link GHListQuery#NO_MIN_STARS} to show all
+     */
+    public void setMinStars(int minStars) {
+        mQuery.setMinStars(minStars);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Shows only loaded items of the owner
+     *
+     * @param owner Owner login, or null to show items of every owner
+     */
+    public void setOwnerFilter(String owner) {
+        mQuery.setOwner(owner);
+        notifyDataSetChanged();
+    }
+
+    private void populateUnfiltered(List<GHData.Item> data, int flags, int pageNum) {
+        if ((flags & GHDataService.FLAG_REVALIDATED) != 0) {
+            replacePage(data, pageNum);
+            mQuery.invalidate();
+            mHasNext = ((flags & GHDataService.FLAG_HAS_NEXT) != 0);
+            notifyDataSetChanged();
+            return;
+        }
         mLastUpdateFailed = ((flags & GHDataService.FLAG_ERROR) != 0);
         if (mLastUpdateFailed) {
             if ((flags & GHDataService.FLAG_CONDITION_CHANGED) != 0) {
 
                 //Search failed with changed condition, so we have to clear list
 
-                clear();
+                clearItems();
                 mHasNext = false;
             }
         }
         else {
             if ((flags & GHDataService.FLAG_APPEND) == 0) {
-                clear();
+                clearItems();
             }
-            addAll(data);
+            mItems.addAll(data);
             mHasNext = ((flags & GHDataService.FLAG_HAS_NEXT) != 0);
         }
         notifyDataSetChanged();
         mNextPageLoading = false;
     }
 
+    private void clearItems() {
+
+        //Owner IDs are reassigned after that
+
+        mItems.clear();
+        mQuery.release();
+        mLoginCache.clear();
+        mAvatarUrlCache.clear();
+        mReloadingPages.clear();
+    }
+
+    private void replacePage(List<GHData.Item> data, int pageNum) {
+        final int itemCount = mItems.size();
+        final int start = Math.min(itemCount, mService.getPageOffset(pageNum));
+        final int end = Math.min(itemCount, start + mService.getPageSize(pageNum));
+        mItems.replace(start, end, data);
+        mReloadingPages.clear(pageNum);
+    }
+
+    /**
+     * <p>Frees text caches and the index of the sort and filters (it's built again once shown), and drops
+     * content of rows far from the visible ones once the memory is low</p>
+     * <p>Dropped rows are shown with their star counts only, and their pages are reloaded
+     * from the service (see {@link GHDataService#reloadPage(int)}) once they're shown again</p>
+     */
+    @Override
+    public void onMemoryBudgetChanged(GHMemoryGovernor governor) {
+        if (governor.getTrimLevel() == GHMemoryGovernor.NO_TRIM) {
+            return;
+        }
+        mLoginCache.clear();
+        mAvatarUrlCache.clear();
+        mQuery.release();
+        if (!governor.isTrimmingRows() || mQuery.isActive() || mItems.size() == 0) {
+            return;
+        }
+
+        //Whole pages are kept, as they're reloaded page by page
+
+        final int keptStart = Math.max(0, mFirstVisiblePosition - KEPT_ROWS_AROUND);
+        final int keptEnd = Math.min(mItems.size(), mFirstVisiblePosition + mVisibleCount + KEPT_ROWS_AROUND);
+        final int dropStart = Math.min(mItems.size(), mService.getPageOffset(mService.getRowPage(keptEnd - 1) + 1));
+        final int dropEnd = mService.getPageOffset(mService.getRowPage(keptStart));
+        if (dropStart == mItems.size() && dropEnd == 0) {
+            return;
+        }
+        mModCount++;
+        if (dropStart < mItems.size()) {
+            mItems.drop(dropStart, mItems.size());
+        }
+        if (dropEnd > 0) {
+            mItems.drop(0, dropEnd);
+        }
+        mQuery.invalidate();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @return Number of visible rows, not including the sentinel one
+     */
+    private int getItemCount() {
+        return (mQuery.isActive() ? mQuery.size() : mItems.size());
+    }
+
+    private int getRow(int position) {
+        return (mQuery.isActive() ? mQuery.getRow(position) : position);
+    }
+
     @Override
     public int getCount() {
 
          //We might need a sentinel view (progress indicator) if there might be next page available
 
-        int count = super.getCount();
-        if (mHasNext) {
+        int count = getItemCount();
+        if (mHasNext && !mQuery.isActive()) {
             count++;
         }
         return count;
@@ -81,16 +337,31 @@ public class GHListAdapter extends ArrayAdapter<GHData.Item> {
 
     @Override
     public GHData.Item getItem(int position) {
-        if (position == super.getCount()) {
+        if (position == getItemCount()) {
             return null;
         }
-        return super.getItem(position);
+        return mItems.getItem(getRow(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return VIEW_TYPE_COUNT;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return (position == getItemCount() ? VIEW_TYPE_SENTINEL : VIEW_TYPE_ROW);
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
 
-        if (position == super.getCount()) {
+        if (position == getItemCount()) {
             if (mLastUpdateFailed) {
                 return mSentinelViewFailure;
             }
@@ -101,35 +372,129 @@ public class GHListAdapter extends ArrayAdapter<GHData.Item> {
             return mSentinelViewNormal;
         }
 
-        final GHData.Item item = getItem(position);
+        //Sentinels have their own view type, so a recycled view is always a row
 
-        if (convertView == null || convertView == mSentinelViewNormal || convertView == mSentinelViewFailure) {
-            convertView = LayoutInflater.from(getContext()).inflate(R.layout.item_view, parent, false);
+        final RowHolder holder;
+        if (convertView == null) {
+            convertView = LayoutInflater.from(mContext).inflate(R.layout.item_view, parent, false);
+            holder = new RowHolder(convertView, mStarCountFormatter.newBuffer());
+            convertView.setTag(holder);
+            convertView.setOnClickListener(mRowClickListener);
+        }
+        else {
+            holder = (RowHolder) convertView.getTag();
+        }
+
+        //Rows keep their stamps while unchanged, even if moved by a refresh, so their views aren't bound again
+
+        final int row = getRow(position);
+        if (mItems.isDropped(row)) {
+            final int page = mService.getRowPage(row);
+            if (!mReloadingPages.get(page)) {
+                mReloadingPages.set(page);
+                mService.reloadPage(page);
+            }
+        }
+        final int stamp = mItems.getStamp(row);
+        holder.mRow = row;
+        if (holder.mStamp == stamp) {
+            return convertView;
         }
+        holder.mStamp = stamp;
 
-        final TextView fullNameView = (TextView) convertView.findViewById(R.id.full_name);
-        fullNameView.setText(item.getProjectName());
+        final long startTime = GHMetrics.Histogram.start();
+        GHTrace.begin("GH list bind");
+        try {
+            holder.mFullNameView.setText(mItems.getProjectName(row));
+            holder.mOwnerNameView.setText(getOwnerLogin(row));
+            mService.loadAvatarUrl(holder.mAvatarView, getAvatarUrl(row));
+            holder.mStarCountView.setText(holder.mStarCountBuffer, 0,
+                    mStarCountFormatter.format(mItems.getStarCount(row), holder.mStarCountBuffer));
+        } finally {
+            GHTrace.end();
+            mBindTime.stop(startTime);
+        }
 
-        final NetworkImageView avatarView = (NetworkImageView) convertView.findViewById(R.id.avatar);
-        mService.loadAvatar(avatarView, item);
+        return convertView;
+    }
 
-        final TextView ownerNameView = (TextView) convertView.findViewById(R.id.owner_name);
-        ownerNameView.setText(item.getOwner().getLogin());
+    private String getOwnerLogin(int row) {
+        final int id = mItems.getOwnerLoginId(row);
+        if (id == GHStringPool.NO_ID) {
+            return null;
+        }
+        String login = mLoginCache.get(id);
+        if (login == null) {
+            login = mItems.getOwnerLoginById(id);
+            mLoginCache.put(id, login);
+        }
+        return login;
+    }
 
-        final TextView starCountView = (TextView) convertView.findViewById(R.id.stars);
-        starCountView.setText(String.format(" %d", item.getStarCount()));
+    private String getAvatarUrl(int row) {
+        final int id = mItems.getAvatarLinkId(row);
+        if (id == GHStringPool.NO_ID) {
+            return null;
+        }
+        String url = mAvatarUrlCache.get(id);
+        if (url == null) {
+            url = mService.getAvatarUrl(mItems.getAvatarLinkById(id));
+            mAvatarUrlCache.put(id, url);
+        }
+        return url;
+    }
 
-        //Bonus feature - open a project page on click
+    //Bonus feature - open a project page on click
 
-        convertView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                Intent browserIntent = new Intent(Intent.ACTION_VIEW);
-                browserIntent.setData(Uri.parse(item.getProjectURL()));
-                getContext().startActivity(browserIntent);
+    private final View.OnClickListener mRowClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            final RowHolder holder = (RowHolder) v.getTag();
+            if (mItems.isDropped(holder.mRow)) {
+                return;
             }
-        });
+            Intent browserIntent = new Intent(Intent.ACTION_VIEW);
+            browserIntent.setData(Uri.parse(mItems.getProjectURL(holder.mRow)));
+            mContext.startActivity(browserIntent);
+        }
+    };
 
-        return convertView;
+    /**
+     * Views of a list row, and the row they show
+     */
+    private static class RowHolder {
+        private final TextView mFullNameView;
+        private final NetworkImageView mAvatarView;
+        private final TextView mOwnerNameView;
+        private final TextView mStarCountView;
+
+        //The star count view shows this buffer, it's written again on every bind
+
+        private final char[] mStarCountBuffer;
+        private int mRow = -1;
+        private int mStamp;
+
+        RowHolder(View view, char[] starCountBuffer) {
+            mFullNameView = (TextView) view.findViewById(R.id.full_name);
+            mAvatarView = (NetworkImageView) view.findViewById(R.id.avatar);
+            mOwnerNameView = (TextView) view.findViewById(R.id.owner_name);
+            mStarCountView = (TextView) view.findViewById(R.id.stars);
+            mStarCountBuffer = starCountBuffer;
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {}
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        mFirstVisiblePosition = firstVisibleItem;
+        mVisibleCount = visibleItemCount;
+
+        //Let the service prefetch the next page before the sentinel row shows up
+
+        if (mHasNext && !mLastUpdateFailed && !mQuery.isActive() && visibleItemCount > 0) {
+            mService.onListScrolled(firstVisibleItem + visibleItemCount - 1, mItems.size());
+        }
     }
 }
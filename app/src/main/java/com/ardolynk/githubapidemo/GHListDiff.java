@@ -0,0 +1,129 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <p>Difference between a shown list and its refreshed content</p>
+ * <p>Rows are matched by repository identity (the project URL), so a repository that moved
+ * or got its star count changed is still the same row. A matched row with the same content
+ * can be kept as is, only changed and new rows need to be applied</p>
+ * <p>Computing a diff only reads its arguments, so it may run on a background thread as long
+ * as they aren't modified meanwhile</p>
+ */
+public class GHListDiff {
+
+    public final static int NO_POSITION = -1;
+
+    private final int[] mOldPositions;
+    private final int[] mNewPositions;
+    private final BitSet mChanged;
+    private final int mChangedCount;
+    private final int mMovedCount;
+
+    private GHListDiff(int[] oldPositions, int[] newPositions, BitSet changed, int changedCount, int movedCount) {
+        mOldPositions = oldPositions;
+        mNewPositions = newPositions;
+        mChanged = changed;
+        mChangedCount = changedCount;
+        mMovedCount = movedCount;
+    }
+
+    /**
+     * @param oldItems Shown rows
+     * @param newItems Refreshed rows
+     */
+    public static GHListDiff compute(GHItemStore oldItems, List<GHData.Item> newItems) {
+        final HashMap<String, Integer> oldRows = new HashMap<String, Integer>(oldItems.size() * 2);
+        for (int row = 0; row < oldItems.size(); row++) {
+            final String key = oldItems.getProjectURL(row);
+            if (key != null && !oldRows.containsKey(key)) {
+                oldRows.put(key, row);
+            }
+        }
+
+        final int[] oldPositions = new int[newItems.size()];
+        final int[] newPositions = new int[oldItems.size()];
+        Arrays.fill(newPositions, NO_POSITION);
+        final BitSet changed = new BitSet(newItems.size());
+        int changedCount = 0;
+        int movedCount = 0;
+        for (int position = 0; position < newItems.size(); position++) {
+            final GHData.Item item = newItems.get(position);
+            final Integer oldRow = (item.getProjectURL() != null ? oldRows.remove(item.getProjectURL()) : null);
+            if (oldRow == null) {
+                oldPositions[position] = NO_POSITION;
+                changed.set(position);
+                changedCount++;
+                continue;
+            }
+            oldPositions[position] = oldRow;
+            newPositions[oldRow] = position;
+            if (oldRow != position) {
+                movedCount++;
+            }
+            if (!item.equals(oldItems.getItem(oldRow))) {
+                changed.set(position);
+                changedCount++;
+            }
+        }
+        return new GHListDiff(oldPositions, newPositions, changed, changedCount, movedCount);
+    }
+
+    /**
+     * @return Previous position of the row, or {@link GHListDiff#NO_POSITION} for a new one
+     */
+    public int getOldPosition(int newPosition) {
+        return mOldPositions[newPosition];
+    }
+
+    /**
+     * @return New positions of previous rows ({@link GHListDiff#NO_POSITION} for removed ones)
+     */
+    public int[] getNewPositions() {
+        return mNewPositions;
+    }
+
+    /**
+     * @return True if the row is new, or its content differs from the previous one
+     */
+    public boolean isChanged(int newPosition) {
+        return mChanged.get(newPosition);
+    }
+
+    /**
+     * @return Number of new and changed rows
+     */
+    public int getChangedCount() {
+        return mChangedCount;
+    }
+
+    /**
+     * @return Number of previous rows at another position now
+     */
+    public int getMovedCount() {
+        return mMovedCount;
+    }
+
+    /**
+     * @return Number of previous rows not present anymore
+     */
+    public int getRemovedCount() {
+        int count = 0;
+        for (int position : mNewPositions) {
+            if (position == NO_POSITION) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return True if the refreshed list is the same as the shown one
+     */
+    public boolean isEmpty() {
+        return (mChangedCount == 0 && mMovedCount == 0 && mOldPositions.length == mNewPositions.length);
+    }
+}
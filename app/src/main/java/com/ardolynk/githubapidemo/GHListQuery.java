@@ -0,0 +1,406 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <p>Sorts and filters rows of a {@link GHItemStore} in memory, so a list already loaded is re-sorted
+ * or narrowed without going to network</p>
+ * <p>Rows are indexed once: there's an array of rows sorted by every {@link GHListQuery.Order}, and
+ * rows appended later (pages loaded) are sorted on their own and merged into the arrays. Every filter
+ * is a mask of matching rows, it's computed again only when the filter changes (and extended for
+ * appended rows), and the rows shown are the ones of the sorted array set in all masks</p>
+ * <p>Names and logins are compared and matched as the store keeps them, ignoring case of ASCII letters,
+ * so the index holds no strings. Its arrays grow geometrically and are reused as rows are appended</p>
+ * <p>Rows replaced or removed make the index built from scratch once it's used again, see
+ * {@link GHListQuery#invalidate()}. Nothing is indexed until the query is active, and the index is
+ * dropped once it's not, or by {@link GHListQuery#release()}</p>
+ * <p>This class is not thread safe</p>
+ */
+public class GHListQuery {
+
+    public final static int NO_MIN_STARS = -1;
+
+    private final static int[] EMPTY = new int[0];
+
+    public enum Order {
+
+        /**
+         * As loaded, i.e. by star count as the search gives it
+         */
+        LOADED,
+
+        /**
+         * By star count, most starred first
+         */
+        STARS,
+
+        /**
+         * By project name
+         */
+        NAME,
+
+        /**
+         * By owner login, then by star count
+         */
+        OWNER
+    }
+
+    private interface RowComparator {
+        int compare(int first, int second);
+    }
+
+    private final GHItemStore mItems;
+    private Order mOrder = Order.LOADED;
+    private int mMinStars = NO_MIN_STARS;
+    private String mOwner;
+    private byte[] mOwnerKey;
+    private String mText;
+    private byte[] mTextKey;
+
+    //Index of rows up to mIndexedCount
+
+    private int mIndexedCount;
+    private int[] mStarCounts = EMPTY;
+    private int[] mOwnerIds = EMPTY;
+    private int[] mByStars = EMPTY;
+    private int[] mByName = EMPTY;
+    private int[] mByOwner = EMPTY;
+
+    //Appended rows being sorted
+
+    private int[] mAdded = EMPTY;
+    private int[] mMergeBuffer = EMPTY;
+
+    //Masks of rows matching filters (null if a filter is off, or its mask is to be computed)
+
+    private BitSet mMinStarsMask;
+    private BitSet mOwnerMask;
+    private BitSet mTextMask;
+
+    private int[] mRows = EMPTY;
+    private int mRowCount;
+    private boolean mRowsValid;
+
+    public GHListQuery(GHItemStore items) {
+        mItems = items;
+    }
+
+    /**
+     * @return True if rows are sorted other than loaded or filtered
+     */
+    public boolean isActive() {
+        return (mOrder != Order.LOADED || mMinStars != NO_MIN_STARS || mOwner != null || mText != null);
+    }
+
+    public Order getOrder() {
+        return mOrder;
+    }
+
+    public void setOrder(Order order) {
+        mOrder = order;
+        onChanged();
+    }
+
+    /**
+     * @param minStars Minimal star count of rows shown, or {@link GHListQuery#NO_MIN_STARS}
+     */
+    public void setMinStars(int minStars) {
+        mMinStars = minStars;
+        mMinStarsMask = null;
+        onChanged();
+    }
+
+    /**
+     * @param owner Owner login of rows shown (case insensitive), or null to show every owner
+     */
+    public void setOwner(String owner) {
+        mOwner = owner;
+        mOwnerKey = (owner != null ? GHStringPool.toFoldedBytes(owner) : null);
+        mOwnerMask = null;
+        onChanged();
+    }
+
+    /**
+     * @param text Text rows shown have in the project name or the owner login (case insensitive),
+     *             or null to show every row
+     */
+    public void setText(String text) {
+        mText = text;
+        mTextKey = (text != null ? GHStringPool.toFoldedBytes(text) : null);
+        mTextMask = null;
+        onChanged();
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * Turns all the filters off, the order is kept
+     */
+    public void clearFilters() {
+        setMinStars(NO_MIN_STARS);
+        setOwner(null);
+        setText(null);
+    }
+
+    /**
+     * Tells rows were replaced, removed or modified, so the index is built again once used
+     */
+    public void invalidate() {
+
+        //Owner IDs may be reassigned as well
+
+        mIndexedCount = 0;
+        mMinStarsMask = null;
+        mOwnerMask = null;
+        mTextMask = null;
+        mRowsValid = false;
+    }
+
+    /**
+     * Drops the index to free memory, it's built again once used
+     */
+    public void release() {
+        invalidate();
+        mStarCounts = EMPTY;
+        mOwnerIds = EMPTY;
+        mByStars = EMPTY;
+        mByName = EMPTY;
+        mByOwner = EMPTY;
+        mAdded = EMPTY;
+        mMergeBuffer = EMPTY;
+        mRows = EMPTY;
+        mRowCount = 0;
+    }
+
+    /**
+     * @return Number of rows shown
+     */
+    public int size() {
+        update();
+        return mRowCount;
+    }
+
+    /**
+     * @return Row of the store shown at the position
+     */
+    public int getRow(int position) {
+        update();
+        return mRows[position];
+    }
+
+    private void onChanged() {
+        mRowsValid = false;
+        if (!isActive()) {
+
+            //Rows go as loaded, so the index is of no use until the query is set again
+
+            release();
+        }
+    }
+
+    private void update() {
+        final int size = mItems.size();
+        if (mIndexedCount > size) {
+            invalidate();
+        }
+        if (mIndexedCount < size) {
+            index(mIndexedCount, size);
+            mRowsValid = false;
+        }
+        if (mRowsValid) {
+            return;
+        }
+        if (mMinStarsMask == null && mMinStars != NO_MIN_STARS) {
+            mMinStarsMask = makeMinStarsMask();
+        }
+        if (mOwnerMask == null && mOwner != null) {
+            mOwnerMask = new BitSet(size);
+            matchOwner(mOwnerMask, 0, size);
+        }
+        if (mTextMask == null && mText != null) {
+            mTextMask = new BitSet(size);
+            matchText(mTextMask, 0, size);
+        }
+        final int[] order = getOrderedRows();
+        mRows = grow(mRows, size);
+        mRowCount = 0;
+        for (int i = 0; i < size; i++) {
+            final int row = (order != null ? order[i] : i);
+            if ((mMinStarsMask == null || mMinStarsMask.get(row)) && (mOwnerMask == null || mOwnerMask.get(row))
+                    && (mTextMask == null || mTextMask.get(row))) {
+                mRows[mRowCount++] = row;
+            }
+        }
+        mRowsValid = true;
+    }
+
+    /**
+     * @return Rows in the order set, or null for the loaded order
+     */
+    private int[] getOrderedRows() {
+        switch (mOrder) {
+            case STARS:
+                return mByStars;
+            case NAME:
+                return mByName;
+            case OWNER:
+                return mByOwner;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Adds rows from <code>start</code> (inclusive) to <code>end</code> (exclusive) to the index and masks
+     */
+    private void index(int start, int end) {
+        mStarCounts = grow(mStarCounts, end);
+        mOwnerIds = grow(mOwnerIds, end);
+        for (int row = start; row < end; row++) {
+            mStarCounts[row] = mItems.getStarCount(row);
+            mOwnerIds[row] = mItems.getOwnerLoginId(row);
+        }
+
+        //Sorted arrays are built from scratch, or get the new rows merged in
+
+        mByStars = insertSorted(mByStars, start, end, mStarsComparator);
+        mByName = insertSorted(mByName, start, end, mNameComparator);
+        mByOwner = insertSorted(mByOwner, start, end, mOwnerComparator);
+        mIndexedCount = end;
+
+        //Star masks are cheap to build from sorted rows, other masks get the new rows checked
+
+        mMinStarsMask = null;
+        if (start == 0) {
+            mOwnerMask = null;
+            mTextMask = null;
+        }
+        if (mOwnerMask != null) {
+            matchOwner(mOwnerMask, start, end);
+        }
+        if (mTextMask != null) {
+            matchText(mTextMask, start, end);
+        }
+    }
+
+    private BitSet makeMinStarsMask() {
+        final BitSet mask = new BitSet(mIndexedCount);
+        for (int i = 0; i < mIndexedCount && mStarCounts[mByStars[i]] >= mMinStars; i++) {
+            mask.set(mByStars[i]);
+        }
+        return mask;
+    }
+
+    private void matchOwner(BitSet mask, int start, int end) {
+        for (int row = start; row < end; row++) {
+            if (mItems.ownerLoginEquals(mOwnerIds[row], mOwnerKey)) {
+                mask.set(row);
+            }
+        }
+    }
+
+    private void matchText(BitSet mask, int start, int end) {
+        for (int row = start; row < end; row++) {
+            if (mItems.projectNameContains(row, mTextKey) || mItems.ownerLoginContains(mOwnerIds[row], mTextKey)) {
+                mask.set(row);
+            }
+        }
+    }
+
+    /**
+     * Sorts rows from <code>start</code> to <code>end</code> and merges them into a sorted array of the rows before.
+     * The merge goes from the end, so the rows before stay in the array rather than being copied to a new one
+     *
+     * @return Sorted array of the first <code>end</code> rows, the same one unless it had to grow
+     */
+    private int[] insertSorted(int[] sorted, int start, int end, RowComparator comparator) {
+        final int addedCount = end - start;
+        mAdded = grow(mAdded, addedCount);
+        for (int i = 0; i < addedCount; i++) {
+            mAdded[i] = start + i;
+        }
+        sort(addedCount, comparator);
+        final int[] result = grow(sorted, end);
+        int i = start - 1;
+        int j = addedCount - 1;
+        int k = end - 1;
+        while (j >= 0) {
+            result[k--] = (i >= 0 && comparator.compare(result[i], mAdded[j]) > 0 ? result[i--] : mAdded[j--]);
+        }
+        return result;
+    }
+
+    /**
+     * Merge sort of the first <code>count</code> rows of mAdded, it's stable and doesn't box them
+     */
+    private void sort(int count, RowComparator comparator) {
+        mMergeBuffer = grow(mMergeBuffer, count);
+        int[] source = mAdded;
+        int[] target = mMergeBuffer;
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count; low += width * 2) {
+                final int middle = Math.min(low + width, count);
+                final int high = Math.min(low + width * 2, count);
+                int i = low;
+                int j = middle;
+                int k = low;
+                while (i < middle && j < high) {
+                    target[k++] = (comparator.compare(source[i], source[j]) <= 0 ? source[i++] : source[j++]);
+                }
+                while (i < middle) {
+                    target[k++] = source[i++];
+                }
+                while (j < high) {
+                    target[k++] = source[j++];
+                }
+            }
+            final int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != mAdded) {
+            System.arraycopy(source, 0, mAdded, 0, count);
+        }
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return (array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2)));
+    }
+
+    /**
+     * Rows of equal keys go by star count, then as loaded
+     */
+    private final RowComparator mStarsComparator = new RowComparator() {
+        @Override
+        public int compare(int first, int second) {
+            final int result = compareInts(mStarCounts[second], mStarCounts[first]);
+            return (result != 0 ? result : compareInts(first, second));
+        }
+    };
+
+    /**
+     * Rows without a name or an owner go last
+     */
+    private final RowComparator mNameComparator = new RowComparator() {
+        @Override
+        public int compare(int first, int second) {
+            final int result = mItems.compareProjectNames(first, second);
+            return (result != 0 ? result : mStarsComparator.compare(first, second));
+        }
+    };
+
+    private final RowComparator mOwnerComparator = new RowComparator() {
+        @Override
+        public int compare(int first, int second) {
+            final int result = mItems.compareOwnerLogins(mOwnerIds[first], mOwnerIds[second]);
+            return (result != 0 ? result : mStarsComparator.compare(first, second));
+        }
+    };
+
+    private static int compareInts(int first, int second) {
+        return (first < second ? -1 : (first == second ? 0 : 1));
+    }
+}
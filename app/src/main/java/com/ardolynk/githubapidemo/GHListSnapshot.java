@@ -0,0 +1,144 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * <p>Snapshot of the shown list, saved when the service stops to be shown instantly on the next start</p>
+ * <p>The snapshot is a single small file (a header, the list state and {@link GHItemCodec} encoded items),
+ * read into memory in one shot and decoded from there. It's written to a temporary file first and renamed,
+ * so a crash while saving leaves the previous snapshot in place</p>
+ * <p>Methods do disk I/O, so they should not be called on the main thread</p>
+ */
+public class GHListSnapshot {
+
+    private final static int MAGIC = 0x4748534e;
+    private final static int VERSION = 2;
+    private final static int MAX_SIZE = 1024 * 1024;
+
+    private final List<GHData.Item> mItems;
+    private final int mPageNum;
+    private final boolean mHasNext;
+    private final String mSearchString;
+    private final int mFirstPageSize;
+    private final int mMaxPageSize;
+
+    /**
+     * @param items Shown items
+     * @param pageNum Number of pages the items were loaded from
+     * @param hasNext True if there's probably next page available to load
+     * @param searchString Search string of the list
+     * @param pagePlan Page sizes of the list
+     */
+    public GHListSnapshot(List<GHData.Item> items, int pageNum, boolean hasNext, String searchString,
+                          GHPagePlan pagePlan) {
+        mItems = items;
+        mPageNum = pageNum;
+        mHasNext = hasNext;
+        mSearchString = searchString;
+        mFirstPageSize = pagePlan.getFirstPageSize();
+        mMaxPageSize = pagePlan.getMaxPageSize();
+    }
+
+    public List<GHData.Item> getItems() {
+        return mItems;
+    }
+
+    public int getPageNum() {
+        return mPageNum;
+    }
+
+    public boolean hasNext() {
+        return mHasNext;
+    }
+
+    public String getSearchString() {
+        return mSearchString;
+    }
+
+    /**
+     * @return Page sizes of the list, so further pages continue it
+     */
+    public GHPagePlan getPagePlan() {
+        return new GHPagePlan(mFirstPageSize, mMaxPageSize);
+    }
+
+    /**
+     * Replaces the snapshot in the file with this one
+     */
+    public void write(File file) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(buffer);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(mPageNum);
+        data.writeBoolean(mHasNext);
+        data.writeInt(mFirstPageSize);
+        data.writeInt(mMaxPageSize);
+        GHItemCodec.writeString(data, mSearchString);
+        GHItemCodec.write(data, mItems);
+        data.close();
+
+        final File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(tempFile);
+            output.write(buffer.toByteArray());
+            output.getFD().sync();
+        } finally {
+            closeQuietly(output);
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * @return Snapshot saved to the file, or null if there's none (or it's broken)
+     */
+    public static GHListSnapshot read(File file) {
+        final long length = file.length();
+        if (length <= 0 || length > MAX_SIZE) {
+            return null;
+        }
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            final byte[] bytes = new byte[(int) length];
+            input.readFully(bytes);
+
+            final DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                return null;
+            }
+            final int pageNum = data.readInt();
+            final boolean hasNext = data.readBoolean();
+            final GHPagePlan pagePlan = new GHPagePlan(data.readInt(), data.readInt());
+            final String searchString = GHItemCodec.readString(data);
+            return new GHListSnapshot(GHItemCodec.read(data), pageNum, hasNext, searchString, pagePlan);
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {}
+        }
+    }
+}
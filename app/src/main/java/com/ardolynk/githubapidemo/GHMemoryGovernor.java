@@ -0,0 +1,171 @@
+package com.ardolynk.githubapidemo;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Build;
+
+import java.util.ArrayList;
+
+/**
+ * <p>Single source of the app memory budget, shrinking it as the system reports memory pressure</p>
+ * <p>The budget starts at the heap the app may use (halved on low RAM devices), and caches size
+ * themselves as a fraction of it. Trim levels of {@link ComponentCallbacks2#onTrimMemory(int)} cut it
+ * in steps: to 3/4 while running moderately low, to 1/2 while running low or once the UI is hidden,
+ * to 1/4 while running critically low, in the background or in the middle of the background list,
+ * and to nothing when the process is about to be killed (the end of the list, or low memory).
+ * Levels of a running app and levels of a hidden one are reported apart, and the stricter budget of
+ * the latest ones wins, so a hidden UI doesn't undo a cut of running critically low. The full budget
+ * is back on {@link GHMemoryGovernor#reset()}, e.g. once the UI is shown again</p>
+ * <p>Listeners are told of every change and resize their caches, or release them altogether
+ * as told by {@link GHMemoryGovernor#isTrimmingRows()} and {@link GHMemoryGovernor#isReleasingCaches()}</p>
+ * <p>This class is not thread safe, it's meant to be used on the main thread (where trim callbacks come)</p>
+ */
+public class GHMemoryGovernor {
+
+    public final static int NO_TRIM = 0;
+    private final static int BUDGET_STEPS = 4;
+    private final static int LOW_RAM_DIVIDER = 2;
+    private final static long MEGABYTE = 1024 * 1024;
+
+    public interface Listener {
+        /**
+         * Called on the main thread once the budget or the trim level changes
+         */
+        void onMemoryBudgetChanged(GHMemoryGovernor governor);
+    }
+
+    private final long mHeapSize;
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+    private int mRunningLevel = NO_TRIM;
+    private int mHiddenLevel = NO_TRIM;
+
+    /**
+     * @param heapSize Full budget in bytes
+     */
+    public GHMemoryGovernor(long heapSize) {
+        mHeapSize = heapSize;
+    }
+
+    /**
+     * @return Governor with the budget of the heap available to the app on this device
+     */
+    public static GHMemoryGovernor forContext(Context context) {
+        final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapSize = Math.min(Runtime.getRuntime().maxMemory(), activityManager.getMemoryClass() * MEGABYTE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && activityManager.isLowRamDevice()) {
+            heapSize /= LOW_RAM_DIVIDER;
+        }
+        return new GHMemoryGovernor(heapSize);
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return Current budget in bytes
+     */
+    public long getBudget() {
+        return mHeapSize * Math.min(getBudgetSteps(mRunningLevel), getBudgetSteps(mHiddenLevel)) / BUDGET_STEPS;
+    }
+
+    /**
+     * @param fraction Divider of the budget, e.g. 8 means 1/8 of it
+     * @return Current budget share of a cache in bytes
+     */
+    public int getBudget(int fraction) {
+        return (int) Math.min(Integer.MAX_VALUE, getBudget() / fraction);
+    }
+
+    /**
+     * @return The higher of the latest running and hidden trim levels reported,
+     * or {@link GHMemoryGovernor#NO_TRIM}
+     */
+    public int getTrimLevel() {
+        return Math.max(mRunningLevel, mHiddenLevel);
+    }
+
+    /**
+     * @return True if rows not shown should be dropped from memory (and reloaded once needed): while
+     * running low, or in the background. A hidden UI alone doesn't drop them, as it's no memory pressure
+     */
+    public boolean isTrimmingRows() {
+        return (mRunningLevel >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || mHiddenLevel >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+    }
+
+    /**
+     * @return True if caches that can be read again from disk should be released
+     */
+    public boolean isReleasingCaches() {
+        return getTrimLevel() >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+    }
+
+    /**
+     * @param level Level as given to {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            setTrimLevels(mRunningLevel, level);
+        }
+        else {
+            setTrimLevels(level, mHiddenLevel);
+        }
+    }
+
+    public void onLowMemory() {
+        setTrimLevels(mRunningLevel, ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Restores the full budget
+     */
+    public void reset() {
+        setTrimLevels(NO_TRIM, NO_TRIM);
+    }
+
+    private void setTrimLevels(int runningLevel, int hiddenLevel) {
+        if (runningLevel == mRunningLevel && hiddenLevel == mHiddenLevel) {
+            return;
+        }
+        mRunningLevel = runningLevel;
+        mHiddenLevel = hiddenLevel;
+
+        //Listeners may remove themselves
+
+        final ArrayList<Listener> listeners = new ArrayList<Listener>(mListeners);
+        for (Listener listener : listeners) {
+            listener.onMemoryBudgetChanged(this);
+        }
+    }
+
+    /**
+     * @return Number of budget quarters left at the trim level
+     */
+    private static int getBudgetSteps(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            return 0;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 1;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 2;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 1;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 2;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return 3;
+        }
+        return BUDGET_STEPS;
+    }
+}
@@ -0,0 +1,209 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Registry of named counters and latency histograms of the list pipeline stages</p>
+ * <p>Recording is lock-free and allocation-free, so it's cheap enough to stay on in production:
+ * a counter is an atomic long, and a histogram is an array of atomic bucket counters. Histogram
+ * buckets are log-linear (like in HdrHistogram): every power of two range is split into
+ * {@link Histogram#SUB_BUCKET_COUNT} buckets, so a percentile is off by 1/8 of the value at most</p>
+ * <p>Metrics are created on first use by name, callers on hot paths should keep the returned
+ * instances rather than look them up every time</p>
+ */
+public class GHMetrics {
+
+    public final static String PAGE_REQUEST = "page.request";
+    public final static String PAGE_PARSE = "page.parse";
+    public final static String PAGE_CACHE_READ = "page.cache.read";
+    public final static String PAGE_CACHE_HIT = "page.cache.hit";
+    public final static String PAGE_CACHE_MISS = "page.cache.miss";
+    public final static String PAGE_DELIVER = "page.deliver";
+    public final static String AVATAR_DECODE = "avatar.decode";
+    public final static String LIST_BIND = "list.bind";
+    public final static String LIST_DIFF = "list.diff";
+
+    private final ConcurrentHashMap<String, Counter> mCounters = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentHashMap<String, Histogram> mHistograms = new ConcurrentHashMap<String, Histogram>();
+
+    /**
+     * @return Counter of the given name
+     */
+    public Counter counter(String name) {
+        Counter counter = mCounters.get(name);
+        if (counter == null) {
+            final Counter newCounter = new Counter();
+            counter = mCounters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @return Latency histogram of the given name
+     */
+    public Histogram histogram(String name) {
+        Histogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            final Histogram newHistogram = new Histogram();
+            histogram = mHistograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Resets all metrics to zero
+     */
+    public void reset() {
+        for (Counter counter : mCounters.values()) {
+            counter.mValue.set(0);
+        }
+        for (Histogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Prints all metrics in name order: counters, then count, p50, p99 and max of each histogram
+     */
+    public void dump(PrintWriter writer) {
+        for (Map.Entry<String, Counter> entry : new TreeMap<String, Counter>(mCounters).entrySet()) {
+            writer.println(String.format("%-18s %10d", entry.getKey(), entry.getValue().get()));
+        }
+        writer.println(String.format("%-18s %10s %10s %10s %10s", "stage (us)", "count", "p50", "p99", "max"));
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(mHistograms).entrySet()) {
+            final Histogram histogram = entry.getValue();
+            writer.println(String.format("%-18s %10d %10d %10d %10d", entry.getKey(), histogram.getCount(),
+                    histogram.getPercentile(50), histogram.getPercentile(99), histogram.getMax()));
+        }
+    }
+
+    public static class Counter {
+        private final AtomicLong mValue = new AtomicLong();
+
+        public void increment() {
+            mValue.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            mValue.addAndGet(delta);
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+    }
+
+    /**
+     * Histogram of durations in microseconds
+     */
+    public static class Histogram {
+        public final static int SUB_BUCKET_COUNT = 8;
+
+        private final static int SUB_BUCKET_BITS = 3;
+        private final static long MAX_VALUE = (1L << 40) - 1;
+        private final static int BUCKET_COUNT = getBucket(MAX_VALUE) + 1;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        /**
+         * @return Start time to pass to {@link Histogram#stop(long)}
+         */
+        public static long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Records the time passed since the start
+         *
+         * @param startTime Value returned by {@link Histogram#start()}
+         */
+        public void stop(long startTime) {
+            record((System.nanoTime() - startTime) / 1000);
+        }
+
+        /**
+         * @param value Duration in microseconds
+         */
+        public void record(long value) {
+            final long clampedValue = Math.max(0, Math.min(MAX_VALUE, value));
+            mBuckets.incrementAndGet(getBucket(clampedValue));
+            mCount.incrementAndGet();
+            long max = mMax.get();
+            while (clampedValue > max && !mMax.compareAndSet(max, clampedValue)) {
+                max = mMax.get();
+            }
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        /**
+         * @param percentile Percentile from 0 to 100
+         * @return Upper bound of the bucket containing the percentile (zero if nothing is recorded)
+         */
+        public long getPercentile(double percentile) {
+            final long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = mBuckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(getBucketMax(i), getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mMax.set(0);
+        }
+
+        static int getBucket(long value) {
+            if (value < SUB_BUCKET_COUNT) {
+                return (int) value;
+            }
+            final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            final int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+            return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+        }
+
+        static long getBucketMax(int bucket) {
+            if (bucket < SUB_BUCKET_COUNT) {
+                return bucket;
+            }
+            final int shift = bucket / SUB_BUCKET_COUNT - 1;
+            final long subBucket = bucket % SUB_BUCKET_COUNT;
+            return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.ArrayList;
+
+import lombok.Data;
+
+/**
+ * <p>Result of a single page request</p>
+ * <p>{@link GHPage#isNotModified()} means the server confirmed the page we already have
+ * (in this case the item list is null)</p>
+ * <p>{@link GHPage#isCached()} means the page was loaded from cache and it should be revalidated</p>
+ */
+@Data
+public class GHPage {
+
+    /**
+     * The search API gives only this many first results
+     */
+    public final static int MAX_SEARCH_RESULTS = 1000;
+
+    private final GHPageKey key;
+    private final ArrayList<GHData.Item> items;
+    private final String etag;
+    private final boolean notModified;
+    private final boolean cached;
+    /**
+     * Number of results to page through (see {@link GHPage#getAvailableCount(int)}),
+     * or {@link GHData#UNKNOWN_COUNT}
+     */
+    private final int totalCount;
+
+    /**
+     * @param totalCount Total count of a search, or {@link GHData#UNKNOWN_COUNT}
+     * @return Number of results of the search the API gives
+     */
+    public static int getAvailableCount(int totalCount) {
+        return (totalCount != GHData.UNKNOWN_COUNT ? Math.min(totalCount, MAX_SEARCH_RESULTS) : GHData.UNKNOWN_COUNT);
+    }
+
+    /**
+     * @return True if there are more results after this page. It's told by the total count
+     * if it's known, and by a full page otherwise
+     */
+    public boolean hasNext() {
+        if (items == null || items.isEmpty()) {
+            return false;
+        }
+        final int end = key.getOffset() + items.size();
+        if (totalCount != GHData.UNKNOWN_COUNT) {
+            return end < totalCount;
+        }
+        return items.size() >= key.getPerPage() && end < MAX_SEARCH_RESULTS;
+    }
+}
@@ -0,0 +1,231 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Size-bounded disk cache of search result pages</p>
+ * <p>Each page is stored in a separate file together with its ETag, so it can be served
+ * instantly and then revalidated by a conditional request. The least recently used pages
+ * are evicted once the total size exceeds the limit</p>
+ * <p>A page file is read into memory in one shot and decoded from there, a broken one is dropped
+ * and taken as a miss</p>
+ * <p>All methods do disk I/O, so they should not be called on the main thread</p>
+ */
+public class GHPageCache {
+
+    private final static int MAGIC = 0x47485043;
+    private final static int VERSION = 2;
+    private final static String FILE_SUFFIX = ".page";
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final LinkedHashMap<String, Long> mFileSizes = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long mTotalSize;
+    private boolean mInitialized;
+
+    /**
+     * @param directory Cache directory (created if missing)
+     * @param maxSize Size limit in bytes
+     */
+    public GHPageCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Cached page content
+     */
+    public static class Entry {
+        public final String etag;
+        public final long storeTime;
+        public final int totalCount;
+        public final ArrayList<GHData.Item> items;
+
+        public Entry(String etag, long storeTime, int totalCount, ArrayList<GHData.Item> items) {
+            this.etag = etag;
+            this.storeTime = storeTime;
+            this.totalCount = totalCount;
+            this.items = items;
+        }
+    }
+
+    /**
+     * @return Stored page or null if there's no valid entry for the key
+     */
+    public synchronized Entry get(GHPageKey key) {
+        initialize();
+        final String fileName = getFileName(key);
+        if (mFileSizes.get(fileName) == null) {
+            return null;
+        }
+        final File file = new File(mDirectory, fileName);
+        FileInputStream fileInput = null;
+        try {
+            final long length = file.length();
+            if (length > mMaxSize) {
+                throw new IOException("Cache file too big");
+            }
+            fileInput = new FileInputStream(file);
+            final byte[] bytes = new byte[(int) length];
+            new DataInputStream(fileInput).readFully(bytes);
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unsupported cache file format");
+            }
+            if (!key.getCacheKey().equals(GHItemCodec.readString(input))) {
+
+                //Hash collision, the file belongs to another page
+
+                return null;
+            }
+            final String etag = GHItemCodec.readString(input);
+            final long storeTime = input.readLong();
+            final int totalCount = input.readInt();
+            final Entry entry = new Entry(etag, storeTime, totalCount, GHItemCodec.read(input));
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException e) {
+            remove(fileName);
+            return null;
+        } finally {
+            closeQuietly(fileInput);
+        }
+    }
+
+    /**
+     * Stores a page replacing the previous content for this key
+     *
+     * @param etag ETag header value of the response (may be null)
+     * @param totalCount Number of results to page through ({@link GHData#UNKNOWN_COUNT} if unknown)
+     */
+    public synchronized void put(GHPageKey key, String etag, int totalCount, List<GHData.Item> items) {
+        initialize();
+        final String fileName = getFileName(key);
+        final File file = new File(mDirectory, fileName);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            GHItemCodec.writeString(output, key.getCacheKey());
+            GHItemCodec.writeString(output, etag);
+            output.writeLong(System.currentTimeMillis());
+            output.writeInt(totalCount);
+            GHItemCodec.write(output, items);
+            output.close();
+            output = null;
+        } catch (IOException e) {
+            closeQuietly(output);
+            remove(fileName);
+            return;
+        }
+        final Long previousSize = mFileSizes.put(fileName, file.length());
+        mTotalSize += file.length() - (previousSize != null ? previousSize : 0);
+        trimToSize();
+    }
+
+    /**
+     * Marks a page as recently used, e.g. after the server confirmed it's not modified
+     */
+    public synchronized void touch(GHPageKey key) {
+        initialize();
+        final String fileName = getFileName(key);
+        if (mFileSizes.get(fileName) != null) {
+            new File(mDirectory, fileName).setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return Total size of stored pages in bytes
+     */
+    public synchronized long getSize() {
+        initialize();
+        return mTotalSize;
+    }
+
+    public synchronized void clear() {
+        initialize();
+        for (String fileName : mFileSizes.keySet()) {
+            new File(mDirectory, fileName).delete();
+        }
+        mFileSizes.clear();
+        mTotalSize = 0;
+    }
+
+    private void initialize() {
+        if (mInitialized) {
+            return;
+        }
+        mInitialized = true;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            return;
+        }
+        final File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        //Restore LRU order from the file modification times
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                final long firstModified = first.lastModified();
+                final long secondModified = second.lastModified();
+                return (firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1));
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                mFileSizes.put(file.getName(), file.length());
+                mTotalSize += file.length();
+            }
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Long>> iterator = mFileSizes.entrySet().iterator();
+        while (mTotalSize > mMaxSize && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            new File(mDirectory, eldest.getKey()).delete();
+            mTotalSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void remove(String fileName) {
+        final Long size = mFileSizes.remove(fileName);
+        if (size != null) {
+            mTotalSize -= size;
+        }
+        new File(mDirectory, fileName).delete();
+    }
+
+    private static String getFileName(GHPageKey key) {
+        return Integer.toHexString(key.getCacheKey().hashCode()) + FILE_SUFFIX;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {}
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+import lombok.Data;
+
+/**
+ * <p>Identifies a single page of repository search results</p>
+ * <p>The page number counts pages of the list, which may differ in size (see {@link GHPagePlan}),
+ * so the page is requested from the API by its offset</p>
+ * <p>Results are limited to a single language, or not limited if it's null (the key of a list merged
+ * from several languages, see {@link GHPageMerger}). They may be limited by star count as well, to page
+ * through them by star ranges rather than by offset alone</p>
+ */
+@Data
+public class GHPageKey {
+    private final static String SEARCH_URL = "https://api.github.com/search/repositories?q=";
+    private final static String LANGUAGE_QUALIFIER = "%20language:";
+    private final static String MAX_STARS_QUALIFIER = "%20stars:%3C%3D";
+    private final static String QUERY_SUFFIX = "&sort=stars&order=desc";
+
+    /**
+     * No star count limit, see {@link GHPageKey#getMaxStars()}
+     */
+    public final static int NO_STAR_LIMIT = -1;
+
+    private final String searchString;
+    private final String language;
+    private final int maxStars;
+    private final int page;
+    private final int perPage;
+    private final int offset;
+
+    /**
+     * Key of a page in a list of pages of the same size
+     */
+    public GHPageKey(String searchString, String language, int page, int perPage) {
+        this(searchString, language, page, perPage, (page - 1) * perPage);
+    }
+
+    /**
+     * @param offset Number of rows before the page, a multiple of the page size
+     */
+    public GHPageKey(String searchString, String language, int page, int perPage, int offset) {
+        this(searchString, language, NO_STAR_LIMIT, page, perPage, offset);
+    }
+
+    /**
+     * @param maxStars Maximum star count of results, or {@link GHPageKey#NO_STAR_LIMIT}
+     * @param offset Number of rows before the page (among ones within the star limit), a multiple of the page size
+     */
+    public GHPageKey(String searchString, String language, int maxStars, int page, int perPage, int offset) {
+        this.searchString = searchString;
+        this.language = language;
+        this.maxStars = maxStars;
+        this.page = page;
+        this.perPage = perPage;
+        this.offset = offset;
+    }
+
+    /**
+     * @return Page number in terms of the search API (for the page size of this page)
+     */
+    public int getApiPage() {
+        return offset / perPage + 1;
+    }
+
+    /**
+     * @return Key string unique for each (search string, language, star limit, page, page size) combination
+     */
+    public String getCacheKey() {
+        return getApiPage() + "/" + perPage + "/" + (language != null ? language : "")
+                + (maxStars != NO_STAR_LIMIT ? "<=" + maxStars : "") + "/" + searchString;
+    }
+
+    /**
+     * @return Search query with qualifiers, unencoded (the sort order is not included)
+     */
+    public String getSearchQuery() {
+        final StringBuilder query = new StringBuilder(searchString);
+        if (language != null) {
+            query.append(" language:").append(language);
+        }
+        if (maxStars != NO_STAR_LIMIT) {
+            query.append(" stars:<=").append(maxStars);
+        }
+        return query.toString();
+    }
+
+    /**
+     * @return Search API URL of the page (built by appending, it's called for every page request)
+     */
+    public String getUrl() {
+        final String query;
+        final String languageQuery;
+        try {
+            query = URLEncoder.encode(searchString, "UTF-8");
+            languageQuery = (language != null ? LANGUAGE_QUALIFIER + URLEncoder.encode(language, "UTF-8") : "");
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+        final StringBuilder url = new StringBuilder(SEARCH_URL.length() + query.length() + languageQuery.length()
+                + QUERY_SUFFIX.length() + 64)
+                .append(SEARCH_URL).append(query).append(languageQuery);
+        if (maxStars != NO_STAR_LIMIT) {
+            url.append(MAX_STARS_QUALIFIER).append(maxStars);
+        }
+        return url.append(QUERY_SUFFIX)
+                .append("&page=").append(getApiPage())
+                .append("&per_page=").append(perPage)
+                .toString();
+    }
+}
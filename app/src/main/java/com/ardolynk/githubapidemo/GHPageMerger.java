@@ -0,0 +1,394 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * <p>Fetches pages of a list merged from star sorted searches in several languages</p>
+ * <p>Each language is searched on its own, and its pages are merged by star count as they arrive
+ * (a k-way merge over the per-language pages). The next page of a language is fetched only when all
+ * its rows fetched so far are merged, so a list page costs as few source pages as possible. Languages
+ * running dry together are fetched in parallel, e.g. all of them for the first page</p>
+ * <p>In keyset mode a language is paged through by star ranges: the next page is the first one of
+ * results with no more stars than the last row seen (<code>stars:&lt;=N</code>), with rows seen already
+ * dropped by project URL. So every request is a cheap first page, and the list goes on past the
+ * {@link GHPage#MAX_SEARCH_RESULTS} the API gives for a single search. Only if more than that many
+ * repositories have the same star count, the list stops in the middle of them</p>
+ * <p>List pages are merged one after another. A page requested ahead is merged once the pages before
+ * it are, and a page requested again makes the merge start over</p>
+ * <p>In keyset mode the merge may start in the middle of a list, after rows got by offset pages
+ * (see {@link GHPageMerger#startAfter(int, List)})</p>
+ * <p>Source pages are sized by the same {@link GHPagePlan} as the list. This class is not thread safe,
+ * all methods and source callbacks must be called on the same thread (the main one)</p>
+ */
+public class GHPageMerger implements GHPagePipeline.Fetcher<GHPage> {
+
+    private final GHPagePipeline.Fetcher<GHPage> mSource;
+    private final String mSearchString;
+    private final List<String> mLanguages;
+    private final GHPagePlan mPlan;
+    private final boolean mKeyset;
+    private final TreeMap<Integer, Request> mRequests = new TreeMap<Integer, Request>();
+    private int mFirstPage = 1;
+    private int mFirstMaxStars = GHPageKey.NO_STAR_LIMIT;
+    private final HashSet<String> mFirstUrls = new HashSet<String>();
+    private Stream[] mStreams;
+    private int mNextPage;
+    private ArrayList<GHData.Item> mRows;
+    private int mGeneration;
+    private boolean mMerging;
+
+    /**
+     * @param source Fetcher of single language pages
+     * @param languages Languages to merge
+     * @param plan Page sizes of the list (and of the source pages)
+     * @param keyset True to page through languages by star ranges, false to do it by offset
+     */
+    public GHPageMerger(GHPagePipeline.Fetcher<GHPage> source, String searchString, List<String> languages,
+                        GHPagePlan plan, boolean keyset) {
+        mSource = source;
+        mSearchString = searchString;
+        mLanguages = languages;
+        mPlan = plan;
+        mKeyset = keyset;
+        restart();
+    }
+
+    /**
+     * Drops merged rows and source pages, so the next page is merged from the start
+     */
+    public void restart() {
+        if (mStreams != null) {
+            for (Stream stream : mStreams) {
+                if (stream.mLoadingKey != null) {
+                    mSource.cancel(stream.mLoadingKey);
+                }
+            }
+        }
+        mGeneration++;
+        mStreams = new Stream[mLanguages.size()];
+        for (int i = 0; i < mStreams.length; i++) {
+            mStreams[i] = new Stream(mLanguages.get(i));
+            mStreams[i].mMaxStars = mFirstMaxStars;
+            mStreams[i].mRangeUrls.addAll(mFirstUrls);
+        }
+        mNextPage = mFirstPage;
+        mRows = null;
+    }
+
+    /**
+     * <p>Makes the merge start at a list page, with the star range after the rows before it.
+     * It's kept when the merge starts over</p>
+     * <p>This is meant for a list paged by offset up to the search cap, so it goes on by star ranges
+     * after that. Keyset mode only</p>
+     *
+     * @param firstPage First list page merged, earlier ones are not fetched through this merger
+     * @param rowsBefore Rows before the page, at least the ones with the lowest star count
+     */
+    public void startAfter(int firstPage, List<GHData.Item> rowsBefore) {
+        if (!mKeyset) {
+            throw new IllegalStateException("Not in keyset mode");
+        }
+        mFirstPage = firstPage;
+        mFirstMaxStars = GHPageKey.NO_STAR_LIMIT;
+        mFirstUrls.clear();
+        if (!rowsBefore.isEmpty()) {
+
+            //The next range is the one of the last row, and rows of its star count are seen already
+
+            mFirstMaxStars = rowsBefore.get(rowsBefore.size() - 1).getStarCount();
+            for (GHData.Item item : rowsBefore) {
+                if (item.getStarCount() == mFirstMaxStars) {
+                    mFirstUrls.add(item.getProjectURL());
+                }
+            }
+        }
+        restart();
+    }
+
+    /**
+     * @return Number of source pages fetched or being fetched since the merge started
+     */
+    public int getSourcePageCount() {
+        int count = 0;
+        for (Stream stream : mStreams) {
+            count += stream.mNextPage - 1 + (stream.mLoadingKey != null ? 1 : 0);
+        }
+        return count;
+    }
+
+    @Override
+    public void fetch(GHPageKey key, GHPagePipeline.Callback<GHPage> callback) {
+        if (key.getPage() < mNextPage) {
+            restart();
+        }
+        mRequests.put(key.getPage(), new Request(key, callback));
+        merge();
+    }
+
+    @Override
+    public void cancel(GHPageKey key) {
+        final Request request = mRequests.get(key.getPage());
+        if (request != null && request.mKey.equals(key)) {
+            mRequests.remove(key.getPage());
+        }
+
+        //Source pages being fetched are kept, the next list page is going to need them anyway
+    }
+
+    private void merge() {
+
+        //Sources and consumers may call back right away, the merge goes on in the outer call then
+
+        if (mMerging) {
+            return;
+        }
+        mMerging = true;
+        try {
+            mergeRequested();
+        } finally {
+            mMerging = false;
+        }
+    }
+
+    private void mergeRequested() {
+        while (!mRequests.isEmpty()) {
+            final int pageSize = mPlan.getPageSize(mNextPage);
+            if (mRows == null) {
+                mRows = new ArrayList<GHData.Item>(pageSize);
+            }
+            while (mRows.size() < pageSize) {
+                if (fetchDryStreams()) {
+                    return;
+                }
+                final Stream stream = pickTop();
+                if (stream == null) {
+
+                    //All languages are over
+
+                    break;
+                }
+                mRows.add(stream.mItems.get(stream.mPosition++));
+            }
+
+            //Pages nobody waits for are merged only to get to the requested ones
+
+            final ArrayList<GHData.Item> rows = mRows;
+            final Request request = mRequests.remove(mNextPage);
+            mNextPage++;
+            mRows = null;
+            if (request != null) {
+                request.mCallback.onSuccess(new MergedPage(request.mKey, rows, getTotalCount(), hasRowsLeft()));
+            }
+        }
+    }
+
+    /**
+     * Starts fetching next pages of languages with no rows left to merge
+     *
+     * @return True if the merge has to wait for some
+     */
+    private boolean fetchDryStreams() {
+        boolean waiting = false;
+        for (Stream stream : mStreams) {
+            if (stream.mPosition == stream.mItems.size() && stream.mHasNext) {
+                if (stream.mLoadingKey == null) {
+                    fetchNext(stream);
+                }
+                waiting |= (stream.mPosition == stream.mItems.size() && stream.mHasNext);
+            }
+        }
+        return waiting;
+    }
+
+    private void fetchNext(final Stream stream) {
+        final GHPageKey key;
+        if (mKeyset) {
+
+            //A page within the star range keeps the size of the first one, so its offset stays aligned
+
+            final int perPage = (stream.mRangeOffset > 0 ? stream.mRangePageSize : mPlan.getPageSize(stream.mNextPage));
+            key = new GHPageKey(mSearchString, stream.mLanguage, stream.mMaxStars, stream.mNextPage, perPage,
+                    stream.mRangeOffset);
+        }
+        else {
+            key = mPlan.makeKey(mSearchString, stream.mLanguage, stream.mNextPage);
+        }
+        final int generation = mGeneration;
+        stream.mLoadingKey = key;
+        mSource.fetch(key, new GHPagePipeline.Callback<GHPage>() {
+            @Override
+            public void onSuccess(GHPage page) {
+                if (generation != mGeneration) {
+                    return;
+                }
+                stream.mLoadingKey = null;
+                final List<GHData.Item> items = (page.getItems() != null ? page.getItems()
+                        : Collections.<GHData.Item>emptyList());
+                if (mKeyset) {
+                    stream.addRange(page.getKey(), items, page.hasNext());
+                }
+                else {
+                    stream.mItems = items;
+                    stream.mHasNext = page.hasNext();
+                    stream.mTotalCount = page.getTotalCount();
+                }
+                stream.mPosition = 0;
+                stream.mNextPage++;
+                merge();
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                if (generation != mGeneration) {
+                    return;
+                }
+
+                //The page is fetched again when the list page is requested again
+
+                stream.mLoadingKey = null;
+                final ArrayList<Request> requests = new ArrayList<Request>(mRequests.values());
+                mRequests.clear();
+                for (Request request : requests) {
+                    request.mCallback.onFailure(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Language with the most starred row to merge next (the first listed one of equal),
+     * or null if there are no rows left
+     */
+    private Stream pickTop() {
+        Stream top = null;
+        for (Stream stream : mStreams) {
+            if (stream.mPosition < stream.mItems.size() && (top == null
+                    || stream.mItems.get(stream.mPosition).getStarCount() > top.mItems.get(top.mPosition).getStarCount())) {
+                top = stream;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return True if there may be rows left to merge
+     */
+    private boolean hasRowsLeft() {
+        for (Stream stream : mStreams) {
+            if (stream.mPosition < stream.mItems.size() || stream.mHasNext) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of results of all languages, or {@link GHData#UNKNOWN_COUNT} if it's unknown for some
+     * (it's always unknown in keyset mode)
+     */
+    private int getTotalCount() {
+        int totalCount = 0;
+        for (Stream stream : mStreams) {
+            if (stream.mTotalCount == GHData.UNKNOWN_COUNT) {
+                return GHData.UNKNOWN_COUNT;
+            }
+            totalCount += stream.mTotalCount;
+        }
+        return totalCount;
+    }
+
+    /**
+     * Results of a single language: the last fetched page and the merge position in it
+     */
+    private static class Stream {
+        private final String mLanguage;
+        private List<GHData.Item> mItems = Collections.emptyList();
+        private int mPosition;
+        private int mNextPage = 1;
+        private boolean mHasNext = true;
+        private int mTotalCount = GHData.UNKNOWN_COUNT;
+        private GHPageKey mLoadingKey;
+        private int mMaxStars = GHPageKey.NO_STAR_LIMIT;
+        private int mRangeOffset;
+        private int mRangePageSize;
+        private final HashSet<String> mRangeUrls = new HashSet<String>();
+
+        Stream(String language) {
+            mLanguage = language;
+        }
+
+        /**
+         * Takes rows of a page within the star range, and moves the range to the last row of the page
+         *
+         * @param hasNext True if there are results after the page within the range
+         */
+        void addRange(GHPageKey key, List<GHData.Item> items, boolean hasNext) {
+
+            //The range is inclusive, so rows with its star count may be seen already
+
+            final ArrayList<GHData.Item> newItems = new ArrayList<GHData.Item>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                final GHData.Item item = items.get(i);
+                if (item.getStarCount() != mMaxStars || !mRangeUrls.contains(item.getProjectURL())) {
+                    newItems.add(item);
+                }
+            }
+            mItems = newItems;
+            if (items.isEmpty()) {
+                mHasNext = false;
+                return;
+            }
+
+            //Rows with the lowest star count may go on, so they start the next range. If all rows have it,
+            //the range is the same, and the next page of it is needed
+
+            final int lastStars = items.get(items.size() - 1).getStarCount();
+            if (lastStars != mMaxStars) {
+                mMaxStars = lastStars;
+                mRangeOffset = 0;
+                mRangeUrls.clear();
+            }
+            else {
+                mRangeOffset += key.getPerPage();
+            }
+            mRangePageSize = key.getPerPage();
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getStarCount() == lastStars) {
+                    mRangeUrls.add(items.get(i).getProjectURL());
+                }
+            }
+            mHasNext = hasNext && mRangeOffset + mRangePageSize <= GHPage.MAX_SEARCH_RESULTS;
+        }
+    }
+
+    /**
+     * Merged page, it's told by the merge whether there are rows left
+     */
+    private static class MergedPage extends GHPage {
+        private final boolean mHasNext;
+
+        MergedPage(GHPageKey key, ArrayList<GHData.Item> items, int totalCount, boolean hasNext) {
+            super(key, items, null, false, false, totalCount);
+            mHasNext = hasNext;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mHasNext;
+        }
+    }
+
+    private static class Request {
+        private final GHPageKey mKey;
+        private final GHPagePipeline.Callback<GHPage> mCallback;
+
+        Request(GHPageKey key, GHPagePipeline.Callback<GHPage> callback) {
+            mKey = key;
+            mCallback = callback;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Page request pipeline for a single search list</p>
+ * <p>Page fetches are tracked by {@link GHPageKey}, so a page requested again while it's being
+ * fetched (or already fetched and not delivered yet) is never fetched twice. Several pages may be
+ * fetched in parallel up to the given limit, the rest wait in a queue</p>
+ * <p>Fetched pages are handed to the consumer strictly in page order, and only up to the page
+ * requested with {@link GHPagePipeline#request(int)}. Pages fetched with
+ * {@link GHPagePipeline#prefetch(int)} are held until they are requested</p>
+ * <p>This class is not thread safe, all methods and fetcher callbacks must be called on the same
+ * thread (the main one)</p>
+ *
+ * @param <T> Page content type
+ */
+public class GHPagePipeline<T> {
+
+    /**
+     * Loads pages, e.g. from cache or network
+     */
+    public interface Fetcher<T> {
+        /**
+         * Starts loading the page, the callback must be called exactly once unless the fetch is cancelled
+         */
+        void fetch(GHPageKey key, Callback<T> callback);
+
+        /**
+         * Cancels loading the page, the callback may not be called after that
+         */
+        void cancel(GHPageKey key);
+    }
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Exception error);
+    }
+
+    /**
+     * Receives pages in page order
+     */
+    public interface Consumer<T> {
+        void onPageReady(GHPageKey key, T result);
+
+        /**
+         * Called instead of {@link Consumer#onPageReady(GHPageKey, Object)} if the page failed to load.
+         * The pipeline stops at this page until it's requested again
+         */
+        void onPageFailed(GHPageKey key, Exception error);
+    }
+
+    private final Fetcher<T> mFetcher;
+    private final Consumer<T> mConsumer;
+    private final int mMaxConcurrent;
+
+    private String mSearchString = "";
+    private String mLanguage;
+    private GHPagePlan mPlan;
+    private int mNextPage = 1;
+    private int mRequestedPage;
+    private final HashMap<GHPageKey, Fetch> mInFlight = new HashMap<GHPageKey, Fetch>();
+    private final ArrayDeque<GHPageKey> mPending = new ArrayDeque<GHPageKey>();
+    private final TreeMap<Integer, Fetch> mCompleted = new TreeMap<Integer, Fetch>();
+
+    /**
+     * @param maxConcurrent Maximum number of pages fetched in parallel
+     */
+    public GHPagePipeline(Fetcher<T> fetcher, Consumer<T> consumer, int maxConcurrent) {
+        mFetcher = fetcher;
+        mConsumer = consumer;
+        mMaxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Switches to a new list, all fetches of the previous one are cancelled
+     *
+     * @param searchString Search string of the list
+     * @param language Language of the list, or null for any (or several)
+     * @param plan Page sizes of the list
+     * @param firstPage The first page to deliver
+     */
+    public void reset(String searchString, String language, GHPagePlan plan, int firstPage) {
+        for (GHPageKey key : new ArrayList<GHPageKey>(mInFlight.keySet())) {
+            mFetcher.cancel(key);
+        }
+        mInFlight.clear();
+        mPending.clear();
+        mCompleted.clear();
+        mSearchString = searchString;
+        mLanguage = language;
+        mPlan = plan;
+        mNextPage = firstPage;
+        mRequestedPage = firstPage - 1;
+    }
+
+    /**
+     * Requests delivery of all pages up to the given one
+     */
+    public void request(int page) {
+        if (page > mRequestedPage) {
+            mRequestedPage = page;
+        }
+        for (int i = mNextPage; i <= mRequestedPage; i++) {
+            fetch(i);
+        }
+        drain();
+    }
+
+    /**
+     * Starts fetching the page in advance, it won't be delivered until requested
+     */
+    public void prefetch(int page) {
+        if (page >= mNextPage) {
+            fetch(page);
+        }
+    }
+
+    /**
+     * Drops prefetched pages held (fetched and not requested yet) but the first ones, e.g. to free memory.
+     * Dropped pages are fetched again once needed
+     *
+     * @param keptCount Number of held pages to keep
+     */
+    public void dropPrefetched(int keptCount) {
+        int kept = 0;
+        for (Integer page : new ArrayList<Integer>(mCompleted.keySet())) {
+            if (page > mRequestedPage && kept++ >= keptCount) {
+                mCompleted.remove(page);
+            }
+        }
+    }
+
+    /**
+     * @return True if the page is requested for delivery (rather than prefetched)
+     */
+    public boolean isRequested(int page) {
+        return page <= mRequestedPage;
+    }
+
+    /**
+     * @return True if the page is fetched or being fetched, and not delivered yet
+     */
+    public boolean isFetching(int page) {
+        final GHPageKey key = makeKey(page);
+        return mInFlight.containsKey(key) || mPending.contains(key) || mCompleted.containsKey(page);
+    }
+
+    /**
+     * @return Number of pages being fetched right now
+     */
+    public int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * @return The next page to deliver
+     */
+    public int getNextPage() {
+        return mNextPage;
+    }
+
+    private GHPageKey makeKey(int page) {
+        return mPlan.makeKey(mSearchString, mLanguage, page);
+    }
+
+    private void fetch(int page) {
+        final GHPageKey key = makeKey(page);
+        if (mInFlight.containsKey(key) || mPending.contains(key) || mCompleted.containsKey(page)) {
+
+            //Already there, the caller is attached to the existing fetch
+
+            return;
+        }
+        if (mInFlight.size() < mMaxConcurrent) {
+            start(key);
+        }
+        else if (isRequested(page)) {
+
+            //Requested pages go before prefetched ones
+
+            mPending.addFirst(key);
+        }
+        else {
+            mPending.addLast(key);
+        }
+    }
+
+    private void start(GHPageKey key) {
+        final Fetch fetch = new Fetch(key);
+        mInFlight.put(key, fetch);
+        mFetcher.fetch(key, fetch);
+    }
+
+    private void startPending() {
+        while (mInFlight.size() < mMaxConcurrent && !mPending.isEmpty()) {
+            start(mPending.pollFirst());
+        }
+    }
+
+    private void onFetchFinished(Fetch fetch) {
+        if (mInFlight.get(fetch.mKey) != fetch) {
+
+            //Stale fetch of a previous list
+
+            return;
+        }
+        mInFlight.remove(fetch.mKey);
+        mCompleted.put(fetch.mKey.getPage(), fetch);
+        startPending();
+        drain();
+    }
+
+    private void drain() {
+        while (mNextPage <= mRequestedPage) {
+            final Fetch fetch = mCompleted.get(mNextPage);
+            if (fetch == null) {
+                return;
+            }
+            mCompleted.remove(mNextPage);
+            if (fetch.mError != null) {
+                mRequestedPage = mNextPage - 1;
+                mConsumer.onPageFailed(fetch.mKey, fetch.mError);
+                return;
+            }
+            mNextPage++;
+            mConsumer.onPageReady(fetch.mKey, fetch.mResult);
+        }
+    }
+
+    private class Fetch implements Callback<T> {
+        private final GHPageKey mKey;
+        private T mResult;
+        private Exception mError;
+        private boolean mFinished;
+
+        Fetch(GHPageKey key) {
+            mKey = key;
+        }
+
+        @Override
+        public void onSuccess(T result) {
+            if (!mFinished) {
+                mFinished = true;
+                mResult = result;
+                onFetchFinished(this);
+            }
+        }
+
+        @Override
+        public void onFailure(Exception error) {
+            if (!mFinished) {
+                mFinished = true;
+                mError = error;
+                onFetchFinished(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.Arrays;
+
+/**
+ * <p>Sizes and offsets of the pages of a list</p>
+ * <p>The first page is small, so it arrives fast, and then page size doubles up to the maximum
+ * as the user scrolls deeper, so a long list costs fewer requests. The search API only takes a page
+ * number and a page size, so a page can only grow once its offset is a multiple of the new size.
+ * E.g. for the first page of 25 and the maximum of 100 the pages are 25, 25, 50, 100, 100...</p>
+ * <p>A plan is immutable, and the same plan must be used for all pages of a list</p>
+ */
+public class GHPagePlan {
+
+    private final int mFirstPageSize;
+    private final int mMaxPageSize;
+    private int[] mOffsets = new int[] {0};
+
+    /**
+     * @param firstPageSize Size of the first page
+     * @param maxPageSize Maximum page size (the same as the first one for a fixed size)
+     */
+    public GHPagePlan(int firstPageSize, int maxPageSize) {
+        if (firstPageSize <= 0 || maxPageSize < firstPageSize) {
+            throw new IllegalArgumentException("Invalid page sizes " + firstPageSize + ", " + maxPageSize);
+        }
+        mFirstPageSize = firstPageSize;
+        mMaxPageSize = maxPageSize;
+    }
+
+    public int getFirstPageSize() {
+        return mFirstPageSize;
+    }
+
+    public int getMaxPageSize() {
+        return mMaxPageSize;
+    }
+
+    /**
+     * @param page Page number, starting from 1
+     * @return Number of rows before the page
+     */
+    public synchronized int getOffset(int page) {
+        if (page > mOffsets.length) {
+            int count = mOffsets.length;
+            final int[] offsets = Arrays.copyOf(mOffsets, Math.max(page, count * 2));
+            for (; count < offsets.length; count++) {
+
+                //The page ending at this offset is the count-th one
+
+                final int previousSize = (count > 1 ? offsets[count - 1] - offsets[count - 2] : 0);
+                offsets[count] = offsets[count - 1] + getSize(previousSize, offsets[count - 1]);
+            }
+            mOffsets = offsets;
+        }
+        return mOffsets[page - 1];
+    }
+
+    /**
+     * @param page Page number, starting from 1
+     */
+    public int getPageSize(int page) {
+        return getOffset(page + 1) - getOffset(page);
+    }
+
+    /**
+     * @param language Language of results, or null for any
+     * @return Key of the page for the search string
+     */
+    public GHPageKey makeKey(String searchString, String language, int page) {
+        return new GHPageKey(searchString, language, page, getPageSize(page), getOffset(page));
+    }
+
+    /**
+     * @return Number of the page containing the row
+     */
+    public int getPage(int row) {
+        int page = 1;
+        while (getOffset(page + 1) <= row) {
+            page++;
+        }
+        return page;
+    }
+
+    /**
+     * @param previousSize Size of the previous page (zero for the first page)
+     * @param offset Offset of the page
+     */
+    private int getSize(int previousSize, int offset) {
+        if (previousSize == 0) {
+            return mFirstPageSize;
+        }
+        final int size = Math.min(mMaxPageSize, previousSize * 2);
+        return (offset % size == 0 ? size : previousSize);
+    }
+}
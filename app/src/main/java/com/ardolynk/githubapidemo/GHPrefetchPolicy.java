@@ -0,0 +1,85 @@
+package com.ardolynk.githubapidemo;
+
+/**
+ * <p>Decides how early the next page should be prefetched</p>
+ * <p>The prefetch distance (number of rows left to the end of the list) is the number of rows
+ * the user is expected to scroll through while the next page is loading, so it grows with
+ * measured scroll velocity and page latency</p>
+ */
+public class GHPrefetchPolicy {
+
+    private final static double SMOOTHING = 0.3;
+    private final static double SAFETY_FACTOR = 1.5;
+    private final static long DEFAULT_LATENCY_MS = 1000;
+    private final static long IDLE_INTERVAL_MS = 200;
+
+    private final int mMinDistance;
+    private final int mMaxDistance;
+    private double mVelocity;
+    private double mLatency = DEFAULT_LATENCY_MS;
+    private int mLastPosition = -1;
+    private long mLastTime;
+
+    /**
+     * @param minDistance Minimal prefetch distance in rows
+     * @param maxDistance Maximal prefetch distance in rows
+     */
+    public GHPrefetchPolicy(int minDistance, int maxDistance) {
+        mMinDistance = minDistance;
+        mMaxDistance = maxDistance;
+    }
+
+    /**
+     * Feeds the current scroll position
+     *
+     * @param position Last visible row
+     * @param time Current time in milliseconds
+     */
+    public void onScroll(int position, long time) {
+        if (mLastPosition < 0 || position < mLastPosition) {
+
+            //First sample or the list was reloaded
+
+            mLastPosition = position;
+            mLastTime = time;
+            return;
+        }
+        final long interval = time - mLastTime;
+        if (interval <= 0 || (position == mLastPosition && interval < IDLE_INTERVAL_MS)) {
+            return;
+        }
+        final double velocity = (double) (position - mLastPosition) / interval;
+        mVelocity += (velocity - mVelocity) * SMOOTHING;
+        mLastPosition = position;
+        mLastTime = time;
+    }
+
+    /**
+     * Feeds the measured page load time
+     */
+    public void onPageLatency(long latency) {
+        mLatency += (latency - mLatency) * SMOOTHING;
+    }
+
+    /**
+     * @return Scroll velocity in rows per second
+     */
+    public double getVelocity() {
+        return mVelocity * 1000;
+    }
+
+    /**
+     * @return Page latency in milliseconds
+     */
+    public long getLatency() {
+        return Math.round(mLatency);
+    }
+
+    /**
+     * @return Number of rows before the end of the list to start prefetching at
+     */
+    public int getPrefetchDistance() {
+        final long distance = mMinDistance + (long) Math.ceil(mVelocity * mLatency * SAFETY_FACTOR);
+        return (int) Math.min(mMaxDistance, distance);
+    }
+}
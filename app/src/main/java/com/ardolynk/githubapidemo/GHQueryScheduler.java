@@ -0,0 +1,98 @@
+package com.ardolynk.githubapidemo;
+
+import android.os.Handler;
+
+/**
+ * <p>Debounced search query scheduler for search as you type</p>
+ * <p>A query is issued only after the text didn't change for the debounce delay, every newer
+ * text replaces the pending one. Queries go by the search budget of {@link GHRateLimiter} the
+ * requests are sent through (capped by the <code>search_calls_per_minute</code> setting), a query
+ * is postponed until the budget allows it (unless it gets stale meanwhile), so typing doesn't queue
+ * requests the budget can't take</p>
+ */
+public class GHQueryScheduler {
+
+    public interface Listener {
+        void onQuery(String query);
+    }
+
+    private final Handler mHandler;
+    private final long mDebounceDelay;
+    private final Listener mListener;
+    private GHRateLimiter mRateLimiter;
+    private String mPendingQuery;
+    private String mIssuedQuery;
+
+    private final Runnable mIssueRunnable = new Runnable() {
+        @Override
+        public void run() {
+            issuePendingQuery();
+        }
+    };
+
+    /**
+     * @param debounceDelay Delay after the last change in milliseconds
+     */
+    public GHQueryScheduler(Handler handler, long debounceDelay, Listener listener) {
+        mHandler = handler;
+        mDebounceDelay = debounceDelay;
+        mListener = listener;
+    }
+
+    /**
+     * @param rateLimiter Rate limiter of search requests, or null to issue queries regardless of the budget
+     */
+    public void setRateLimiter(GHRateLimiter rateLimiter) {
+        mRateLimiter = rateLimiter;
+    }
+
+    /**
+     * Schedules a query after the debounce delay, replacing the pending one
+     */
+    public void onQueryChanged(String query) {
+        mPendingQuery = query;
+        mHandler.removeCallbacks(mIssueRunnable);
+        mHandler.postDelayed(mIssueRunnable, mDebounceDelay);
+    }
+
+    /**
+     * Issues a query right now (e.g. on explicit submission) if the budget allows
+     */
+    public void submit(String query) {
+        mPendingQuery = query;
+        mHandler.removeCallbacks(mIssueRunnable);
+        issuePendingQuery();
+    }
+
+    /**
+     * Drops the pending query
+     */
+    public void cancel() {
+        mPendingQuery = null;
+        mHandler.removeCallbacks(mIssueRunnable);
+    }
+
+    /**
+     * Forgets the last issued query, e.g. when the list was reloaded by other means
+     */
+    public void reset() {
+        cancel();
+        mIssuedQuery = null;
+    }
+
+    private void issuePendingQuery() {
+        final String query = mPendingQuery;
+        if (query == null || query.equals(mIssuedQuery)) {
+            mPendingQuery = null;
+            return;
+        }
+        final long waitTime = (mRateLimiter != null ? mRateLimiter.getWaitTime(GHRateLimiter.Priority.VISIBLE) : 0);
+        if (waitTime > 0) {
+            mHandler.postDelayed(mIssueRunnable, waitTime);
+            return;
+        }
+        mPendingQuery = null;
+        mIssuedQuery = query;
+        mListener.onQuery(query);
+    }
+}
@@ -0,0 +1,309 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <p>Rate limit aware scheduler of API requests</p>
+ * <p>Keeps a token bucket synchronized with GitHub rate limit headers
+ * (<code>X-RateLimit-Limit</code>, <code>X-RateLimit-Remaining</code>, <code>X-RateLimit-Reset</code>
+ * and <code>Retry-After</code>) of every response. Between responses, tokens are refilled at the rate
+ * of the limit window, and the bucket is refilled completely once the window resets</p>
+ * <p>Queued work runs in priority order (visible page, then prefetch, then avatar). Higher priority
+ * work may use the whole budget, while lower priority work keeps a reserve for it, so it's delayed
+ * when the budget is low. When the limit is hit, everything waits for the window reset</p>
+ * <p>The limit may be capped below the one the server tells (see {@link GHRateLimiter#setMaxLimit(int)}),
+ * so the app spends no more than its own budget</p>
+ * <p>State updates ({@link GHRateLimiter#onResponse(int, Map)}) are thread safe, the rest should be
+ * called on the same thread as the {@link Scheduler} runs tasks on</p>
+ */
+public class GHRateLimiter {
+
+    public final static String HEADER_LIMIT = "X-RateLimit-Limit";
+    public final static String HEADER_REMAINING = "X-RateLimit-Remaining";
+    public final static String HEADER_RESET = "X-RateLimit-Reset";
+    public final static String HEADER_RETRY_AFTER = "Retry-After";
+
+    private final static int STATUS_FORBIDDEN = 403;
+    private final static int STATUS_TOO_MANY_REQUESTS = 429;
+    private final static long SECOND = 1000;
+    private final static long MAX_BACKOFF = 60 * SECOND;
+    private final static int NO_MAX_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * Work priority, lower ordinal goes first
+     */
+    public enum Priority {
+        VISIBLE(0), PREFETCH(2), AVATAR(4);
+
+        private final int mReserve;
+
+        /**
+         * @param reserve Number of tokens this work must leave to higher priority one
+         */
+        Priority(int reserve) {
+            mReserve = reserve;
+        }
+    }
+
+    public interface Clock {
+        /**
+         * @return Current wall clock time in milliseconds
+         */
+        long now();
+    }
+
+    public interface Scheduler {
+        void schedule(Runnable task, long delay);
+
+        void unschedule(Runnable task);
+    }
+
+    private final Clock mClock;
+    private final Scheduler mScheduler;
+    private final long mWindow;
+    private final PriorityQueue<QueuedTask> mQueue = new PriorityQueue<QueuedTask>();
+    private int mLimit;
+    private int mMaxLimit = NO_MAX_LIMIT;
+    private double mTokens;
+    private long mRefillTime;
+    private long mResetTime;
+    private long mBlockedUntil;
+    private long mSequence;
+    private boolean mWakeupScheduled;
+
+    private final Runnable mWakeup = new Runnable() {
+        @Override
+        public void run() {
+            mWakeupScheduled = false;
+            dispatch();
+        }
+    };
+
+    /**
+     * @param limit Initial limit per window (until the server tells the actual one)
+     * @param window Limit window in milliseconds
+     */
+    public GHRateLimiter(Clock clock, Scheduler scheduler, int limit, long window) {
+        mClock = clock;
+        mScheduler = scheduler;
+        mWindow = window;
+        mLimit = limit;
+        mTokens = limit;
+        mRefillTime = clock.now();
+    }
+
+    /**
+     * Caps the budget: the remaining count the server tells may lower the budget, but not raise it,
+     * requests sent are counted against the cap until the window resets
+     *
+     * @param maxLimit Maximal number of requests per window, whatever limit the server tells
+     */
+    public synchronized void setMaxLimit(int maxLimit) {
+        mMaxLimit = maxLimit;
+        mLimit = Math.min(mLimit, maxLimit);
+        mTokens = Math.min(mTokens, mLimit);
+    }
+
+    /**
+     * Queues the work and runs it as soon as the budget allows
+     */
+    public void submit(Priority priority, Runnable task) {
+        submit(priority, task, 0);
+    }
+
+    /**
+     * Queues the work to run not earlier than after the given delay
+     */
+    public void submit(Priority priority, Runnable task, long delay) {
+        mQueue.add(new QueuedTask(priority, task, mClock.now() + delay, mSequence++));
+        dispatch();
+    }
+
+    /**
+     * Removes all queued work
+     */
+    public void cancelAll() {
+        mQueue.clear();
+        if (mWakeupScheduled) {
+            mWakeupScheduled = false;
+            mScheduler.unschedule(mWakeup);
+        }
+    }
+
+    /**
+     * @return Number of queued tasks
+     */
+    public int getQueueSize() {
+        return mQueue.size();
+    }
+
+    /**
+     * @return True if there's no spare budget for the work of this priority right now
+     */
+    public synchronized boolean isLow(Priority priority) {
+        final long now = mClock.now();
+        refill(now);
+        return now < mBlockedUntil || mTokens < 1 + priority.mReserve;
+    }
+
+    /**
+     * @return Number of requests left in the current window
+     */
+    public synchronized int getRemaining() {
+        refill(mClock.now());
+        return (int) mTokens;
+    }
+
+    /**
+     * @return Time to wait until there's budget for the work of this priority (zero if there's some right now)
+     */
+    public synchronized long getWaitTime(Priority priority) {
+        final long now = mClock.now();
+        refill(now);
+        return getBudgetWait(now, 1 + priority.mReserve);
+    }
+
+    /**
+     * Updates the budget with response status and headers
+     *
+     * @return True if the request was rejected due to the rate limit (so it should be retried later)
+     */
+    public synchronized boolean onResponse(int statusCode, Map<String, String> headers) {
+        final long now = mClock.now();
+        refill(now);
+
+        final long limit = parseLong(GHSearchRequest.getHeader(headers, HEADER_LIMIT), -1);
+        if (limit > 0) {
+            mLimit = (int) Math.min(limit, mMaxLimit);
+        }
+        final long remaining = parseLong(GHSearchRequest.getHeader(headers, HEADER_REMAINING), -1);
+        if (remaining >= 0) {
+            mTokens = (mMaxLimit != NO_MAX_LIMIT ? Math.min(mTokens, remaining) : Math.min(remaining, mLimit));
+        }
+        final long reset = parseLong(GHSearchRequest.getHeader(headers, HEADER_RESET), -1);
+        if (reset > 0) {
+            mResetTime = reset * SECOND;
+        }
+
+        final boolean limited = ((statusCode == STATUS_FORBIDDEN && remaining == 0)
+                || statusCode == STATUS_TOO_MANY_REQUESTS);
+        final long retryAfter = parseLong(GHSearchRequest.getHeader(headers, HEADER_RETRY_AFTER), -1);
+        if (retryAfter >= 0) {
+            mBlockedUntil = Math.max(mBlockedUntil, now + retryAfter * SECOND);
+        }
+        if (limited && retryAfter < 0) {
+            mTokens = 0;
+            mBlockedUntil = Math.max(mBlockedUntil, (mResetTime > now ? mResetTime : now + mWindow));
+        }
+        return limited || (retryAfter >= 0 && statusCode >= STATUS_FORBIDDEN);
+    }
+
+    /**
+     * @param attempt Number of the retry (starting from 1)
+     * @return Delay before retrying a rate limited request: until the window resets, plus
+     * exponential backoff for repeated attempts
+     */
+    public synchronized long getRetryDelay(int attempt) {
+        final long now = mClock.now();
+        final long backoff = Math.min(MAX_BACKOFF, SECOND << Math.min(16, Math.max(0, attempt - 1)));
+        return Math.max(0, mBlockedUntil - now) + backoff;
+    }
+
+    /**
+     * Runs queued work the budget allows, and schedules a wakeup for the rest
+     */
+    public void dispatch() {
+        while (!mQueue.isEmpty()) {
+            final QueuedTask head = mQueue.peek();
+            final long wait = acquire(head);
+            if (wait > 0) {
+                scheduleWakeup(wait);
+                return;
+            }
+            mQueue.poll();
+            head.mTask.run();
+        }
+    }
+
+    private synchronized long acquire(QueuedTask task) {
+        final long now = mClock.now();
+        refill(now);
+        if (task.mNotBefore > now) {
+            return task.mNotBefore - now;
+        }
+        final long wait = getBudgetWait(now, 1 + task.mPriority.mReserve);
+        if (wait == 0) {
+            mTokens--;
+        }
+        return wait;
+    }
+
+    /**
+     * @param needed Number of requests to be left in the budget
+     */
+    private long getBudgetWait(long now, int needed) {
+        if (now < mBlockedUntil) {
+            return mBlockedUntil - now;
+        }
+        if (mTokens >= needed) {
+            return 0;
+        }
+        if (mResetTime > now) {
+            return mResetTime - now;
+        }
+        return Math.max(1, (long) Math.ceil((needed - mTokens) * mWindow / mLimit));
+    }
+
+    private void refill(long now) {
+        if (mResetTime > 0 && now >= mResetTime) {
+            mTokens = mLimit;
+            mResetTime = 0;
+        }
+        else if (mResetTime == 0 && now > mRefillTime) {
+            mTokens = Math.min(mLimit, mTokens + (double) (now - mRefillTime) * mLimit / mWindow);
+        }
+        mRefillTime = now;
+    }
+
+    private void scheduleWakeup(long delay) {
+        if (mWakeupScheduled) {
+            mScheduler.unschedule(mWakeup);
+        }
+        mWakeupScheduled = true;
+        mScheduler.schedule(mWakeup, delay);
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static class QueuedTask implements Comparable<QueuedTask> {
+        private final Priority mPriority;
+        private final Runnable mTask;
+        private final long mNotBefore;
+        private final long mSequence;
+
+        QueuedTask(Priority priority, Runnable task, long notBefore, long sequence) {
+            mPriority = priority;
+            mTask = task;
+            mNotBefore = notBefore;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedTask another) {
+            if (mPriority != another.mPriority) {
+                return mPriority.ordinal() - another.mPriority.ordinal();
+            }
+            return (mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1));
+        }
+    }
+}
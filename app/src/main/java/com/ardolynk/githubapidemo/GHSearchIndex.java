@@ -0,0 +1,506 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * <p>On-device full text index of every repository seen in search results</p>
+ * <p>Project names and owner logins are split into lower case words, and each word has a sorted
+ * list of rows containing it. A query matches rows having a word starting with each query word,
+ * so partially typed queries work as well. Matches are returned in star count order, like the
+ * API returns them</p>
+ * <p>Every row has the language of the search it was found by, and queries are limited to the
+ * languages of the list shown</p>
+ * <p>Rows are kept in a {@link GHItemStore}, and a repository seen again only gets its star
+ * count and language updated. New and updated rows are written to an append-only file in batches:
+ * every batch is a single length-prefixed record synced to disk at once, so a batch is either
+ * entirely there after a crash or ignored as truncated. The file is compacted on load and on commit
+ * once it holds too many outdated records, or the index has too many rows. Compaction drops
+ * the least starred rows over the row limit</p>
+ * <p>All methods may do disk I/O, so they should not be called on the main thread</p>
+ */
+public class GHSearchIndex {
+
+    private final static int MAGIC = 0x47485349;
+    private final static int VERSION = 2;
+    private final static int HEADER_SIZE = 8;
+    private final static int BATCH_SIZE = 100;
+    private final static int COMPACTION_SLACK = 1000;
+
+    private final File mFile;
+    private final int mMaxRows;
+    private final GHItemStore mItems = new GHItemStore();
+    private final GHStringPool mKeys = new GHStringPool();
+    private final TreeMap<String, IntList> mWords = new TreeMap<String, IntList>();
+
+    //Lower case language names, and the language ID of every row
+
+    private final GHStringPool mLanguages = new GHStringPool();
+    private final IntList mRowLanguages = new IntList();
+
+    private final ArrayList<GHData.Item> mPending = new ArrayList<GHData.Item>();
+    private final IntList mPendingLanguages = new IntList();
+    private final ArrayList<String> mWordBuffer = new ArrayList<String>();
+    private int mStoredCount;
+    private boolean mInitialized;
+
+    /**
+     * @param file Index file (created if missing)
+     * @param maxRows Number of rows kept by compaction, the most starred ones
+     */
+    public GHSearchIndex(File file, int maxRows) {
+        mFile = file;
+        mMaxRows = maxRows;
+    }
+
+    /**
+     * Adds repositories to the index or updates the ones already there. Changes are written
+     * to disk once enough of them are collected, or on {@link GHSearchIndex#commit()}
+     *
+     * @param language Language of the search the repositories were found by, or null if it's unknown
+     */
+    public synchronized void add(String language, List<GHData.Item> items) {
+        initialize();
+        final int languageId = mLanguages.intern(language != null ? language.toLowerCase(Locale.US) : null);
+        for (int i = 0; i < items.size(); i++) {
+            final GHData.Item item = items.get(i);
+            if (apply(item, languageId)) {
+                mPending.add(item);
+                mPendingLanguages.add(languageId);
+            }
+        }
+        if (mPending.size() >= BATCH_SIZE) {
+            commit();
+        }
+    }
+
+    /**
+     * Writes pending changes to disk as a single batch
+     */
+    public synchronized void commit() {
+        if (mPending.isEmpty()) {
+            return;
+        }
+        try {
+            writeBatch(mFile, mPending, mPendingLanguages, mFile.length() >= HEADER_SIZE);
+            mStoredCount += mPending.size();
+        } catch (IOException e) {
+
+            //The index still works from memory, and gets rebuilt from responses next time
+
+        }
+        mPending.clear();
+        mPendingLanguages.clear();
+        if (needsCompaction()) {
+            compact();
+        }
+    }
+
+    /**
+     * @param query Search string, every word of it must be a start of a word in the project name
+     * or the owner login (empty string matches everything)
+     * @param languages Languages of repositories to return (case insensitive), or null for any language
+     * @param limit Maximum number of results
+     * @return Matching repositories, the most starred ones first
+     */
+    public synchronized List<GHData.Item> query(String query, Collection<String> languages, int limit) {
+        initialize();
+        mWordBuffer.clear();
+        split(query, mWordBuffer);
+        BitSet matches = null;
+        for (String word : mWordBuffer) {
+            final BitSet wordMatches = new BitSet(mItems.size());
+            for (IntList rows : mWords.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                for (int i = 0; i < rows.mSize; i++) {
+                    wordMatches.set(rows.mValues[i]);
+                }
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            }
+            else {
+                matches.and(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        if (matches == null) {
+            matches = new BitSet(mItems.size());
+            matches.set(0, mItems.size());
+        }
+        if (languages != null) {
+            final BitSet languageIds = new BitSet(mLanguages.size());
+            for (String language : languages) {
+                languageIds.set(mLanguages.intern(language.toLowerCase(Locale.US)));
+            }
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                final int languageId = mRowLanguages.mValues[row];
+                if (languageId == GHStringPool.NO_ID || !languageIds.get(languageId)) {
+                    matches.clear(row);
+                }
+            }
+        }
+        final int[] rows = getTopRows(matches, limit);
+        final GHData.Item[] result = new GHData.Item[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            result[i] = mItems.getItem(rows[i]);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * @return Number of indexed repositories
+     */
+    public synchronized int size() {
+        initialize();
+        return mItems.size();
+    }
+
+    /**
+     * Writes pending changes to disk and frees the index memory, it's read from disk again once used
+     */
+    public synchronized void release() {
+        commit();
+        reset();
+        mInitialized = false;
+    }
+
+    /**
+     * Removes all repositories from the index and the disk
+     */
+    public synchronized void clear() {
+        reset();
+        mPending.clear();
+        mPendingLanguages.clear();
+        mFile.delete();
+        mInitialized = true;
+    }
+
+    /**
+     * @return Up to <code>limit</code> of the rows, the most starred ones first
+     */
+    private int[] getTopRows(BitSet rows, int limit) {
+        final PriorityQueue<Integer> top = new PriorityQueue<Integer>(Math.max(1, limit), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                final int firstCount = mItems.getStarCount(first);
+                final int secondCount = mItems.getStarCount(second);
+                if (firstCount != secondCount) {
+                    return (firstCount < secondCount ? -1 : 1);
+                }
+                return second - first;
+            }
+        });
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (top.size() < limit) {
+                top.add(row);
+            }
+            else if (limit > 0 && top.comparator().compare(row, top.peek()) > 0) {
+                top.poll();
+                top.add(row);
+            }
+        }
+        final int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll();
+        }
+        return result;
+    }
+
+    /**
+     * @return True if the item was added or changed
+     */
+    private boolean apply(GHData.Item item, int languageId) {
+        final String key = getKey(item);
+        if (key == null) {
+            return false;
+        }
+        final int row = mKeys.intern(key);
+        if (row < mItems.size()) {
+            if (mItems.getStarCount(row) == item.getStarCount() && mRowLanguages.mValues[row] == languageId) {
+                return false;
+            }
+            mItems.setStarCount(row, item.getStarCount());
+            mRowLanguages.mValues[row] = languageId;
+            return true;
+        }
+        mItems.add(item);
+        mRowLanguages.add(languageId);
+        mWordBuffer.clear();
+        split(item.getProjectName(), mWordBuffer);
+        split(item.getOwner() != null ? item.getOwner().getLogin() : null, mWordBuffer);
+        for (String word : mWordBuffer) {
+            IntList rows = mWords.get(word);
+            if (rows == null) {
+                rows = new IntList();
+                mWords.put(word, rows);
+            }
+            rows.addUnique(row);
+        }
+        return true;
+    }
+
+    private static String getKey(GHData.Item item) {
+        if (item.getProjectURL() != null) {
+            return item.getProjectURL();
+        }
+        if (item.getProjectName() == null || item.getOwner() == null || item.getOwner().getLogin() == null) {
+            return null;
+        }
+        return item.getOwner().getLogin() + "/" + item.getProjectName();
+    }
+
+    /**
+     * Splits the text into lower case words of letters and digits
+     */
+    private static void split(String text, List<String> words) {
+        if (text == null) {
+            return;
+        }
+        final String lowerCaseText = text.toLowerCase(Locale.US);
+        int start = -1;
+        for (int i = 0; i <= lowerCaseText.length(); i++) {
+            final boolean wordChar = (i < lowerCaseText.length() && Character.isLetterOrDigit(lowerCaseText.charAt(i)));
+            if (wordChar && start < 0) {
+                start = i;
+            }
+            else if (!wordChar && start >= 0) {
+                words.add(lowerCaseText.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    private void initialize() {
+        if (mInitialized) {
+            return;
+        }
+        mInitialized = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        long validLength = 0;
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Unsupported index file format");
+            }
+            validLength = HEADER_SIZE;
+            while (true) {
+                final int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > mFile.length() - validLength - 4) {
+                    throw new IOException("Invalid batch length " + length);
+                }
+                final byte[] batch = new byte[length];
+                input.readFully(batch);
+                readBatch(new DataInputStream(new ByteArrayInputStream(batch)));
+                validLength += 4 + length;
+            }
+        } catch (IOException e) {
+
+            //Broken or truncated batch, the ones before it are still fine
+
+        } catch (OutOfMemoryError e) {
+            validLength = 0;
+        } finally {
+            closeQuietly(input);
+        }
+
+        if (validLength == 0) {
+            reset();
+            mFile.delete();
+        }
+        else if (validLength < mFile.length()) {
+            truncate(validLength);
+        }
+        if (needsCompaction()) {
+            compact();
+        }
+    }
+
+    /**
+     * Reads a batch and applies its rows
+     */
+    private void readBatch(DataInputStream input) throws IOException {
+        final List<GHData.Item> items = GHItemCodec.read(input);
+        final int languageCount = input.readInt();
+        if (languageCount < 0 || languageCount > input.available() / 4) {
+            throw new IOException("Invalid language count " + languageCount);
+        }
+        final int[] languageIds = new int[languageCount];
+        for (int i = 0; i < languageCount; i++) {
+            languageIds[i] = mLanguages.intern(GHItemCodec.readString(input));
+        }
+        final int[] itemLanguageIds = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            final int languageIndex = input.readInt();
+            if (languageIndex < GHStringPool.NO_ID || languageIndex >= languageCount) {
+                throw new IOException("Invalid language index " + languageIndex);
+            }
+            itemLanguageIds[i] = (languageIndex != GHStringPool.NO_ID ? languageIds[languageIndex] : GHStringPool.NO_ID);
+        }
+
+        //The batch is applied only once it's read entirely
+
+        for (int i = 0; i < items.size(); i++) {
+            apply(items.get(i), itemLanguageIds[i]);
+        }
+        mStoredCount += items.size();
+    }
+
+    private boolean needsCompaction() {
+        return (mItems.size() > mMaxRows + COMPACTION_SLACK || mStoredCount > 2 * mItems.size() + COMPACTION_SLACK);
+    }
+
+    private void reset() {
+        mItems.clear();
+        mKeys.clear();
+        mWords.clear();
+        mLanguages.clear();
+        mRowLanguages.clear();
+        mStoredCount = 0;
+    }
+
+    private void truncate(long length) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            file.setLength(length);
+        } catch (IOException e) {
+            mFile.delete();
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * Rewrites the file with a single batch of actual rows, the most starred ones up to the row limit.
+     * Rows over the limit are dropped from memory as well, and the rest are indexed again in star order
+     */
+    private void compact() {
+        final BitSet allRows = new BitSet(mItems.size());
+        allRows.set(0, mItems.size());
+        final int[] rows = getTopRows(allRows, mMaxRows);
+        final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>(rows.length);
+        final ArrayList<String> languages = new ArrayList<String>(rows.length);
+        for (int row : rows) {
+            items.add(mItems.getItem(row));
+            languages.add(mLanguages.get(mRowLanguages.mValues[row]));
+        }
+        final int storedCount = mStoredCount;
+        reset();
+        for (int i = 0; i < items.size(); i++) {
+            apply(items.get(i), mLanguages.intern(languages.get(i)));
+        }
+        mStoredCount = storedCount;
+        final File tempFile = new File(mFile.getPath() + ".tmp");
+        try {
+            writeBatch(tempFile, items, mRowLanguages, false);
+            if (tempFile.renameTo(mFile)) {
+                mStoredCount = items.size();
+                return;
+            }
+        } catch (IOException e) {}
+        tempFile.delete();
+    }
+
+    /**
+     * Writes the rows, and the whole language table with an ID of every row
+     */
+    private void writeBatch(File file, List<GHData.Item> items, IntList languageIds, boolean append) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(buffer);
+        if (!append) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+        }
+        final int lengthPosition = data.size();
+        data.writeInt(0);
+        GHItemCodec.write(data, items);
+        data.writeInt(mLanguages.size());
+        for (int i = 0; i < mLanguages.size(); i++) {
+            GHItemCodec.writeString(data, mLanguages.get(i));
+        }
+        for (int i = 0; i < items.size(); i++) {
+            data.writeInt(languageIds.mValues[i]);
+        }
+        data.close();
+        final byte[] bytes = buffer.toByteArray();
+        final int length = bytes.length - lengthPosition - 4;
+        bytes[lengthPosition] = (byte) (length >>> 24);
+        bytes[lengthPosition + 1] = (byte) (length >>> 16);
+        bytes[lengthPosition + 2] = (byte) (length >>> 8);
+        bytes[lengthPosition + 3] = (byte) length;
+
+        //The whole batch goes in one write and is synced before it's considered stored
+
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(file, append);
+            output.write(bytes);
+            output.getFD().sync();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Growable list of ints, lists of rows are in ascending order
+     */
+    private static class IntList {
+        private int[] mValues = new int[4];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        void addUnique(int value) {
+            if (mSize == 0 || mValues[mSize - 1] != value) {
+                add(value);
+            }
+        }
+
+        void clear() {
+            mSize = 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.ardolynk.githubapidemo;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>Streaming parser for GitHub repository search pages</p>
+ * <p>Reads only the fields mapped by {@link GHData.Item} and {@link GHData.Item.Owner},
+ * everything else is skipped right in the token stream, so the response is never
+ * materialized as a whole {@link String} or a full object tree</p>
+ * <p>Owners repeating on the page share a single {@link GHData.Item.Owner} instance.
+ * Binding is done by {@link GHDataAdapters}, with no reflection</p>
+ */
+public class GHSearchParser {
+
+    private GHSearchParser() {}
+
+    /**
+     * Parses a search page
+     *
+     * @param source Response body reader
+     * @return Parsed data (the item list is empty if response contains no items)
+     * @throws IOException If reading failed or the response is malformed
+     */
+    public static GHData parse(Reader source) throws IOException {
+        final GHData data = GHDataAdapters.DATA.read(new JsonReader(source));
+        if (data == null) {
+            throw new IOException("Empty response");
+        }
+        return data;
+    }
+}
@@ -0,0 +1,160 @@
+package com.ardolynk.githubapidemo;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * <p>Volley request for a repository search page</p>
+ * <p>Unlike {@link com.android.volley.toolbox.StringRequest}, the response body is parsed
+ * straight from the received bytes by {@link GHSearchParser} on the network thread</p>
+ * <p>If an ETag of a cached page is given, the request is conditional, and a "304 Not Modified"
+ * response is delivered as a {@link GHPage} without items. Successful responses are stored
+ * to the page cache right on the network thread</p>
+ * <p>Subclasses may request pages another way (see {@link GHSearchTransport}), overriding the request
+ * and {@link GHSearchRequest#parse(Reader)}</p>
+ */
+public class GHSearchRequest extends Request<GHPage> {
+
+    private final static String DEFAULT_CHARSET = "UTF-8";
+    private final static String HEADER_ETAG = "ETag";
+    private final static String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    private final GHPageKey mKey;
+    private final String mETag;
+    private final GHPageCache mCache;
+    private final Response.Listener<GHPage> mListener;
+    private GHRateLimiter mRateLimiter;
+    private GHMetrics.Histogram mParseTime;
+
+    /**
+     * @param key Requested page
+     * @param url Request URL
+     * @param etag ETag of the cached page to revalidate (null for unconditional request)
+     * @param cache Page cache to store the response into (may be null)
+     */
+    public GHSearchRequest(GHPageKey key, String url, String etag, GHPageCache cache,
+                           Response.Listener<GHPage> listener, Response.ErrorListener errorListener) {
+        this(Method.GET, key, url, etag, cache, listener, errorListener);
+    }
+
+    /**
+     * @param method HTTP method of the request, see {@link com.android.volley.Request.Method}
+     */
+    protected GHSearchRequest(int method, GHPageKey key, String url, String etag, GHPageCache cache,
+                              Response.Listener<GHPage> listener, Response.ErrorListener errorListener) {
+        super(method, url, errorListener);
+        mKey = key;
+        mETag = etag;
+        mCache = cache;
+        mListener = listener;
+
+        //Pages are cached by GHPageCache in a compact parsed form
+
+        setShouldCache(false);
+    }
+
+    public GHPageKey getKey() {
+        return mKey;
+    }
+
+    /**
+     * @param rateLimiter Rate limiter to report response headers to
+     */
+    public void setRateLimiter(GHRateLimiter rateLimiter) {
+        mRateLimiter = rateLimiter;
+    }
+
+    /**
+     * @param parseTime Histogram to record parse time to
+     */
+    public void setParseTime(GHMetrics.Histogram parseTime) {
+        mParseTime = parseTime;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        if (mETag == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(HEADER_IF_NONE_MATCH, mETag);
+    }
+
+    @Override
+    protected Response<GHPage> parseNetworkResponse(NetworkResponse response) {
+        if (mRateLimiter != null) {
+            mRateLimiter.onResponse(response.statusCode, response.headers);
+        }
+        if (response.notModified || response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            if (mCache != null) {
+                mCache.touch(mKey);
+            }
+            return Response.success(new GHPage(mKey, null, mETag, true, false, GHData.UNKNOWN_COUNT), null);
+        }
+        final long startTime = GHMetrics.Histogram.start();
+        GHTrace.beginBackground("GH page parse");
+        try {
+            final InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(response.data),
+                    HttpHeaderParser.parseCharset(response.headers, DEFAULT_CHARSET));
+            final GHData data = parse(reader);
+            final String etag = getHeader(response.headers, HEADER_ETAG);
+            final int totalCount = GHPage.getAvailableCount(data.getTotalCount());
+            if (mCache != null) {
+                mCache.put(mKey, etag, totalCount, data.getItems());
+            }
+            return Response.success(new GHPage(mKey, data.getItems(), etag, false, false, totalCount), null);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        } catch (RuntimeException e) {
+            return Response.error(new ParseError(e));
+        } finally {
+            GHTrace.end();
+            if (mParseTime != null) {
+                mParseTime.stop(startTime);
+            }
+        }
+    }
+
+    /**
+     * Parses the response body, it's called on the network thread
+     */
+    protected GHData parse(Reader reader) throws IOException {
+        return GHSearchParser.parse(reader);
+    }
+
+    @Override
+    protected void deliverResponse(GHPage response) {
+        mListener.onResponse(response);
+    }
+
+    /**
+     * Looks up a response header ignoring the name case
+     *
+     * @return Header value or null if it's missing
+     */
+    public static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        final String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+}
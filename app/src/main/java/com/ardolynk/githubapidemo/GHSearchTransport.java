@@ -0,0 +1,47 @@
+package com.ardolynk.githubapidemo;
+
+import com.android.volley.Response;
+
+/**
+ * <p>Way of requesting repository search pages from GitHub</p>
+ * <p>Requests of all transports are {@link GHSearchRequest} ones, so they're parsed, cached, rate limited
+ * and measured the same way. {@link GHSearchTransport#REST} uses the search API the app was built on,
+ * {@link GHGraphQLTransport} asks the GraphQL API for the fields shown only</p>
+ */
+public interface GHSearchTransport {
+
+    /**
+     * Search REST API, pages are addressed by offset and revalidated by ETag
+     */
+    GHSearchTransport REST = new GHSearchTransport() {
+        @Override
+        public GHSearchTransport select(GHPageKey key, String etag) {
+            return this;
+        }
+
+        @Override
+        public GHSearchRequest newRequest(GHPageKey key, String etag, GHPageCache cache,
+                                          Response.Listener<GHPage> listener, Response.ErrorListener errorListener) {
+            return new GHSearchRequest(key, key.getUrl(), etag, cache, listener, errorListener);
+        }
+    };
+
+    /**
+     * <p>Tells the transport a page request goes by, it's called on the main thread</p>
+     * <p>It's this one, or {@link GHSearchTransport#REST} if this one can't request the page.
+     * Transports have rate limits of their own, so the request goes through the rate limiter of this one</p>
+     *
+     * @param etag ETag of the cached page to revalidate, or null
+     */
+    GHSearchTransport select(GHPageKey key, String etag);
+
+    /**
+     * Makes a request of the page (by the transport {@link GHSearchTransport#select(GHPageKey, String)} tells),
+     * it's called on the main thread
+     *
+     * @param etag ETag of the cached page to revalidate, or null (ignored by transports with no conditional requests)
+     * @param cache Page cache to store the response into (may be null)
+     */
+    GHSearchRequest newRequest(GHPageKey key, String etag, GHPageCache cache,
+                               Response.Listener<GHPage> listener, Response.ErrorListener errorListener);
+}
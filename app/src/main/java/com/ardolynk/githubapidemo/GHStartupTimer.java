@@ -0,0 +1,73 @@
+package com.ardolynk.githubapidemo;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * <p>Measures time to the first rendered list row on launch</p>
+ * <p>A cold start is the first launch in a new process, it's measured from the process start
+ * where the platform tells it (Nougat and later), and from the activity creation otherwise.
+ * A warm start (activity created again in a running process) is measured from the activity creation</p>
+ * <p>Results are written to the log with the source the first rows came from, e.g.
+ * <code>adb logcat -s GHStartupTimer</code></p>
+ */
+public class GHStartupTimer {
+
+    private final static String TAG = "GHStartupTimer";
+
+    private static boolean sProcessStarted;
+
+    private final boolean mCold;
+    private final long mStartTime;
+    private long mFirstRowTime;
+
+    private GHStartupTimer(boolean cold, long startTime) {
+        mCold = cold;
+        mStartTime = startTime;
+    }
+
+    /**
+     * Starts measuring, should be called as early in {@link android.app.Activity#onCreate} as possible
+     */
+    public static GHStartupTimer start() {
+        final boolean cold = !sProcessStarted;
+        sProcessStarted = true;
+        long startTime = SystemClock.uptimeMillis();
+        if (cold && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            startTime = Process.getStartUptimeMillis();
+        }
+        return new GHStartupTimer(cold, startTime);
+    }
+
+    /**
+     * Records the first row rendered, only the first call counts
+     *
+     * @param source Where the shown rows came from (for the log)
+     * @return True if this was the first call
+     */
+    public boolean onFirstRowRendered(String source) {
+        if (mFirstRowTime != 0) {
+            return false;
+        }
+        mFirstRowTime = SystemClock.uptimeMillis();
+        Log.i(TAG, String.format("First row in %d ms (%s start, %s)", getTimeToFirstRow(),
+                (mCold ? "cold" : "warm"), source));
+        return true;
+    }
+
+    /**
+     * @return True if it's a cold start
+     */
+    public boolean isCold() {
+        return mCold;
+    }
+
+    /**
+     * @return Time to the first rendered row in milliseconds, or -1 if no row is rendered yet
+     */
+    public long getTimeToFirstRow() {
+        return (mFirstRowTime != 0 ? mFirstRowTime - mStartTime : -1);
+    }
+}
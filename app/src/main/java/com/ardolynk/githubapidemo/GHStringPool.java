@@ -0,0 +1,224 @@
+package com.ardolynk.githubapidemo;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <p>Pool of interned strings addressed by integer IDs</p>
+ * <p>Every distinct string is stored once as UTF-8 bytes in a shared buffer, so columns of
+ * repeating values (owner logins, avatar links) only need an int per row, and the pool itself
+ * doesn't keep a {@link String} object per value. IDs are assigned sequentially from zero and
+ * stay valid until the pool is cleared</p>
+ * <p>This class is not thread safe</p>
+ */
+public class GHStringPool {
+
+    public final static int NO_ID = -1;
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static int INITIAL_CAPACITY = 16;
+    private final static int INITIAL_BYTE_CAPACITY = 256;
+
+    private byte[] mBytes = new byte[INITIAL_BYTE_CAPACITY];
+    private int mLength;
+    private int[] mStarts = new int[INITIAL_CAPACITY];
+    private int[] mHashes = new int[INITIAL_CAPACITY];
+    private int[] mTable = newTable(INITIAL_CAPACITY * 2);
+    private int mSize;
+
+    /**
+     * @return ID of the string, the string is added if it's not in the pool yet
+     * ({@link GHStringPool#NO_ID} for null)
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NO_ID;
+        }
+        final byte[] bytes = value.getBytes(UTF8);
+        final int hash = value.hashCode();
+        final int mask = mTable.length - 1;
+        int slot = hash & mask;
+        while (mTable[slot] != NO_ID) {
+            final int id = mTable[slot];
+            if (mHashes[id] == hash && equalsAt(id, bytes)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (mSize == mStarts.length) {
+            mStarts = Arrays.copyOf(mStarts, mSize * 2);
+            mHashes = Arrays.copyOf(mHashes, mSize * 2);
+        }
+        if (mLength + bytes.length > mBytes.length) {
+            mBytes = Arrays.copyOf(mBytes, Math.max(mLength + bytes.length, mBytes.length * 2));
+        }
+        System.arraycopy(bytes, 0, mBytes, mLength, bytes.length);
+        mStarts[mSize] = mLength;
+        mHashes[mSize] = hash;
+        mLength += bytes.length;
+        mTable[slot] = mSize;
+        if (++mSize * 2 > mTable.length) {
+            rehash(mTable.length * 2);
+        }
+        return mSize - 1;
+    }
+
+    /**
+     * @return A new string with given ID, or null for {@link GHStringPool#NO_ID}
+     */
+    public String get(int id) {
+        if (id == NO_ID) {
+            return null;
+        }
+        return new String(mBytes, mStarts[id], getEnd(id) - mStarts[id], UTF8);
+    }
+
+    /**
+     * Compares strings of given IDs by their bytes, see {@link GHStringPool#compareFolded}.
+     * {@link GHStringPool#NO_ID} goes last
+     */
+    public int compareIgnoreCase(int first, int second) {
+        if (first == second) {
+            return 0;
+        }
+        if (first == NO_ID || second == NO_ID) {
+            return (first == NO_ID ? 1 : -1);
+        }
+        return compareFolded(mBytes, mStarts[first], getEnd(first), mStarts[second], getEnd(second));
+    }
+
+    /**
+     * @param text Text made by {@link GHStringPool#toFoldedBytes(String)}
+     * @return True if the string of given ID is the text, ignoring case of ASCII letters
+     */
+    public boolean equalsIgnoreCase(int id, byte[] text) {
+        return (id != NO_ID && getEnd(id) - mStarts[id] == text.length
+                && containsFolded(mBytes, mStarts[id], getEnd(id), text));
+    }
+
+    /**
+     * @param text Text made by {@link GHStringPool#toFoldedBytes(String)}
+     * @return True if the string of given ID has the text, ignoring case of ASCII letters
+     */
+    public boolean containsIgnoreCase(int id, byte[] text) {
+        return (id != NO_ID && containsFolded(mBytes, mStarts[id], getEnd(id), text));
+    }
+
+    /**
+     * @return Number of distinct strings in the pool
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return Independent copy of the pool with the same IDs
+     */
+    public GHStringPool copy() {
+        final GHStringPool copy = new GHStringPool();
+        copy.mBytes = Arrays.copyOf(mBytes, mBytes.length);
+        copy.mLength = mLength;
+        copy.mStarts = Arrays.copyOf(mStarts, mStarts.length);
+        copy.mHashes = Arrays.copyOf(mHashes, mHashes.length);
+        copy.mTable = Arrays.copyOf(mTable, mTable.length);
+        copy.mSize = mSize;
+        return copy;
+    }
+
+    public void clear() {
+        mBytes = new byte[INITIAL_BYTE_CAPACITY];
+        mLength = 0;
+        mStarts = new int[INITIAL_CAPACITY];
+        mHashes = new int[INITIAL_CAPACITY];
+        mTable = newTable(INITIAL_CAPACITY * 2);
+        mSize = 0;
+    }
+
+    private int getEnd(int id) {
+        return (id + 1 < mSize ? mStarts[id + 1] : mLength);
+    }
+
+    private boolean equalsAt(int id, byte[] bytes) {
+        final int start = mStarts[id];
+        if (getEnd(id) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (mBytes[start + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int tableSize) {
+        mTable = newTable(tableSize);
+        final int mask = tableSize - 1;
+        for (int id = 0; id < mSize; id++) {
+            int slot = mHashes[id] & mask;
+            while (mTable[slot] != NO_ID) {
+                slot = (slot + 1) & mask;
+            }
+            mTable[slot] = id;
+        }
+    }
+
+    /**
+     * @return UTF-8 bytes of the text with ASCII letters in lower case, to look for it by
+     * {@link GHStringPool#containsFolded}
+     */
+    static byte[] toFoldedBytes(String text) {
+        final byte[] bytes = text.getBytes(UTF8);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) fold(bytes[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * <p>Compares two UTF-8 strings of the buffer without decoding them</p>
+     * <p>Case of ASCII letters is ignored (logins and project names on GitHub are ASCII), other characters
+     * go by code point, as UTF-8 keeps the order of code points</p>
+     */
+    static int compareFolded(byte[] bytes, int firstStart, int firstEnd, int secondStart, int secondEnd) {
+        int i = firstStart;
+        int j = secondStart;
+        while (i < firstEnd && j < secondEnd) {
+            final int result = fold(bytes[i++]) - fold(bytes[j++]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return (firstEnd - i) - (secondEnd - j);
+    }
+
+    /**
+     * @param text Text made by {@link GHStringPool#toFoldedBytes(String)}
+     * @return True if the UTF-8 string of the buffer has the text, ignoring case of ASCII letters.
+     * UTF-8 of a text can't start in the middle of a character, so it's found at character boundaries only
+     */
+    static boolean containsFolded(byte[] bytes, int start, int end, byte[] text) {
+        final int last = end - text.length;
+        for (int offset = start; offset <= last; offset++) {
+            int i = 0;
+            while (i < text.length && fold(bytes[offset + i]) == (text[i] & 0xFF)) {
+                i++;
+            }
+            if (i == text.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int fold(byte value) {
+        final int c = value & 0xFF;
+        return (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+    }
+
+    private static int[] newTable(int size) {
+        final int[] table = new int[size];
+        Arrays.fill(table, NO_ID);
+        return table;
+    }
+}
@@ -0,0 +1,51 @@
+package com.ardolynk.githubapidemo;
+
+import java.util.Arrays;
+
+/**
+ * <p>Small direct-mapped cache of strings by integer key</p>
+ * <p>Each key maps to a single slot, so a lookup is an array access without any allocation,
+ * and a new value simply replaces whatever was in its slot. It's meant for values repeating
+ * within a screen of list rows (owner logins, formatted numbers)</p>
+ * <p>This class is not thread safe</p>
+ */
+public class GHTextCache {
+
+    private final int[] mKeys;
+    private final String[] mValues;
+    private final int mMask;
+
+    /**
+     * @param capacityBits Cache has 2^capacityBits slots
+     */
+    public GHTextCache(int capacityBits) {
+        mKeys = new int[1 << capacityBits];
+        mValues = new String[1 << capacityBits];
+        mMask = mKeys.length - 1;
+    }
+
+    /**
+     * @return Cached value or null
+     */
+    public String get(int key) {
+        final int slot = slot(key);
+        return (mKeys[slot] == key ? mValues[slot] : null);
+    }
+
+    public void put(int key, String value) {
+        final int slot = slot(key);
+        mKeys[slot] = key;
+        mValues[slot] = value;
+    }
+
+    public void clear() {
+        Arrays.fill(mValues, null);
+    }
+
+    private int slot(int key) {
+
+        //Spread sequential keys as well as the ones differing in high bits
+
+        return (key ^ (key >>> 16)) & mMask;
+    }
+}
@@ -0,0 +1,39 @@
+package com.ardolynk.githubapidemo;
+
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.Trace;
+
+/**
+ * <p>Systrace sections around the list pipeline stages</p>
+ * <p>Sections show up in <code>systrace.py -a com.ardolynk.githubapidemo</code> captures next to
+ * the platform ones. A section must end on the thread it began on. Does nothing before Jelly Bean MR2</p>
+ * <p>Sections begun by {@link GHTrace#beginBackground(String)} are also reported to {@link StrictMode}
+ * as slow calls, so they're flagged if they ever run on the main thread</p>
+ */
+public class GHTrace {
+
+    private final static boolean ENABLED = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2);
+
+    private GHTrace() {}
+
+    public static void begin(String sectionName) {
+        if (ENABLED) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    /**
+     * Begins a section of work that must stay off the main thread (parsing, decoding, diffing)
+     */
+    public static void beginBackground(String sectionName) {
+        StrictMode.noteSlowCall(sectionName);
+        begin(sectionName);
+    }
+
+    public static void end() {
+        if (ENABLED) {
+            Trace.endSection();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHCountFormatter} output
+ */
+public class GHCountFormatterTest {
+
+    private final static int[] COUNTS = {0, 7, 10, 999, 25000, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+    @Test
+    public void format_matchesStringFormat() {
+        final GHCountFormatter formatter = new GHCountFormatter(" ");
+        for (int count : COUNTS) {
+            assertEquals(String.format(" %d", count), formatter.format(count));
+        }
+    }
+
+    @Test
+    public void format_rewritesBuffer() {
+        final GHCountFormatter formatter = new GHCountFormatter(" ");
+        final char[] buffer = formatter.newBuffer();
+        for (int count : COUNTS) {
+            assertEquals(String.format(" %d", count), new String(buffer, 0, formatter.format(count, buffer)));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.ardolynk.githubapidemo;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHGraphQLParser}, {@link GHGraphQLRequest} bodies and {@link GHGraphQLTransport} cursors,
+ * also against {@link StubGitHubServer}
+ */
+public class GHGraphQLTransportTest {
+
+    private final static String API_URL = "https://api.github.com";
+
+    @Test
+    public void parse_matchesRestItems() throws Exception {
+        final GHData rest = GHSearchParser.parse(new StringReader(SearchPayloads.page(30, 60, 500)));
+        final GHData graphQL = GHGraphQLParser.parse(new StringReader(
+                SearchPayloads.graphQLPage(30, 60, 500, StubGitHubServer.makeCursor(90))));
+        assertEquals(rest.getItems(), graphQL.getItems());
+        assertEquals(500, graphQL.getTotalCount());
+        assertEquals(StubGitHubServer.makeCursor(90), graphQL.getEndCursor());
+
+        //Repeating owners are shared like REST parsing does
+
+        assertSame(graphQL.getItems().get(0).getOwner(), graphQL.getItems().get(1).getOwner());
+    }
+
+    @Test
+    public void parse_failsWithErrorMessage() {
+        try {
+            GHGraphQLParser.parse(new StringReader("{\"errors\": [{\"type\": \"FORBIDDEN\", \"message\": \"Bad credentials\"}]}"));
+            fail();
+        } catch (IOException e) {
+            assertEquals("Bad credentials", e.getMessage());
+        }
+    }
+
+    @Test
+    public void makeBody_selectsQueryAndPage() {
+        final GHPageKey key = new GHPageKey("web", "Kotlin", 500, 2, 50, 50);
+        final JsonObject body = new JsonParser().parse(GHGraphQLRequest.makeBody(key, "Y3Vyc29yOjUw"))
+                .getAsJsonObject();
+        final JsonObject variables = body.getAsJsonObject("variables");
+        assertEquals("web language:Kotlin stars:<=500 sort:stars-desc", variables.get("q").getAsString());
+        assertEquals(50, variables.get("first").getAsInt());
+        assertEquals("Y3Vyc29yOjUw", variables.get("after").getAsString());
+        assertTrue(body.get("query").getAsString().contains("stargazerCount"));
+        assertTrue(new JsonParser().parse(GHGraphQLRequest.makeBody(key, null)).getAsJsonObject()
+                .getAsJsonObject("variables").get("after").isJsonNull());
+    }
+
+    @Test
+    public void select_goesByRestWithoutEndCursor() {
+        final GHGraphQLTransport transport = new GHGraphQLTransport("token");
+        final GHPagePlan plan = new GHPagePlan(25, 100);
+        assertSame(transport, transport.select(plan.makeKey("web", "Kotlin", 1), null));
+        assertNull(transport.getCursor(plan.makeKey("web", "Kotlin", 1)));
+
+        //A page ahead of the one before has no cursor to start after
+
+        assertSame(GHSearchTransport.REST, transport.select(plan.makeKey("web", "Kotlin", 2), null));
+        assertNull(transport.getCursor(plan.makeKey("web", "Kotlin", 2)));
+
+        transport.putCursor(plan.makeKey("web", "Kotlin", 1), 25, "end1");
+        assertSame(transport, transport.select(plan.makeKey("web", "Kotlin", 2), null));
+        assertEquals("end1", transport.getCursor(plan.makeKey("web", "Kotlin", 2)));
+        assertSame(GHSearchTransport.REST, transport.select(plan.makeKey("web", "Java", 2), null));
+
+        //Pages cached with an ETag are revalidated by a conditional request
+
+        assertSame(GHSearchTransport.REST, transport.select(plan.makeKey("web", "Kotlin", 1), "\"etag\""));
+    }
+
+    @Test
+    public void stubServer_pagesByCursor() throws Exception {
+        final StubGitHubServer server = new StubGitHubServer(new GHRateLimiter.Clock() {
+            @Override
+            public long now() {
+                return 0;
+            }
+        }, 1000, 60000, 1500);
+        server.start();
+        try {
+            final GHGraphQLTransport transport = new GHGraphQLTransport("token");
+            final GHPagePlan plan = new GHPagePlan(25, 100);
+            final List<GHData.Item> items = new ArrayList<GHData.Item>();
+            for (int page = 1; ; page++) {
+                final GHPageKey key = plan.makeKey("web", "Kotlin", page);
+                final GHData data = GHGraphQLParser.parse(read(server.request("/graphql",
+                        GHGraphQLRequest.makeBody(key, transport.getCursor(key)))));
+                transport.putCursor(key, data.getItems().size(), data.getEndCursor());
+                items.addAll(data.getItems());
+                if (!new GHPage(key, data.getItems(), null, false, false,
+                        GHPage.getAvailableCount(data.getTotalCount())).hasNext()) {
+                    break;
+                }
+            }
+
+            //Same rows as the REST search gives, up to the search cap
+
+            assertEquals(GHPage.MAX_SEARCH_RESULTS, items.size());
+            final GHPageKey restKey = new GHPageKey("web", "Kotlin", 4, 100);
+            final GHData rest = GHSearchParser.parse(read(server.request(restKey.getUrl().substring(API_URL.length()), null)));
+            assertEquals(rest.getItems(), items.subList(300, 400));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void stubServer_graphQLPageIsSmaller() throws Exception {
+        final StubGitHubServer server = new StubGitHubServer(new GHRateLimiter.Clock() {
+            @Override
+            public long now() {
+                return 0;
+            }
+        }, 100, 60000, 5000);
+        server.start();
+        try {
+            final GHPageKey key = new GHPageKey("web", "Kotlin", 1, 100);
+            final byte[] restBody = server.request(key.getUrl().substring(API_URL.length()), null);
+            final byte[] graphQLBody = server.request("/graphql", GHGraphQLRequest.makeBody(key, null));
+            assertEquals(GHSearchParser.parse(read(restBody)).getItems(), GHGraphQLParser.parse(read(graphQLBody)).getItems());
+            assertTrue(graphQLBody.length < restBody.length);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static InputStreamReader read(byte[] body) {
+        return new InputStreamReader(new ByteArrayInputStream(body), SearchPayloads.UTF8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHItemStore} rows
+ */
+public class GHItemStoreTest {
+
+    private final static int TOTAL_COUNT = 10000;
+    private final static int PAGE_SIZE = 100;
+
+    private static List<GHData.Item> parsePage(int count, int firstIndex) throws Exception {
+        return GHSearchParser.parse(new StringReader(SearchPayloads.page(count, firstIndex, TOTAL_COUNT))).getItems();
+    }
+
+    private static GHData.Item item(String name, int starCount, String url, String login, String avatarLink) {
+        final GHData.Item item = new GHData.Item();
+        item.setProjectName(name);
+        item.setStarCount(starCount);
+        item.setProjectURL(url);
+        if (login != null || avatarLink != null) {
+            final GHData.Item.Owner owner = new GHData.Item.Owner(login, avatarLink);
+            item.setOwner(owner);
+        }
+        return item;
+    }
+
+    @Test
+    public void rows_matchAddedItems() throws Exception {
+        final List<GHData.Item> items = new ArrayList<GHData.Item>(parsePage(30, 0));
+        items.add(item("name", 1, "https://example.com/other", "login", null));
+        items.add(item(null, 2, null, null, null));
+        items.add(item("\u043f\u0440\u043e\u0435\u043a\u0442", 3, "https://github.com/\u044f/\u043f\u0440\u043e\u0435\u043a\u0442", "\u044f", "a"));
+
+        final GHItemStore store = new GHItemStore();
+        store.addAll(items);
+        assertEquals(items.size(), store.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i), store.getItem(i));
+        }
+        assertEquals("owner1", store.getOwnerLogin(4));
+        assertEquals(SearchPayloads.starCount(4), store.getStarCount(4));
+    }
+
+    @Test
+    public void replace_keepsOtherRows() throws Exception {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(parsePage(30, 0));
+        store.addAll(parsePage(30, 30));
+        final List<GHData.Item> replacement = Arrays.asList(item("new", 5, null, "someone", "avatar"));
+        store.replace(30, 60, replacement);
+        assertEquals(31, store.size());
+        assertEquals(parsePage(30, 0).get(29), store.getItem(29));
+        assertEquals(replacement.get(0), store.getItem(30));
+
+        store.replace(0, 10, parsePage(10, 100));
+        assertEquals(31, store.size());
+        assertEquals("project-100", store.getProjectName(0));
+        assertEquals("project-10", store.getProjectName(10));
+        assertEquals("new", store.getProjectName(30));
+
+        store.clear();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void drop_keepsPositionsUntilReplaced() throws Exception {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(parsePage(30, 0));
+        store.addAll(parsePage(30, 30));
+        final int stamp = store.getStamp(40);
+        store.drop(30, 60);
+        assertEquals(60, store.size());
+        assertFalse(store.isDropped(29));
+        assertEquals(parsePage(30, 0).get(29), store.getItem(29));
+        assertTrue(store.isDropped(40));
+        assertNull(store.getProjectName(40));
+        assertNull(store.getOwnerLogin(40));
+        assertEquals(SearchPayloads.starCount(40), store.getStarCount(40));
+        assertNotEquals(stamp, store.getStamp(40));
+
+        store.replace(30, 60, parsePage(30, 30));
+        assertFalse(store.isDropped(40));
+        assertEquals(parsePage(30, 30).get(10), store.getItem(40));
+    }
+
+    @Test
+    public void addAll_keepsRowsOfManyPages() throws Exception {
+
+        //Same rows as the adapter gets them: parsed page by page, footprint is compared by GHItemStoreBenchmark
+
+        final ArrayList<GHData.Item> list = new ArrayList<GHData.Item>();
+        final GHItemStore store = new GHItemStore();
+        for (int first = 0; first < TOTAL_COUNT; first += PAGE_SIZE) {
+            final List<GHData.Item> page = parsePage(PAGE_SIZE, first);
+            list.addAll(page);
+            store.addAll(page);
+        }
+        assertEquals(TOTAL_COUNT, store.size());
+        for (int row = 0; row < TOTAL_COUNT; row += PAGE_SIZE - 1) {
+            assertEquals(list.get(row), store.getItem(row));
+        }
+        assertEquals(list.get(TOTAL_COUNT - 1), store.getItem(TOTAL_COUNT - 1));
+    }
+}
@@ -0,0 +1,85 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHListDiff} row matching, and that {@link GHItemStore#apply(GHListDiff, List)}
+ * keeps stamps of unchanged rows
+ */
+public class GHListDiffTest {
+
+    private static GHData.Item item(String name, int starCount) {
+        final GHData.Item item = new GHData.Item();
+        item.setProjectName(name);
+        item.setStarCount(starCount);
+        item.setProjectURL("https://github.com/owner/" + name);
+        final GHData.Item.Owner owner = new GHData.Item.Owner("owner", "avatar");
+        item.setOwner(owner);
+        return item;
+    }
+
+    @Test
+    public void compute_matchesRowsByIdentity() {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(Arrays.asList(item("a", 40), item("b", 30), item("c", 20), item("d", 10)));
+
+        //"b" and "a" swap places, "c" gets a star, "d" is gone, "e" is new
+
+        final List<GHData.Item> refreshed = Arrays.asList(item("b", 50), item("a", 40), item("c", 21), item("e", 5));
+        final GHListDiff diff = GHListDiff.compute(store, refreshed);
+
+        assertEquals(1, diff.getOldPosition(0));
+        assertEquals(0, diff.getOldPosition(1));
+        assertEquals(2, diff.getOldPosition(2));
+        assertEquals(GHListDiff.NO_POSITION, diff.getOldPosition(3));
+        assertArrayEquals(new int[] {1, 0, 2, GHListDiff.NO_POSITION}, diff.getNewPositions());
+
+        assertTrue(diff.isChanged(0));
+        assertFalse(diff.isChanged(1));
+        assertTrue(diff.isChanged(2));
+        assertTrue(diff.isChanged(3));
+        assertEquals(3, diff.getChangedCount());
+        assertEquals(2, diff.getMovedCount());
+        assertEquals(1, diff.getRemovedCount());
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void compute_sameContentIsEmpty() {
+        final List<GHData.Item> items = Arrays.asList(item("a", 2), item("b", 1));
+        final GHItemStore store = new GHItemStore();
+        store.addAll(items);
+        assertTrue(GHListDiff.compute(store, new ArrayList<GHData.Item>(items)).isEmpty());
+        assertFalse(GHListDiff.compute(store, items.subList(0, 1)).isEmpty());
+    }
+
+    @Test
+    public void apply_keepsStampsOfUnchangedRows() {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(Arrays.asList(item("a", 40), item("b", 30), item("c", 20)));
+        final int stampA = store.getStamp(0);
+        final int stampB = store.getStamp(1);
+        final int stampC = store.getStamp(2);
+
+        final List<GHData.Item> refreshed = Arrays.asList(item("b", 30), item("a", 40), item("c", 25), item("d", 1));
+        final GHListDiff diff = GHListDiff.compute(store.copy(), refreshed);
+        store.apply(diff, refreshed);
+
+        assertEquals(refreshed.size(), store.size());
+        for (int i = 0; i < refreshed.size(); i++) {
+            assertEquals(refreshed.get(i), store.getItem(i));
+        }
+        assertEquals(stampB, store.getStamp(0));
+        assertEquals(stampA, store.getStamp(1));
+        assertNotEquals(stampC, store.getStamp(2));
+        assertNotEquals(stampA, store.getStamp(3));
+        assertNotEquals(stampB, store.getStamp(3));
+        assertNotEquals(store.getStamp(2), store.getStamp(3));
+    }
+}
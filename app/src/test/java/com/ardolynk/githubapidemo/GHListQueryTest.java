@@ -0,0 +1,142 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHListQuery} orders and filters against sorting and filtering items directly
+ */
+public class GHListQueryTest {
+
+    private final static int PAGE_SIZE = 100;
+    private final static int TOTAL_COUNT = 5000;
+
+    private static List<GHData.Item> parsePage(int count, int firstIndex) throws Exception {
+        return GHSearchParser.parse(new StringReader(SearchPayloads.page(count, firstIndex, TOTAL_COUNT))).getItems();
+    }
+
+    private static GHData.Item item(String name, int starCount, String login) {
+        final GHData.Item item = new GHData.Item();
+        item.setProjectName(name);
+        item.setStarCount(starCount);
+        if (login != null) {
+            item.setOwner(new GHData.Item.Owner(login, null));
+        }
+        return item;
+    }
+
+    private static List<String> shownNames(GHListQuery query, GHItemStore store) {
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < query.size(); i++) {
+            names.add(store.getProjectName(query.getRow(i)));
+        }
+        return names;
+    }
+
+    @Test
+    public void order_sortsLoadedRows() {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(Arrays.asList(item("Beta", 5, "zed"), item("alpha", 7, "Amy"), item(null, 9, null),
+                item("gamma", 7, "amy")));
+        final GHListQuery query = new GHListQuery(store);
+        assertFalse(query.isActive());
+
+        query.setOrder(GHListQuery.Order.NAME);
+        assertTrue(query.isActive());
+        assertEquals(Arrays.asList("alpha", "Beta", "gamma", null), shownNames(query, store));
+
+        query.setOrder(GHListQuery.Order.OWNER);
+        assertEquals(Arrays.asList("alpha", "gamma", "Beta", null), shownNames(query, store));
+
+        query.setOrder(GHListQuery.Order.STARS);
+        assertEquals(Arrays.asList(null, "alpha", "gamma", "Beta"), shownNames(query, store));
+    }
+
+    @Test
+    public void filters_combineAsMasks() {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(Arrays.asList(item("web-kit", 50, "amy"), item("parser", 40, "bob"), item("web", 5, "amy"),
+                item("tools", 30, "webster")));
+        final GHListQuery query = new GHListQuery(store);
+
+        query.setText("WEB");
+        assertEquals(Arrays.asList("web-kit", "web", "tools"), shownNames(query, store));
+        query.setMinStars(30);
+        assertEquals(Arrays.asList("web-kit", "tools"), shownNames(query, store));
+        query.setOwner("Amy");
+        assertEquals(Arrays.asList("web-kit"), shownNames(query, store));
+
+        //Appended rows are checked against the filters set
+
+        store.addAll(Arrays.asList(item("webview", 90, "amy"), item("web2", 10, "amy")));
+        assertEquals(Arrays.asList("web-kit", "webview"), shownNames(query, store));
+        query.setOrder(GHListQuery.Order.STARS);
+        assertEquals(Arrays.asList("webview", "web-kit"), shownNames(query, store));
+
+        query.clearFilters();
+        assertEquals(6, query.size());
+        assertTrue(query.isActive());
+    }
+
+    @Test
+    public void release_rebuildsIndexOnceUsed() {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(Arrays.asList(item("Zeta", 5, "Bob"), item("\u00e9p\u00e9e", 7, "amy"), item("alpha", 9, "bobby"),
+                item("ZETA-2", 3, "AMY")));
+        final GHListQuery query = new GHListQuery(store);
+        query.setOrder(GHListQuery.Order.NAME);
+        assertEquals(Arrays.asList("alpha", "Zeta", "ZETA-2", "\u00e9p\u00e9e"), shownNames(query, store));
+        query.setText("bob");
+        assertEquals(Arrays.asList("alpha", "Zeta"), shownNames(query, store));
+
+        query.release();
+        store.addAll(Collections.singletonList(item("Bobcat", 1, null)));
+        assertEquals(Arrays.asList("alpha", "Bobcat", "Zeta"), shownNames(query, store));
+
+        //An inactive query drops the index, and builds it again once set
+
+        query.setText(null);
+        query.setOrder(GHListQuery.Order.LOADED);
+        assertFalse(query.isActive());
+        query.setOwner("amy");
+        assertEquals(Arrays.asList("\u00e9p\u00e9e", "ZETA-2"), shownNames(query, store));
+    }
+
+    @Test
+    public void appendedPages_matchFullSort() throws Exception {
+        final GHItemStore store = new GHItemStore();
+        final GHListQuery query = new GHListQuery(store);
+        query.setOrder(GHListQuery.Order.NAME);
+        final List<GHData.Item> items = new ArrayList<GHData.Item>();
+        for (int page = 0; page < 5; page++) {
+            final List<GHData.Item> pageItems = parsePage(PAGE_SIZE, page * PAGE_SIZE);
+            store.addAll(pageItems);
+            items.addAll(pageItems);
+            assertEquals(items.size(), query.size());
+        }
+        Collections.sort(items, new Comparator<GHData.Item>() {
+            @Override
+            public int compare(GHData.Item first, GHData.Item second) {
+                return first.getProjectName().compareTo(second.getProjectName());
+            }
+        });
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i), store.getItem(query.getRow(i)));
+        }
+
+        //Replaced rows are indexed again
+
+        store.replace(0, PAGE_SIZE, Collections.singletonList(item("aaa", 1, "someone")));
+        query.invalidate();
+        assertEquals(items.size() - PAGE_SIZE + 1, query.size());
+        assertEquals("aaa", store.getProjectName(query.getRow(0)));
+    }
+}
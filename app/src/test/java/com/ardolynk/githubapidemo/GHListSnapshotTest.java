@@ -0,0 +1,62 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHListSnapshot} persistence
+ */
+public class GHListSnapshotTest {
+
+    private final static int PAGE_SIZE = 30;
+    private final static GHPagePlan PAGE_PLAN = new GHPagePlan(PAGE_SIZE, PAGE_SIZE);
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static List<GHData.Item> parsePages(int pageCount) throws Exception {
+        return GHSearchParser.parse(new StringReader(SearchPayloads.page(pageCount * PAGE_SIZE, 0, 1000))).getItems();
+    }
+
+    @Test
+    public void read_returnsWrittenSnapshot() throws Exception {
+        final File file = new File(mFolder.getRoot(), "list.snapshot");
+        final List<GHData.Item> items = parsePages(2);
+        new GHListSnapshot(items, 2, true, "kotlin", new GHPagePlan(25, 100)).write(file);
+
+        final GHListSnapshot snapshot = GHListSnapshot.read(file);
+        assertNotNull(snapshot);
+        assertEquals(items, snapshot.getItems());
+        assertEquals(2, snapshot.getPageNum());
+        assertTrue(snapshot.hasNext());
+        assertEquals("kotlin", snapshot.getSearchString());
+        assertEquals(25, snapshot.getPagePlan().getFirstPageSize());
+        assertEquals(100, snapshot.getPagePlan().getMaxPageSize());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void read_ignoresMissingOrBrokenFile() throws Exception {
+        final File file = new File(mFolder.getRoot(), "list.snapshot");
+        assertNull(GHListSnapshot.read(file));
+
+        new GHListSnapshot(parsePages(1), 1, false, "", PAGE_PLAN).write(file);
+        final RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(file.length() - 10);
+        truncated.close();
+        assertNull(GHListSnapshot.read(file));
+
+        final RandomAccessFile garbage = new RandomAccessFile(file, "rw");
+        garbage.writeInt(0);
+        garbage.close();
+        assertNull(GHListSnapshot.read(file));
+    }
+}
@@ -0,0 +1,120 @@
+package com.ardolynk.githubapidemo;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHMemoryGovernor} budget steps and listener notifications
+ */
+public class GHMemoryGovernorTest {
+
+    private final static long HEAP_SIZE = 64 * 1024 * 1024;
+
+    private static class CountingListener implements GHMemoryGovernor.Listener {
+        private int mCount;
+        private long mBudget;
+
+        @Override
+        public void onMemoryBudgetChanged(GHMemoryGovernor governor) {
+            mCount++;
+            mBudget = governor.getBudget();
+        }
+    }
+
+    @Test
+    public void budget_shrinksWithTrimLevel() {
+        final GHMemoryGovernor governor = new GHMemoryGovernor(HEAP_SIZE);
+        assertEquals(HEAP_SIZE, governor.getBudget());
+        assertEquals((int) (HEAP_SIZE / 8), governor.getBudget(8));
+        assertFalse(governor.isTrimmingRows());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(HEAP_SIZE * 3 / 4, governor.getBudget());
+        assertFalse(governor.isTrimmingRows());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(HEAP_SIZE / 2, governor.getBudget());
+        assertTrue(governor.isTrimmingRows());
+        assertFalse(governor.isReleasingCaches());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertEquals(HEAP_SIZE / 4, governor.getBudget());
+
+        //Hiding the UI doesn't give back what running critically low took
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(HEAP_SIZE / 4, governor.getBudget());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(HEAP_SIZE / 4, governor.getBudget());
+        assertTrue(governor.isReleasingCaches());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(HEAP_SIZE / 4, governor.getBudget());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, governor.getBudget());
+
+        governor.onLowMemory();
+        assertEquals(0, governor.getBudget());
+        assertEquals(0, governor.getBudget(8));
+
+        governor.reset();
+        assertEquals(HEAP_SIZE, governor.getBudget());
+        assertEquals(GHMemoryGovernor.NO_TRIM, governor.getTrimLevel());
+    }
+
+    @Test
+    public void uiHidden_keepsRows() {
+        final GHMemoryGovernor governor = new GHMemoryGovernor(HEAP_SIZE);
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(HEAP_SIZE / 2, governor.getBudget());
+        assertFalse(governor.isTrimmingRows());
+        assertFalse(governor.isReleasingCaches());
+
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertTrue(governor.isTrimmingRows());
+    }
+
+    @Test
+    public void budget_neverGrowsWithStricterLevel() {
+        final int[] levels = {GHMemoryGovernor.NO_TRIM, ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL,
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+                ComponentCallbacks2.TRIM_MEMORY_MODERATE, ComponentCallbacks2.TRIM_MEMORY_COMPLETE};
+        for (int first : levels) {
+            for (int second : levels) {
+                if (second < first) {
+                    continue;
+                }
+                final GHMemoryGovernor governor = new GHMemoryGovernor(HEAP_SIZE);
+                governor.onTrimMemory(first);
+                final long budget = governor.getBudget();
+                governor.onTrimMemory(second);
+                assertTrue(first + " then " + second, governor.getBudget() <= budget);
+            }
+        }
+    }
+
+    @Test
+    public void listeners_notifiedOfChangesOnly() {
+        final GHMemoryGovernor governor = new GHMemoryGovernor(HEAP_SIZE);
+        final CountingListener listener = new CountingListener();
+        governor.addListener(listener);
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(1, listener.mCount);
+        assertEquals(HEAP_SIZE / 2, listener.mBudget);
+
+        governor.reset();
+        assertEquals(2, listener.mCount);
+        assertEquals(HEAP_SIZE, listener.mBudget);
+
+        governor.removeListener(listener);
+        governor.onLowMemory();
+        assertEquals(2, listener.mCount);
+    }
+}
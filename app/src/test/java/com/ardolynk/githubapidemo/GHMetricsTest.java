@@ -0,0 +1,82 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHMetrics} histogram accuracy and concurrent recording
+ */
+public class GHMetricsTest {
+
+    private final static int THREAD_COUNT = 4;
+    private final static int RECORDS_PER_THREAD = 100000;
+
+    @Test
+    public void buckets_coverValuesWithBoundedError() {
+        int previousBucket = -1;
+        for (long value = 0; value < 100000; value++) {
+            final int bucket = GHMetrics.Histogram.getBucket(value);
+            assertTrue(bucket == previousBucket || bucket == previousBucket + 1);
+            assertTrue(GHMetrics.Histogram.getBucketMax(bucket) >= value);
+            assertTrue(GHMetrics.Histogram.getBucketMax(bucket) - value <= value / GHMetrics.Histogram.SUB_BUCKET_COUNT);
+            previousBucket = bucket;
+        }
+    }
+
+    @Test
+    public void percentiles_matchRecordedValues() {
+        final GHMetrics.Histogram histogram = new GHMetrics().histogram("stage");
+        assertEquals(0, histogram.getPercentile(50));
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getPercentile(50), 500 / GHMetrics.Histogram.SUB_BUCKET_COUNT);
+        assertEquals(990, histogram.getPercentile(99), 990 / GHMetrics.Histogram.SUB_BUCKET_COUNT);
+        assertEquals(1000, histogram.getPercentile(100));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1002, histogram.getCount());
+    }
+
+    @Test
+    public void record_isConsistentAcrossThreads() throws Exception {
+        final GHMetrics metrics = new GHMetrics();
+        final Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Random random = new Random();
+                    final GHMetrics.Histogram histogram = metrics.histogram("stage");
+                    final GHMetrics.Counter counter = metrics.counter("count");
+                    for (int j = 0; j < RECORDS_PER_THREAD; j++) {
+                        histogram.record(random.nextInt(10000));
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(THREAD_COUNT * RECORDS_PER_THREAD, metrics.histogram("stage").getCount());
+        assertEquals(THREAD_COUNT * RECORDS_PER_THREAD, metrics.counter("count").get());
+
+        final StringWriter output = new StringWriter();
+        metrics.dump(new PrintWriter(output));
+        assertTrue(output.toString().contains("stage"));
+        assertTrue(output.toString().contains("count"));
+
+        metrics.reset();
+        assertEquals(0, metrics.histogram("stage").getCount());
+    }
+}
@@ -0,0 +1,120 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHPageCache} storage, encoding and LRU eviction
+ */
+public class GHPageCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void put_roundTripsItemsAndETag() throws Exception {
+        final GHPageCache cache = new GHPageCache(mFolder.getRoot(), 1024 * 1024);
+        final GHPageKey key = new GHPageKey("kotlin", "Kotlin", 2, 30);
+        final ArrayList<GHData.Item> items = parse(30);
+        cache.put(key, "\"abc\"", 120, items);
+
+        final GHPageCache.Entry entry = new GHPageCache(mFolder.getRoot(), 1024 * 1024).get(key);
+        assertNotNull(entry);
+        assertEquals("\"abc\"", entry.etag);
+        assertEquals(120, entry.totalCount);
+        assertEquals(items, entry.items);
+        assertSame(entry.items.get(0).getOwner(), entry.items.get(1).getOwner());
+
+        assertNull(cache.get(new GHPageKey("kotlin", "Kotlin", 3, 30)));
+        assertNull(cache.get(new GHPageKey("kotlin", "Kotlin", 2, 100)));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        final ArrayList<GHData.Item> items = parse(30);
+        final GHPageCache probe = new GHPageCache(mFolder.newFolder("probe"), Long.MAX_VALUE);
+        probe.put(new GHPageKey("", "Kotlin", 1, 30), null, GHData.UNKNOWN_COUNT, items);
+        final long pageSize = probe.getSize();
+
+        final GHPageCache cache = new GHPageCache(mFolder.newFolder("cache"), pageSize * 3);
+        final GHPageKey first = new GHPageKey("", "Kotlin", 1, 30);
+        final GHPageKey second = new GHPageKey("", "Kotlin", 2, 30);
+        final GHPageKey third = new GHPageKey("", "Kotlin", 3, 30);
+        cache.put(first, null, GHData.UNKNOWN_COUNT, items);
+        cache.put(second, null, GHData.UNKNOWN_COUNT, items);
+        cache.put(third, null, GHData.UNKNOWN_COUNT, items);
+        assertNotNull(cache.get(first));
+
+        cache.put(new GHPageKey("", "Kotlin", 4, 30), null, GHData.UNKNOWN_COUNT, items);
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(first));
+        assertNotNull(cache.get(third));
+        assertTrue(cache.getSize() <= pageSize * 3);
+    }
+
+    @Test
+    public void get_dropsCorruptedEntry() throws Exception {
+        final GHPageCache cache = new GHPageCache(mFolder.getRoot(), 1024 * 1024);
+        final GHPageKey key = new GHPageKey("", "Kotlin", 1, 30);
+        cache.put(key, null, GHData.UNKNOWN_COUNT, parse(3));
+        for (File file : mFolder.getRoot().listFiles()) {
+
+            //Truncate the file
+
+            new FileOutputStream(file).close();
+        }
+        assertNull(new GHPageCache(mFolder.getRoot(), 1024 * 1024).get(key));
+        assertEquals(0, mFolder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void get_missesOnBrokenLengths() throws Exception {
+        final GHPageKey key = new GHPageKey("", "Kotlin", 1, 30);
+        final int[] brokenValues = {Integer.MAX_VALUE, -2, 1 << 20};
+        for (int brokenValue : brokenValues) {
+            final GHPageCache cache = new GHPageCache(mFolder.getRoot(), 1024 * 1024);
+            cache.put(key, "\"abc\"", GHData.UNKNOWN_COUNT, parse(3));
+            for (File file : mFolder.getRoot().listFiles()) {
+
+                //Overwrite the ETag length written after the header and the cache key
+
+                final RandomAccessFile data = new RandomAccessFile(file, "rw");
+                data.seek(8);
+                data.seek(12 + data.readInt());
+                data.writeInt(brokenValue);
+                data.close();
+            }
+            assertNull(new GHPageCache(mFolder.getRoot(), 1024 * 1024).get(key));
+            assertEquals(0, mFolder.getRoot().listFiles().length);
+        }
+
+        //Item count going beyond the file
+
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(buffer);
+        output.writeInt(0);
+        output.writeInt(Integer.MAX_VALUE);
+        try {
+            GHItemCodec.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+            fail();
+        } catch (IOException e) {}
+    }
+
+    private static ArrayList<GHData.Item> parse(int count) throws Exception {
+        return GHSearchParser.parse(new StringReader(SearchPayloads.page(count))).getItems();
+    }
+}
@@ -0,0 +1,40 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.net.URLEncoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHPageKey} URL building against the former <code>String.format</code> template
+ */
+public class GHPageKeyTest {
+
+    private final static String URL_TEMPLATE = "https://api.github.com/search/repositories?q=%s%%20language:Kotlin&sort=stars&order=desc&page=%d&per_page=%d";
+
+    @Test
+    public void getUrl_matchesTemplate() throws Exception {
+        for (String searchString : new String[] {"", "kotlin", "android gradle", "c++ & \u00e9"}) {
+            final GHPageKey key = new GHPageKey(searchString, "Kotlin", 3, 30);
+            assertEquals(String.format(URL_TEMPLATE, URLEncoder.encode(searchString, "UTF-8"), 3, 30), key.getUrl());
+        }
+    }
+
+    @Test
+    public void language_goesToUrlAndCacheKey() {
+        final GHPageKey key = new GHPageKey("web", "C++", 1, 30);
+        assertTrue(key.getUrl().contains("q=web%20language:C%2B%2B&"));
+        assertFalse(new GHPageKey("web", null, 1, 30).getUrl().contains("language:"));
+        assertNotEquals(key.getCacheKey(), new GHPageKey("web", "Java", 1, 30).getCacheKey());
+    }
+
+    @Test
+    public void maxStars_goesToUrlAndCacheKey() {
+        final GHPageKey key = new GHPageKey("web", "Kotlin", 1200, 3, 100, 200);
+        assertTrue(key.getUrl().contains("q=web%20language:Kotlin%20stars:%3C%3D1200&"));
+        assertTrue(key.getUrl().endsWith("&page=3&per_page=100"));
+        assertFalse(new GHPageKey("web", "Kotlin", 3, 100, 200).getUrl().contains("stars:"));
+        assertNotEquals(key.getCacheKey(), new GHPageKey("web", "Kotlin", 3, 100, 200).getCacheKey());
+    }
+}
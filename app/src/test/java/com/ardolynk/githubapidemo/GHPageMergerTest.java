@@ -0,0 +1,338 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHPageMerger} merge order, source page fetching and failures, and keyset paging
+ * (also against {@link StubGitHubServer})
+ */
+public class GHPageMergerTest {
+
+    private final static GHPagePlan PLAN = new GHPagePlan(4, 4);
+    private final static String API_URL = "https://api.github.com";
+
+    private final LinkedHashMap<GHPageKey, GHPagePipeline.Callback<GHPage>> mFetches =
+            new LinkedHashMap<GHPageKey, GHPagePipeline.Callback<GHPage>>();
+    private final List<GHPage> mDelivered = new ArrayList<GHPage>();
+    private final List<Exception> mFailures = new ArrayList<Exception>();
+    private final GHPagePipeline.Fetcher<GHPage> mSource = new GHPagePipeline.Fetcher<GHPage>() {
+        @Override
+        public void fetch(GHPageKey key, GHPagePipeline.Callback<GHPage> callback) {
+            mFetches.put(key, callback);
+        }
+
+        @Override
+        public void cancel(GHPageKey key) {
+            mFetches.remove(key);
+        }
+    };
+    private GHPageMerger mMerger;
+
+    @Before
+    public void setUp() {
+        mMerger = new GHPageMerger(mSource, "web", Arrays.asList("Kotlin", "Java", "Scala"), PLAN, false);
+    }
+
+    @Test
+    public void firstPage_fetchesAllLanguagesAndMergesByStars() {
+        request(1);
+        assertEquals(3, mFetches.size());
+        assertTrue(mFetches.containsKey(sourceKey("Kotlin", 1)));
+        assertTrue(mFetches.containsKey(sourceKey("Java", 1)));
+        assertTrue(mFetches.containsKey(sourceKey("Scala", 1)));
+
+        complete("Kotlin", 1, 100, 100, 90, 80, 70);
+        complete("Java", 1, 100, 95, 60, 50, 40);
+        assertTrue(mDelivered.isEmpty());
+
+        complete("Scala", 1, 100, 85, 75, 65, 55);
+        assertEquals(1, mDelivered.size());
+        assertEquals(Arrays.asList("Kotlin-100", "Java-95", "Kotlin-90", "Scala-85"), names(mDelivered.get(0)));
+        assertEquals(sourceKey(null, 1), mDelivered.get(0).getKey());
+        assertEquals(300, mDelivered.get(0).getTotalCount());
+        assertTrue(mDelivered.get(0).hasNext());
+    }
+
+    @Test
+    public void nextSourcePage_isFetchedWhenLanguageRunsDry() {
+        request(1);
+        complete("Kotlin", 1, 100, 100, 90, 80, 70);
+        complete("Java", 1, 100, 95, 60, 50, 40);
+        complete("Scala", 1, 100, 85, 75, 65, 55);
+
+        //Kotlin runs dry after 80 and 70 are merged, nothing else is needed for the second page yet
+
+        request(2);
+        assertEquals(1, mFetches.size());
+        assertTrue(mFetches.containsKey(sourceKey("Kotlin", 2)));
+        assertEquals(4, mMerger.getSourcePageCount());
+
+        complete("Kotlin", 2, 100, 68, 20, 10, 5);
+        assertEquals(Arrays.asList("Kotlin-80", "Scala-75", "Kotlin-70", "Kotlin-68"), names(mDelivered.get(1)));
+        assertEquals(4, mMerger.getSourcePageCount());
+    }
+
+    @Test
+    public void languagesOver_endTheList() {
+        request(1);
+        complete("Kotlin", 1, 3, 100, 90, 80);
+        complete("Java", 1, 1, 95);
+        complete("Scala", 1, 0);
+        assertEquals(Arrays.asList("Kotlin-100", "Java-95", "Kotlin-90", "Kotlin-80"), names(mDelivered.get(0)));
+        assertFalse(mDelivered.get(0).hasNext());
+        assertTrue(mFetches.isEmpty());
+
+        request(2);
+        assertTrue(mDelivered.get(1).getItems().isEmpty());
+    }
+
+    @Test
+    public void sourceFailure_failsPageUntilRequestedAgain() {
+        request(1);
+        complete("Kotlin", 1, 100, 100, 90, 80, 70);
+        complete("Java", 1, 100, 95, 60, 50, 40);
+        mFetches.remove(sourceKey("Scala", 1)).onFailure(new Exception("offline"));
+        assertEquals(1, mFailures.size());
+        assertTrue(mDelivered.isEmpty());
+
+        request(1);
+        assertEquals(1, mFetches.size());
+        complete("Scala", 1, 100, 85, 75, 65, 55);
+        assertEquals(Arrays.asList("Kotlin-100", "Java-95", "Kotlin-90", "Scala-85"), names(mDelivered.get(0)));
+    }
+
+    @Test
+    public void pagesAhead_areMergedInOrder() {
+        request(2);
+        complete("Kotlin", 1, 100, 100, 90, 80, 70);
+        complete("Java", 1, 100, 95, 60, 50, 40);
+        complete("Scala", 1, 100, 85, 75, 65, 55);
+        complete("Kotlin", 2, 100, 68, 20, 10, 5);
+
+        //The first page is merged on the way, but only the requested one is handed over
+
+        assertEquals(1, mDelivered.size());
+        assertEquals(2, mDelivered.get(0).getKey().getPage());
+        assertEquals(Arrays.asList("Kotlin-80", "Scala-75", "Kotlin-70", "Kotlin-68"), names(mDelivered.get(0)));
+    }
+
+    @Test
+    public void keyset_continuesFromLastStarCount() {
+        mMerger = new GHPageMerger(mSource, "web", Collections.singletonList("Kotlin"), PLAN, true);
+        request(1);
+        completeRows(sourceKey("Kotlin", 1), 1000, "a:100", "b:90", "c:80", "d:80");
+        assertEquals(Arrays.asList("a", "b", "c", "d"), names(mDelivered.get(0)));
+        assertEquals(GHData.UNKNOWN_COUNT, mDelivered.get(0).getTotalCount());
+        assertTrue(mDelivered.get(0).hasNext());
+
+        //Rows with the last star count come again at the start of the next range
+
+        request(2);
+        completeRows(new GHPageKey("web", "Kotlin", 80, 2, 4, 0), 500, "c:80", "d:80", "e:70", "f:60");
+        completeRows(new GHPageKey("web", "Kotlin", 60, 3, 4, 0), 400, "f:60", "g:50", "h:40", "i:30");
+        assertEquals(Arrays.asList("e", "f", "g", "h"), names(mDelivered.get(1)));
+        assertTrue(mFetches.isEmpty());
+    }
+
+    @Test
+    public void keyset_pagesThroughSameStarCount() {
+        mMerger = new GHPageMerger(mSource, "web", Collections.singletonList("Kotlin"), PLAN, true);
+        request(1);
+        completeRows(sourceKey("Kotlin", 1), 1000, "a:50", "b:50", "c:50", "d:50");
+
+        //The whole page has the same star count, so the range stays and its next page is fetched
+
+        request(2);
+        completeRows(new GHPageKey("web", "Kotlin", 50, 2, 4, 0), 1000, "a:50", "b:50", "c:50", "d:50");
+        completeRows(new GHPageKey("web", "Kotlin", 50, 3, 4, 4), 1000, "e:50", "f:50", "g:40", "h:40");
+        assertEquals(Arrays.asList("e", "f", "g", "h"), names(mDelivered.get(1)));
+
+        //The range is over with a short page
+
+        request(3);
+        completeRows(new GHPageKey("web", "Kotlin", 40, 4, 4, 0), 3, "g:40", "h:40", "i:30");
+        assertEquals(Collections.singletonList("i"), names(mDelivered.get(2)));
+        assertFalse(mDelivered.get(2).hasNext());
+    }
+
+    @Test
+    public void keyset_startsAfterRowsPagedByOffset() {
+        mMerger = new GHPageMerger(mSource, "web", Collections.singletonList("Kotlin"), PLAN, true);
+        mMerger.startAfter(5, rows("a:90", "b:80", "c:80"));
+        request(5);
+        assertEquals(1, mFetches.size());
+        completeRows(new GHPageKey("web", "Kotlin", 80, 1, 4, 0), 500, "b:80", "c:80", "d:80", "e:70");
+        completeRows(new GHPageKey("web", "Kotlin", 70, 2, 4, 0), 400, "e:70", "f:60", "g:50", "h:40");
+        assertEquals(Arrays.asList("d", "e", "f", "g"), names(mDelivered.get(0)));
+
+        //Starting over keeps the start
+
+        mMerger.restart();
+        request(5);
+        assertTrue(mFetches.containsKey(new GHPageKey("web", "Kotlin", 80, 1, 4, 0)));
+    }
+
+    @Test
+    public void keyset_readsPastSearchCap() throws Exception {
+        final List<String> names = readStub(true, 2500);
+        assertEquals(2500, names.size());
+        assertEquals(2500, new HashSet<String>(names).size());
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals("project-" + i, names.get(i));
+        }
+    }
+
+    @Test
+    public void offsetPaging_stopsAtSearchCap() throws Exception {
+        final List<String> names = readStub(false, 2500);
+        assertEquals(GHPage.MAX_SEARCH_RESULTS, names.size());
+    }
+
+    /**
+     * Reads a single language list from {@link StubGitHubServer} to the end
+     *
+     * @return Project names in list order
+     */
+    private List<String> readStub(boolean keyset, int totalCount) throws Exception {
+        final StubGitHubServer server = new StubGitHubServer(new GHRateLimiter.Clock() {
+            @Override
+            public long now() {
+                return 0;
+            }
+        }, 1000, 60000, totalCount);
+        server.start();
+        try {
+            final GHPagePlan plan = new GHPagePlan(25, 100);
+            mMerger = new GHPageMerger(new StubFetcher(server), "web", Collections.singletonList("Kotlin"),
+                    plan, keyset);
+            final List<String> names = new ArrayList<String>();
+            for (int page = 1; ; page++) {
+
+                //The source calls back right away, so does the merger
+
+                request(plan.makeKey("web", null, page));
+                assertTrue(mFailures.isEmpty());
+                assertEquals(page, mDelivered.size());
+                final GHPage delivered = mDelivered.get(page - 1);
+                names.addAll(names(delivered));
+                if (!delivered.hasNext()) {
+                    return names;
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Fetches source pages from {@link StubGitHubServer} on the calling thread
+     */
+    private static class StubFetcher implements GHPagePipeline.Fetcher<GHPage> {
+        private final StubGitHubServer mServer;
+
+        StubFetcher(StubGitHubServer server) {
+            mServer = server;
+        }
+
+        @Override
+        public void fetch(GHPageKey key, GHPagePipeline.Callback<GHPage> callback) {
+            final GHData data;
+            try {
+                final byte[] body = mServer.request(key.getUrl().substring(API_URL.length()), null);
+                data = GHSearchParser.parse(new InputStreamReader(new ByteArrayInputStream(body), SearchPayloads.UTF8));
+            } catch (IOException e) {
+                callback.onFailure(e);
+                return;
+            }
+            callback.onSuccess(new GHPage(key, data.getItems(), null, false, false,
+                    GHPage.getAvailableCount(data.getTotalCount())));
+        }
+
+        @Override
+        public void cancel(GHPageKey key) {
+        }
+    }
+
+    private void request(int page) {
+        request(sourceKey(null, page));
+    }
+
+    private void request(GHPageKey key) {
+        mMerger.fetch(key, new GHPagePipeline.Callback<GHPage>() {
+            @Override
+            public void onSuccess(GHPage result) {
+                mDelivered.add(result);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                mFailures.add(error);
+            }
+        });
+    }
+
+    private static GHPageKey sourceKey(String language, int page) {
+        return PLAN.makeKey("web", language, page);
+    }
+
+    /**
+     * Completes the source page with rows of given star counts
+     */
+    private void complete(String language, int page, int totalCount, int... starCounts) {
+        final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>();
+        for (int starCount : starCounts) {
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName(language + "-" + starCount);
+            item.setStarCount(starCount);
+            items.add(item);
+        }
+        final GHPageKey key = sourceKey(language, page);
+        mFetches.remove(key).onSuccess(new GHPage(key, items, null, false, false, totalCount));
+    }
+
+    /**
+     * Completes the source page with rows given as "name:stars", the name is the project URL as well
+     */
+    private void completeRows(GHPageKey key, int totalCount, String... rows) {
+        final GHPagePipeline.Callback<GHPage> callback = mFetches.remove(key);
+        assertNotNull("Not fetched: " + key, callback);
+        callback.onSuccess(new GHPage(key, rows(rows), null, false, false, totalCount));
+    }
+
+    /**
+     * @return Rows given as "name:stars", the name is the project URL as well
+     */
+    private static ArrayList<GHData.Item> rows(String... rows) {
+        final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>();
+        for (String row : rows) {
+            final String[] fields = row.split(":");
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName(fields[0]);
+            item.setProjectURL(fields[0]);
+            item.setStarCount(Integer.parseInt(fields[1]));
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static List<String> names(GHPage page) {
+        final List<String> names = new ArrayList<String>();
+        for (GHData.Item item : page.getItems()) {
+            names.add(item.getProjectName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,165 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks deduplication, concurrency limit and ordered delivery of {@link GHPagePipeline}
+ */
+public class GHPagePipelineTest {
+
+    private final LinkedHashMap<GHPageKey, GHPagePipeline.Callback<String>> mFetches =
+            new LinkedHashMap<GHPageKey, GHPagePipeline.Callback<String>>();
+    private final List<GHPageKey> mFetchLog = new ArrayList<GHPageKey>();
+    private final List<GHPageKey> mCancelled = new ArrayList<GHPageKey>();
+    private final List<String> mDelivered = new ArrayList<String>();
+    private GHPagePipeline<String> mPipeline;
+
+    @Before
+    public void setUp() {
+        mPipeline = new GHPagePipeline<String>(new GHPagePipeline.Fetcher<String>() {
+            @Override
+            public void fetch(GHPageKey key, GHPagePipeline.Callback<String> callback) {
+                mFetches.put(key, callback);
+                mFetchLog.add(key);
+            }
+
+            @Override
+            public void cancel(GHPageKey key) {
+                mCancelled.add(key);
+            }
+        }, new GHPagePipeline.Consumer<String>() {
+            @Override
+            public void onPageReady(GHPageKey key, String result) {
+                mDelivered.add(result);
+            }
+
+            @Override
+            public void onPageFailed(GHPageKey key, Exception error) {
+                mDelivered.add("failed " + key.getPage());
+            }
+        }, 2);
+        mPipeline.reset("kotlin", "Kotlin", new GHPagePlan(30, 30), 1);
+    }
+
+    @Test
+    public void duplicateRequests_attachToExistingFetch() {
+        mPipeline.prefetch(1);
+        mPipeline.request(1);
+        mPipeline.request(1);
+        assertEquals(1, mFetchLog.size());
+
+        complete(1);
+        assertEquals(1, mDelivered.size());
+        mPipeline.request(1);
+        assertEquals(1, mFetchLog.size());
+    }
+
+    @Test
+    public void pages_areDeliveredInOrder() {
+        mPipeline.request(3);
+        assertEquals(2, mPipeline.getInFlightCount());
+
+        complete(2);
+        assertTrue(mDelivered.isEmpty());
+
+        //Page 3 starts when a slot is free
+
+        assertEquals(3, mFetchLog.get(2).getPage());
+        complete(3);
+        assertTrue(mDelivered.isEmpty());
+
+        complete(1);
+        assertEquals(Arrays.asList("page 1", "page 2", "page 3"), mDelivered);
+        assertEquals(4, mPipeline.getNextPage());
+    }
+
+    @Test
+    public void prefetchedPages_areHeldUntilRequested() {
+        mPipeline.request(1);
+        mPipeline.prefetch(2);
+        mPipeline.prefetch(3);
+        complete(1);
+        complete(2);
+        complete(3);
+        assertEquals(1, mDelivered.size());
+
+        mPipeline.request(2);
+        assertEquals(2, mDelivered.size());
+        mPipeline.request(3);
+        assertEquals(3, mDelivered.size());
+        assertEquals(3, mFetchLog.size());
+    }
+
+    @Test
+    public void droppedPrefetchedPages_areFetchedAgain() {
+        mPipeline.request(1);
+        mPipeline.prefetch(2);
+        mPipeline.prefetch(3);
+        complete(1);
+        complete(2);
+        complete(3);
+        mPipeline.dropPrefetched(1);
+        assertTrue(mPipeline.isFetching(2));
+        assertFalse(mPipeline.isFetching(3));
+
+        mPipeline.request(3);
+        assertEquals(Arrays.asList("page 1", "page 2"), mDelivered);
+        assertEquals(4, mFetchLog.size());
+        complete(3);
+        assertEquals(Arrays.asList("page 1", "page 2", "page 3"), mDelivered);
+    }
+
+    @Test
+    public void requestedPages_jumpAheadOfPrefetchedOnes() {
+        mPipeline.request(1);
+        mPipeline.prefetch(2);
+        mPipeline.prefetch(4);
+        mPipeline.request(3);
+        complete(1);
+        assertEquals(3, mFetchLog.get(2).getPage());
+    }
+
+    @Test
+    public void failure_stopsDeliveryUntilRequestedAgain() {
+        mPipeline.request(2);
+        mFetches.remove(key(1)).onFailure(new Exception());
+        complete(2);
+        assertEquals(Arrays.asList("failed 1"), mDelivered);
+
+        mPipeline.request(1);
+        complete(1);
+        assertEquals(Arrays.asList("failed 1", "page 1"), mDelivered);
+        mPipeline.request(2);
+        assertEquals(Arrays.asList("failed 1", "page 1", "page 2"), mDelivered);
+    }
+
+    @Test
+    public void reset_dropsStaleResults() {
+        mPipeline.request(1);
+        final GHPagePipeline.Callback<String> stale = mFetches.remove(key(1));
+        mPipeline.reset("kotlin", "Kotlin", new GHPagePlan(30, 30), 1);
+        assertEquals(1, mCancelled.size());
+
+        mPipeline.request(1);
+        stale.onSuccess("stale");
+        assertTrue(mDelivered.isEmpty());
+        complete(1);
+        assertEquals(Arrays.asList("page 1"), mDelivered);
+    }
+
+    private static GHPageKey key(int page) {
+        return new GHPageKey("kotlin", "Kotlin", page, 30);
+    }
+
+    private void complete(int page) {
+        mFetches.remove(key(page)).onSuccess("page " + page);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHPagePlan} page ramp and {@link GHPage#hasNext()}
+ */
+public class GHPagePlanTest {
+
+    @Test
+    public void pages_growAlignedUpToMaximum() {
+        final GHPagePlan plan = new GHPagePlan(25, 100);
+        final int[] sizes = {25, 25, 50, 100, 100, 100};
+        int offset = 0;
+        for (int page = 1; page <= sizes.length; page++) {
+            assertEquals(offset, plan.getOffset(page));
+            assertEquals(sizes[page - 1], plan.getPageSize(page));
+
+            //The API addresses a page by number and size only
+
+            final GHPageKey key = plan.makeKey("kotlin", "Kotlin", page);
+            assertEquals(0, key.getOffset() % key.getPerPage());
+            assertEquals(offset / key.getPerPage() + 1, key.getApiPage());
+            offset += sizes[page - 1];
+        }
+        assertEquals(1000, plan.getOffset(13));
+    }
+
+    @Test
+    public void fixedPlan_keepsPageSize() {
+        final GHPagePlan plan = new GHPagePlan(30, 30);
+        for (int page = 1; page <= 40; page++) {
+            assertEquals((page - 1) * 30, plan.getOffset(page));
+            assertEquals(new GHPageKey("", "Kotlin", page, 30), plan.makeKey("", "Kotlin", page));
+        }
+        assertEquals(1, plan.getPage(0));
+        assertEquals(1, plan.getPage(29));
+        assertEquals(2, plan.getPage(30));
+    }
+
+    @Test
+    public void getPage_findsPageOfRow() {
+        final GHPagePlan plan = new GHPagePlan(25, 100);
+        assertEquals(1, plan.getPage(24));
+        assertEquals(2, plan.getPage(25));
+        assertEquals(3, plan.getPage(99));
+        assertEquals(4, plan.getPage(100));
+        assertEquals(5, plan.getPage(200));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsBadSizes() {
+        new GHPagePlan(50, 25);
+    }
+
+    @Test
+    public void hasNext_followsTotalCount() {
+        final GHPagePlan plan = new GHPagePlan(25, 100);
+        final ArrayList<GHData.Item> items = new ArrayList<GHData.Item>();
+        for (int i = 0; i < 25; i++) {
+            items.add(new GHData.Item());
+        }
+
+        //A full page is not a sign of more results if the total count says otherwise
+
+        assertFalse(new GHPage(plan.makeKey("", "Kotlin", 2), items, null, false, false, 50).hasNext());
+        assertTrue(new GHPage(plan.makeKey("", "Kotlin", 2), items, null, false, false, 51).hasNext());
+        assertTrue(new GHPage(plan.makeKey("", "Kotlin", 2), items, null, false, false, GHData.UNKNOWN_COUNT).hasNext());
+
+        //A short page is not the last one if more results are counted
+
+        assertTrue(new GHPage(plan.makeKey("", "Kotlin", 3), items, null, false, false, 500).hasNext());
+        assertFalse(new GHPage(plan.makeKey("", "Kotlin", 3), items, null, false, false, GHData.UNKNOWN_COUNT).hasNext());
+
+        //Nothing is given beyond the first thousand results
+
+        final ArrayList<GHData.Item> fullPage = new ArrayList<GHData.Item>();
+        for (int i = 0; i < 100; i++) {
+            fullPage.add(new GHData.Item());
+        }
+        assertFalse(new GHPage(new GHPageKey("", "Kotlin", 10, 100), fullPage, null, false, false, GHPage.getAvailableCount(5000)).hasNext());
+        assertTrue(new GHPage(new GHPageKey("", "Kotlin", 9, 100), fullPage, null, false, false, GHPage.getAvailableCount(5000)).hasNext());
+    }
+}
@@ -0,0 +1,49 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link GHPrefetchPolicy} adapts the prefetch distance
+ */
+public class GHPrefetchPolicyTest {
+
+    @Test
+    public void distance_isMinimalWhenIdle() {
+        final GHPrefetchPolicy policy = new GHPrefetchPolicy(5, 60);
+        assertEquals(5, policy.getPrefetchDistance());
+        policy.onScroll(10, 0);
+        policy.onScroll(10, 1000);
+        assertEquals(5, policy.getPrefetchDistance());
+    }
+
+    @Test
+    public void distance_growsWithVelocityAndLatency() {
+        final GHPrefetchPolicy policy = new GHPrefetchPolicy(5, 60);
+        long time = 0;
+        for (int position = 0; position < 200; position += 5) {
+            policy.onScroll(position, time);
+            time += 250;
+        }
+        assertEquals(20.0, policy.getVelocity(), 1.0);
+        final int distance = policy.getPrefetchDistance();
+        assertTrue(distance > 5);
+
+        for (int i = 0; i < 20; i++) {
+            policy.onPageLatency(3000);
+        }
+        final int slowNetworkDistance = policy.getPrefetchDistance();
+        assertTrue(slowNetworkDistance > distance);
+        assertEquals(60, slowNetworkDistance);
+    }
+
+    @Test
+    public void distance_resetsOnReload() {
+        final GHPrefetchPolicy policy = new GHPrefetchPolicy(5, 60);
+        policy.onScroll(100, 0);
+        policy.onScroll(0, 100);
+        policy.onScroll(0, 150);
+        assertEquals(0.0, policy.getVelocity(), 0.0);
+    }
+}
@@ -0,0 +1,259 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHRateLimiter} budgeting on a fake clock, alone and against {@link StubGitHubServer}
+ */
+public class GHRateLimiterTest {
+
+    private final static long START_TIME = 1500000000000L;
+    private final static long WINDOW = 60000;
+
+    private static class FakeTime implements GHRateLimiter.Clock, GHRateLimiter.Scheduler {
+        private long mNow = START_TIME;
+        private Runnable mTask;
+        private long mTaskTime;
+
+        @Override
+        public synchronized long now() {
+            return mNow;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delay) {
+            mTask = task;
+            mTaskTime = mNow + delay;
+        }
+
+        @Override
+        public void unschedule(Runnable task) {
+            mTask = null;
+        }
+
+        /**
+         * Advances the clock to the scheduled task and runs it
+         *
+         * @return False if nothing is scheduled
+         */
+        boolean runNext() {
+            if (mTask == null) {
+                return false;
+            }
+            final Runnable task = mTask;
+            mTask = null;
+            synchronized (this) {
+                mNow = Math.max(mNow, mTaskTime);
+            }
+            task.run();
+            return true;
+        }
+    }
+
+    private static class Recorder implements Runnable {
+        private final List<String> mLog;
+        private final String mName;
+
+        Recorder(List<String> log, String name) {
+            mLog = log;
+            mName = name;
+        }
+
+        @Override
+        public void run() {
+            mLog.add(mName);
+        }
+    }
+
+    private static Map<String, String> headers(int limit, int remaining, long resetTime) {
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("x-ratelimit-limit", String.valueOf(limit));
+        headers.put("x-ratelimit-remaining", String.valueOf(remaining));
+        headers.put("x-ratelimit-reset", String.valueOf(resetTime / 1000));
+        return headers;
+    }
+
+    @Test
+    public void lowPriority_keepsReserve() {
+        final FakeTime time = new FakeTime();
+        final GHRateLimiter limiter = new GHRateLimiter(time, time, 10, WINDOW);
+        limiter.onResponse(200, headers(10, 3, START_TIME + WINDOW));
+
+        final List<String> log = new ArrayList<String>();
+        limiter.submit(GHRateLimiter.Priority.AVATAR, new Recorder(log, "avatar"));
+        limiter.submit(GHRateLimiter.Priority.PREFETCH, new Recorder(log, "prefetch"));
+        assertEquals(1, log.size());
+        assertEquals("prefetch", log.get(0));
+        assertEquals(1, limiter.getQueueSize());
+        assertTrue(limiter.isLow(GHRateLimiter.Priority.PREFETCH));
+        assertFalse(limiter.isLow(GHRateLimiter.Priority.VISIBLE));
+        assertEquals(WINDOW, limiter.getWaitTime(GHRateLimiter.Priority.PREFETCH));
+        assertEquals(0, limiter.getWaitTime(GHRateLimiter.Priority.VISIBLE));
+
+        //Visible work goes first and may use up the whole budget
+
+        limiter.submit(GHRateLimiter.Priority.VISIBLE, new Recorder(log, "visible1"));
+        limiter.submit(GHRateLimiter.Priority.VISIBLE, new Recorder(log, "visible2"));
+        assertEquals(3, log.size());
+        assertEquals(0, limiter.getRemaining());
+        assertEquals(WINDOW, limiter.getWaitTime(GHRateLimiter.Priority.VISIBLE));
+
+        assertTrue(time.runNext());
+        assertEquals(START_TIME + WINDOW, time.now());
+        assertEquals(4, log.size());
+        assertEquals("avatar", log.get(3));
+    }
+
+    @Test
+    public void maxLimit_capsServerBudget() {
+        final FakeTime time = new FakeTime();
+        final GHRateLimiter limiter = new GHRateLimiter(time, time, 5, WINDOW);
+        limiter.setMaxLimit(5);
+        limiter.onResponse(200, headers(30, 29, START_TIME + WINDOW));
+        assertEquals(5, limiter.getRemaining());
+
+        //Requests sent count against the cap, whatever the server has left
+
+        final List<String> log = new ArrayList<String>();
+        for (int i = 0; i < 6; i++) {
+            limiter.submit(GHRateLimiter.Priority.VISIBLE, new Recorder(log, "visible" + i));
+        }
+        limiter.onResponse(200, headers(30, 24, START_TIME + WINDOW));
+        assertEquals(5, log.size());
+        assertEquals(0, limiter.getRemaining());
+        assertTrue(limiter.isLow(GHRateLimiter.Priority.VISIBLE));
+
+        limiter.onResponse(200, headers(30, 2, START_TIME + WINDOW));
+        assertEquals(0, limiter.getRemaining());
+        assertTrue(time.runNext());
+        assertEquals(START_TIME + WINDOW, time.now());
+        assertEquals(6, log.size());
+        assertEquals(4, limiter.getRemaining());
+    }
+
+    @Test
+    public void rateLimited_waitsForReset() {
+        final FakeTime time = new FakeTime();
+        final GHRateLimiter limiter = new GHRateLimiter(time, time, 10, WINDOW);
+        final long reset = START_TIME + 20000;
+        assertTrue(limiter.onResponse(403, headers(10, 0, reset)));
+        assertFalse(limiter.onResponse(403, new HashMap<String, String>()));
+        assertTrue(limiter.isLow(GHRateLimiter.Priority.VISIBLE));
+        assertEquals(20000, limiter.getWaitTime(GHRateLimiter.Priority.VISIBLE));
+        assertEquals(20000 + 1000, limiter.getRetryDelay(1));
+        assertEquals(20000 + 2000, limiter.getRetryDelay(2));
+
+        final List<String> log = new ArrayList<String>();
+        limiter.submit(GHRateLimiter.Priority.VISIBLE, new Recorder(log, "visible"));
+        assertTrue(log.isEmpty());
+        assertTrue(time.runNext());
+        assertEquals(reset, time.now());
+        assertEquals(1, log.size());
+        assertEquals(9, limiter.getRemaining());
+    }
+
+    @Test
+    public void retryAfter_blocksQueue() {
+        final FakeTime time = new FakeTime();
+        final GHRateLimiter limiter = new GHRateLimiter(time, time, 10, WINDOW);
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Retry-After", "5");
+        assertTrue(limiter.onResponse(429, headers));
+
+        final List<String> log = new ArrayList<String>();
+        limiter.submit(GHRateLimiter.Priority.VISIBLE, new Recorder(log, "visible"));
+        assertTrue(log.isEmpty());
+        assertTrue(time.runNext());
+        assertEquals(START_TIME + 5000, time.now());
+        assertEquals(1, log.size());
+    }
+
+    @Test
+    public void cancelAll_dropsQueuedWork() {
+        final FakeTime time = new FakeTime();
+        final GHRateLimiter limiter = new GHRateLimiter(time, time, 10, WINDOW);
+        limiter.onResponse(200, headers(10, 0, START_TIME + WINDOW));
+        final List<String> log = new ArrayList<String>();
+        limiter.submit(GHRateLimiter.Priority.VISIBLE, new Recorder(log, "visible"));
+        limiter.cancelAll();
+        assertEquals(0, limiter.getQueueSize());
+        assertFalse(time.runNext());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void stubServer_neverRejects() throws Exception {
+        final FakeTime time = new FakeTime();
+        final StubGitHubServer server = new StubGitHubServer(time, 5, WINDOW, 1000);
+        server.start();
+        try {
+
+            //The limiter starts with a wrong guess and learns the actual limit from the headers
+
+            final GHRateLimiter limiter = new GHRateLimiter(time, time, 10, WINDOW);
+            final int pageCount = 12;
+            final List<Integer> statuses = new ArrayList<Integer>();
+            for (int i = 1; i <= pageCount; i++) {
+                final String url = server.getUrl() + "/search/repositories?q=android&page=" + i + "&per_page=30";
+                limiter.submit(i % 2 == 0 ? GHRateLimiter.Priority.PREFETCH : GHRateLimiter.Priority.VISIBLE,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                statuses.add(fetch(limiter, url));
+                            }
+                        });
+            }
+            while (time.runNext()) {
+
+                //Let the clock run through the limit windows
+
+            }
+            assertEquals(pageCount, statuses.size());
+            assertEquals(pageCount, server.getRequestCount());
+            assertEquals(0, server.getRejectedCount());
+            for (int status : statuses) {
+                assertEquals(200, status);
+            }
+            assertTrue(time.now() >= START_TIME + 2 * WINDOW);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static int fetch(GHRateLimiter limiter, String url) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            final int status = connection.getResponseCode();
+            final InputStream stream = (status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            final byte[] buffer = new byte[4096];
+            while (stream.read(buffer) > 0) {
+
+                //Drain the body
+
+            }
+            stream.close();
+            final Map<String, String> headers = new HashMap<String, String>();
+            for (Map.Entry<String, List<String>> entry : connection.getHeaderFields().entrySet()) {
+                if (entry.getKey() != null && !entry.getValue().isEmpty()) {
+                    headers.put(entry.getKey(), entry.getValue().get(0));
+                }
+            }
+            limiter.onResponse(status, headers);
+            connection.disconnect();
+            return status;
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
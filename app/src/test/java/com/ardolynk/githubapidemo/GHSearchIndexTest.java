@@ -0,0 +1,150 @@
+package com.ardolynk.githubapidemo;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHSearchIndex} matching, ordering and persistence
+ */
+public class GHSearchIndexTest {
+
+    private final static String KOTLIN = "Kotlin";
+    private final static String JAVA = "Java";
+    private final static List<String> KOTLIN_ONLY = Collections.singletonList("kotlin");
+    private final static int MAX_ROWS = 10000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static GHData.Item item(String login, String name, int starCount) {
+        final GHData.Item.Owner owner = new GHData.Item.Owner(login,
+                "https://avatars.githubusercontent.com/" + login);
+        final GHData.Item item = new GHData.Item();
+        item.setProjectName(name);
+        item.setStarCount(starCount);
+        item.setProjectURL("https://github.com/" + login + "/" + name);
+        item.setOwner(owner);
+        return item;
+    }
+
+    private static List<String> names(List<GHData.Item> items) {
+        final List<String> names = new ArrayList<String>();
+        for (GHData.Item item : items) {
+            names.add(item.getProjectName());
+        }
+        return names;
+    }
+
+    private static List<GHData.Item> sample() {
+        return Arrays.asList(
+                item("JetBrains", "kotlin", 40000),
+                item("Kotlin", "kotlinx.coroutines", 12000),
+                item("square", "okhttp", 43000),
+                item("square", "retrofit", 41000),
+                item("InsertKoinIO", "koin", 8000));
+    }
+
+    @Test
+    public void query_matchesWordPrefixesByStars() throws Exception {
+        final GHSearchIndex index = new GHSearchIndex(mFolder.newFile("index"), MAX_ROWS);
+        index.add(KOTLIN, sample());
+
+        assertEquals(Arrays.asList("kotlin", "kotlinx.coroutines"), names(index.query("Kotl", null, 10)));
+        assertEquals(Arrays.asList("kotlinx.coroutines"), names(index.query("kotlin cor", null, 10)));
+        assertEquals(Arrays.asList("okhttp", "retrofit"), names(index.query("square", null, 10)));
+        assertEquals(Arrays.asList("okhttp", "retrofit", "kotlin"), names(index.query("", null, 3)));
+        assertTrue(index.query("flutter", null, 10).isEmpty());
+
+        //A repository seen again only gets its star count updated
+
+        index.add(KOTLIN, Arrays.asList(item("InsertKoinIO", "koin", 50000)));
+        assertEquals(5, index.size());
+        assertEquals(Arrays.asList("koin", "kotlin"), names(index.query("ko", null, 2)));
+    }
+
+    @Test
+    public void commit_persistsBatches() throws Exception {
+        final File file = new File(mFolder.getRoot(), "index");
+        GHSearchIndex index = new GHSearchIndex(file, MAX_ROWS);
+        index.add(KOTLIN, sample());
+        index.commit();
+        index.add(KOTLIN, Arrays.asList(item("InsertKoinIO", "koin", 50000)));
+        index.commit();
+        final long committedLength = file.length();
+
+        //Not committed yet, so it's lost
+
+        index.add(KOTLIN, Arrays.asList(item("google", "ksp", 2000)));
+
+        index = new GHSearchIndex(file, MAX_ROWS);
+        assertEquals(5, index.size());
+        assertEquals(50000, index.query("koin", null, 1).get(0).getStarCount());
+        assertEquals(sample().get(2), index.query("okhttp", null, 1).get(0));
+
+        //A batch cut in the middle is dropped, the rest survives
+
+        index.add(KOTLIN, Arrays.asList(item("google", "ksp", 2000)));
+        index.commit();
+        final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.setLength(file.length() - 3);
+        raw.close();
+
+        index = new GHSearchIndex(file, MAX_ROWS);
+        assertEquals(5, index.size());
+        assertTrue(index.query("ksp", null, 1).isEmpty());
+        assertEquals(committedLength, file.length());
+    }
+
+    @Test
+    public void query_isLimitedToLanguages() throws Exception {
+        final File file = new File(mFolder.getRoot(), "index");
+        GHSearchIndex index = new GHSearchIndex(file, MAX_ROWS);
+        index.add(KOTLIN, sample());
+        index.add(JAVA, Arrays.asList(item("square", "javapoet", 10000), item("google", "guava", 48000)));
+        index.commit();
+
+        assertEquals(Arrays.asList("okhttp", "retrofit", "kotlin"), names(index.query("", KOTLIN_ONLY, 3)));
+        assertEquals(Arrays.asList("okhttp", "retrofit"), names(index.query("square", KOTLIN_ONLY, 10)));
+        assertEquals(Arrays.asList("okhttp", "retrofit", "javapoet"), names(index.query("square", null, 10)));
+        assertEquals(Arrays.asList("guava", "javapoet"), names(index.query("", Arrays.asList("JAVA", "scala"), 10)));
+
+        //Languages are read back from disk, a repository seen in another search moves to its language
+
+        index = new GHSearchIndex(file, MAX_ROWS);
+        index.add(JAVA, Arrays.asList(item("square", "okhttp", 43000)));
+        assertEquals(Arrays.asList("retrofit", "kotlin"), names(index.query("", KOTLIN_ONLY, 2)));
+        assertEquals(Arrays.asList("guava", "okhttp"), names(index.query("", Collections.singletonList(JAVA), 2)));
+    }
+
+    @Test
+    public void compaction_keepsMostStarredRows() throws Exception {
+        final File file = new File(mFolder.getRoot(), "index");
+        GHSearchIndex index = new GHSearchIndex(file, 100);
+        final List<GHData.Item> items = new ArrayList<GHData.Item>();
+        for (int i = 0; i < 1500; i++) {
+            items.add(item("user" + (i % 50), "project" + i, i));
+        }
+        index.add(KOTLIN, items);
+        index.commit();
+
+        //More rows than the limit and the slack, so the least starred ones are dropped right away
+
+        assertEquals(100, index.size());
+        assertEquals(Arrays.asList("project1499"), names(index.query("", KOTLIN_ONLY, 1)));
+        assertTrue(index.query("project1399", null, 1).isEmpty());
+
+        index = new GHSearchIndex(file, 100);
+        assertEquals(100, index.size());
+        assertEquals(Arrays.asList("project1400"), names(index.query("project1400", KOTLIN_ONLY, 1)));
+    }
+}
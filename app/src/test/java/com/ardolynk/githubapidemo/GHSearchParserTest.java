@@ -0,0 +1,76 @@
+package com.ardolynk.githubapidemo;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link GHSearchParser} against the fields we display
+ */
+public class GHSearchParserTest {
+
+    @Test
+    public void parse_readsMappedFields() throws Exception {
+        final GHData data = GHSearchParser.parse(new StringReader(SearchPayloads.page(30)));
+        assertEquals(30, data.getItems().size());
+
+        final GHData.Item item = data.getItems().get(4);
+        assertEquals("project-4", item.getProjectName());
+        assertEquals(SearchPayloads.starCount(4), item.getStarCount());
+        assertEquals("https://github.com/owner1/project-4", item.getProjectURL());
+        assertEquals("owner1", item.getOwner().getLogin());
+        assertEquals("https://avatars.githubusercontent.com/u/500001?v=4", item.getOwner().getAvatarLink());
+
+        //Repeating owners are shared
+
+        assertSame(item.getOwner(), data.getItems().get(3).getOwner());
+        assertNotSame(item.getOwner(), data.getItems().get(6).getOwner());
+    }
+
+    @Test
+    public void parse_toleratesNullsAndMissingItems() throws Exception {
+        GHData data = GHSearchParser.parse(new StringReader("{\"total_count\":0,\"items\":[]}"));
+        assertTrue(data.getItems().isEmpty());
+
+        data = GHSearchParser.parse(new StringReader("{\"message\":\"API rate limit exceeded\"}"));
+        assertTrue(data.getItems().isEmpty());
+
+        data = GHSearchParser.parse(new StringReader(
+                "{\"items\":[{\"name\":\"a\",\"owner\":null,\"html_url\":null,\"stargazers_count\":3}]}"));
+        assertEquals("a", data.getItems().get(0).getProjectName());
+        assertNull(data.getItems().get(0).getOwner());
+        assertEquals(3, data.getItems().get(0).getStarCount());
+    }
+
+    @Test
+    public void registeredAdapters_matchReflectiveBinding() throws Exception {
+        final String page = SearchPayloads.page(30);
+        final Gson gson = GHDataAdapters.newGson();
+        final GHData data = gson.fromJson(page, GHData.class);
+        assertEquals(new Gson().fromJson(page, GHData.class), data);
+
+        //Written back with the adapters, the page reads the same
+
+        assertEquals(data, gson.fromJson(gson.toJson(data), GHData.class));
+        assertEquals(data.getItems().get(0), gson.fromJson(gson.toJson(data.getItems().get(0)), GHData.Item.class));
+    }
+
+    @Test
+    public void parse_skipsPadding() throws Exception {
+        final String padded = SearchPayloads.page(30, 0, 30, 1000);
+        assertTrue(padded.length() > SearchPayloads.page(30).length() + 30 * 1000);
+        assertEquals(GHSearchParser.parse(new StringReader(SearchPayloads.page(30))).getItems(),
+                GHSearchParser.parse(new StringReader(padded)).getItems());
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_failsOnTruncatedBody() throws Exception {
+        final String page = SearchPayloads.page(2);
+        GHSearchParser.parse(new StringReader(page.substring(0, page.length() / 2)));
+    }
+}
@@ -0,0 +1,134 @@
+package com.ardolynk.githubapidemo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Builds GitHub repository search payloads of arbitrary size from a recorded item template
+ */
+public class SearchPayloads {
+
+    public final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final static String ITEM_TEMPLATE = readResource("/search_item.json");
+    private final static int TOP_STAR_COUNT = 25000;
+
+    /**
+     * @param count Number of items on the page
+     * @param firstIndex Global index of the first item (used to keep names and star counts unique)
+     * @param totalCount Value of the "total_count" field
+     * @return Search page JSON
+     */
+    public static String page(int count, int firstIndex, int totalCount) {
+        return page(count, firstIndex, totalCount, 0);
+    }
+
+    /**
+     * @param itemPadding Number of bytes added to every item, in a field the app doesn't read
+     * @return Search page JSON, as {@link SearchPayloads#page(int, int, int)} but with padded items
+     */
+    public static String page(int count, int firstIndex, int totalCount, int itemPadding) {
+        final String padding = (itemPadding > 0 ? makePadding(itemPadding) : null);
+        final StringBuilder builder = new StringBuilder(count * (ITEM_TEMPLATE.length() + itemPadding) + 64);
+        builder.append("{\n  \"total_count\": ").append(totalCount)
+                .append(",\n  \"incomplete_results\": false,\n  \"items\": [\n");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(",\n");
+            }
+            final String item = item(firstIndex + i);
+            if (padding != null) {
+
+                //Padding goes first, right after the opening brace
+
+                builder.append("{\"padding\": \"").append(padding).append("\",").append(item, 1, item.length());
+            }
+            else {
+                builder.append(item);
+            }
+        }
+        builder.append("\n  ]\n}\n");
+        return builder.toString();
+    }
+
+    /**
+     * @param endCursor Cursor after the last item (null if there are no items)
+     * @return GraphQL search response JSON with the same items {@link SearchPayloads#page(int, int, int)} has,
+     * with only the fields {@link GHGraphQLRequest} selects
+     */
+    public static String graphQLPage(int count, int firstIndex, int totalCount, String endCursor) {
+        final StringBuilder builder = new StringBuilder(count * 200 + 128);
+        builder.append("{\"data\":{\"search\":{\"repositoryCount\":").append(totalCount)
+                .append(",\"pageInfo\":{\"endCursor\":")
+                .append(endCursor != null ? "\"" + endCursor + "\"" : "null")
+                .append("},\"nodes\":[");
+        for (int i = 0; i < count; i++) {
+            final int index = firstIndex + i;
+            final int ownerIndex = index / 3;
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"name\":\"project-").append(index)
+                    .append("\",\"stargazerCount\":").append(starCount(index))
+                    .append(",\"url\":\"https://github.com/owner").append(ownerIndex).append("/project-").append(index)
+                    .append("\",\"owner\":{\"login\":\"owner").append(ownerIndex)
+                    .append("\",\"avatarUrl\":\"https://avatars.githubusercontent.com/u/").append(500000 + ownerIndex)
+                    .append("?v=4\"}}");
+        }
+        builder.append("]}}}");
+        return builder.toString();
+    }
+
+    public static String page(int count) {
+        return page(count, 0, count);
+    }
+
+    public static byte[] pageBytes(int count) {
+        return page(count).getBytes(UTF8);
+    }
+
+    /**
+     * Single search item; owners repeat every few rows like they do in real results
+     */
+    public static String item(int index) {
+        final int ownerIndex = index / 3;
+        return ITEM_TEMPLATE
+                .replace("${ID}", String.valueOf(1000000 + index))
+                .replace("${NAME}", "project-" + index)
+                .replace("${LOGIN}", "owner" + ownerIndex)
+                .replace("${OWNER_ID}", String.valueOf(500000 + ownerIndex))
+                .replace("${STARS}", String.valueOf(starCount(index)));
+    }
+
+    public static int starCount(int index) {
+        return Math.max(0, TOP_STAR_COUNT - index * 7);
+    }
+
+    private static String makePadding(int length) {
+        final char[] padding = new char[length];
+        Arrays.fill(padding, 'x');
+        return new String(padding);
+    }
+
+    private static String readResource(String name) {
+        final InputStream stream = SearchPayloads.class.getResourceAsStream(name);
+        if (stream == null) {
+            throw new IllegalStateException("Missing test resource " + name);
+        }
+        try {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[4096];
+            int read;
+            while ((read = stream.read(chunk)) > 0) {
+                buffer.write(chunk, 0, read);
+            }
+            stream.close();
+            return new String(buffer.toByteArray(), UTF8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
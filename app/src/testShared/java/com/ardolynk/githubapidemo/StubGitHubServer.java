@@ -0,0 +1,519 @@
+package com.ardolynk.githubapidemo;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Minimal HTTP server imitating the GitHub repository search endpoint</p>
+ * <p>Serves {@link SearchPayloads} pages and enforces a rate limit the way GitHub does:
+ * every response carries <code>X-RateLimit-*</code> headers, and requests over the limit get
+ * 403 with zero remaining until the window resets</p>
+ * <p>Search pages carry an ETag of their content, and a request with a matching <code>If-None-Match</code>
+ * gets "304 Not Modified" without a body. Like on GitHub, such a request doesn't count against the limit</p>
+ * <p>Like GitHub, it gives only the first {@link GHPage#MAX_SEARCH_RESULTS} results of a search (deeper
+ * pages get 422), and it takes a <code>stars:&lt;=N</code> qualifier to search a star range</p>
+ * <p>The same search is served by the GraphQL endpoint (<code>POST /graphql</code>, see
+ * {@link GHGraphQLRequest}), with search cursors made like GitHub makes them. Request bodies are
+ * expected to be ASCII</p>
+ * <p>It also serves avatars (<code>/u/ID</code> paths, out of the rate limit) once it's given an image.
+ * Network conditions are imitated by a latency before every response and a bandwidth limit of bodies,
+ * and payloads may be padded to a size of real ones. Connections are served in parallel, and bytes
+ * of response bodies are counted</p>
+ */
+public class StubGitHubServer {
+
+    private final static long SECOND = 1000;
+    private final static Pattern MAX_STARS = Pattern.compile("stars:<=(\\d+)");
+    private final static String GRAPHQL_PATH = "/graphql";
+    private final static String CONTENT_LENGTH = "content-length:";
+    private final static String IF_NONE_MATCH = "if-none-match:";
+    private final static String CURSOR_PREFIX = "cursor:";
+    private final static String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private final static String AVATAR_PATH = "/u/";
+    private final static String JSON_TYPE = "application/json; charset=utf-8";
+    private final static String AVATAR_TYPE = "image/png";
+    private final static int BANDWIDTH_CHUNKS_PER_SECOND = 20;
+    private final static long STOP_TIMEOUT_SEC = 5;
+
+    private final GHRateLimiter.Clock mClock;
+    private final int mLimit;
+    private final long mWindow;
+    private final int mTotalCount;
+    private ServerSocket mSocket;
+    private Thread mThread;
+    private ExecutorService mExecutor;
+    private long mLatency;
+    private int mBandwidth;
+    private int mItemPadding;
+    private byte[] mAvatar;
+    private long mSearchBytes;
+    private long mAvatarBytes;
+    private int mAvatarCount;
+    private long mResetTime;
+    private int mRemaining;
+    private int mRequestCount;
+    private int mRejectedCount;
+    private int mNotModifiedCount;
+
+    /**
+     * @param clock Clock to run the limit window on
+     * @param limit Number of requests allowed per window
+     * @param window Limit window in milliseconds (whole seconds)
+     * @param totalCount Total number of search results
+     */
+    public StubGitHubServer(GHRateLimiter.Clock clock, int limit, long window, int totalCount) {
+        mClock = clock;
+        mLimit = limit;
+        mWindow = window;
+        mTotalCount = totalCount;
+    }
+
+    public void start() throws IOException {
+        mSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor = Executors.newCachedThreadPool();
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mSocket.isClosed()) {
+                    try {
+                        final Socket socket = mSocket.accept();
+                        mExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    serve(socket);
+                                } catch (IOException e) {
+
+                                    //Client went away
+
+                                } catch (InterruptedException e) {
+
+                                    //Stopped
+
+                                }
+                            }
+                        });
+                    } catch (IOException e) {
+
+                        //Closed
+
+                    }
+                }
+            }
+        }, "StubGitHubServer");
+        mThread.start();
+    }
+
+    public void stop() throws IOException, InterruptedException {
+        mSocket.close();
+        mThread.join();
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(STOP_TIMEOUT_SEC, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param latency Delay before every response in milliseconds
+     */
+    public synchronized void setLatency(long latency) {
+        mLatency = latency;
+    }
+
+    /**
+     * @param bandwidth Response body bytes sent per second of every connection, or 0 for no limit
+     */
+    public synchronized void setBandwidth(int bandwidth) {
+        mBandwidth = bandwidth;
+    }
+
+    /**
+     * @param itemPadding Number of bytes added to every search item (in a field nobody reads)
+     */
+    public synchronized void setItemPadding(int itemPadding) {
+        mItemPadding = itemPadding;
+    }
+
+    /**
+     * @param avatar PNG image served for every avatar, or null to answer avatar requests with 404
+     */
+    public synchronized void setAvatar(byte[] avatar) {
+        mAvatar = avatar;
+    }
+
+    /**
+     * Uses up the rate limit of the current window, like other clients of the same token would.
+     * Search requests get 403 with zero remaining until the window resets
+     *
+     * @param resetIn Time to the window reset in milliseconds (rounded up to whole seconds)
+     */
+    public synchronized void exhaustRateLimit(long resetIn) {
+        mResetTime = (mClock.now() + resetIn + SECOND - 1) / SECOND * SECOND;
+        mRemaining = 0;
+    }
+
+    /**
+     * @return Base URL of the server, e.g. http://127.0.0.1:12345
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + mSocket.getLocalPort();
+    }
+
+    /**
+     * Sends a request to the server, a GET one if there's no body
+     *
+     * @param path Path of an API URL, e.g. from {@link GHPageKey#getUrl()} with the API host cut off
+     * @return Response body bytes
+     * @throws IOException If the request failed or the status is not 200
+     */
+    public byte[] request(String path, String body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(getUrl() + path).openConnection();
+        try {
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                final OutputStream output = connection.getOutputStream();
+                output.write(body.getBytes(SearchPayloads.UTF8));
+                output.close();
+            }
+            if (connection.getResponseCode() != 200) {
+                throw new IOException("HTTP " + connection.getResponseCode());
+            }
+            final InputStream input = connection.getInputStream();
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final byte[] chunk = new byte[4096];
+            int read;
+            while ((read = input.read(chunk)) > 0) {
+                buffer.write(chunk, 0, read);
+            }
+            input.close();
+            return buffer.toByteArray();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public synchronized int getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * @return Number of requests rejected due to the rate limit
+     */
+    public synchronized int getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    /**
+     * @return Number of conditional search requests answered with "304 Not Modified"
+     */
+    public synchronized int getNotModifiedCount() {
+        return mNotModifiedCount;
+    }
+
+    /**
+     * @return Number of response body bytes of search requests (including rejected ones)
+     */
+    public synchronized long getSearchBytes() {
+        return mSearchBytes;
+    }
+
+    /**
+     * @return Number of response body bytes of avatar requests
+     */
+    public synchronized long getAvatarBytes() {
+        return mAvatarBytes;
+    }
+
+    /**
+     * @return Number of avatar requests
+     */
+    public synchronized int getAvatarCount() {
+        return mAvatarCount;
+    }
+
+    private void serve(Socket socket) throws IOException, InterruptedException {
+        try {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    SearchPayloads.UTF8));
+            final String requestLine = reader.readLine();
+            int contentLength = 0;
+            String ifNoneMatch = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+
+                //Only the body length and the ETag to revalidate are needed of request headers
+
+                if (line.toLowerCase().startsWith(CONTENT_LENGTH)) {
+                    contentLength = Integer.parseInt(line.substring(CONTENT_LENGTH.length()).trim());
+                }
+                else if (line.toLowerCase().startsWith(IF_NONE_MATCH)) {
+                    ifNoneMatch = line.substring(IF_NONE_MATCH.length()).trim();
+                }
+            }
+            if (requestLine == null) {
+                return;
+            }
+            final char[] body = new char[contentLength];
+            int read = 0;
+            while (read < contentLength) {
+                final int count = reader.read(body, read, contentLength - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            final String path = requestLine.split(" ")[1];
+            respond(socket.getOutputStream(), path, new String(body, 0, read), ifNoneMatch);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void respond(OutputStream output, String path, String requestBody, String ifNoneMatch)
+            throws IOException, InterruptedException {
+        if (path.startsWith(AVATAR_PATH)) {
+            respondAvatar(output);
+            return;
+        }
+        int status;
+        String body;
+        final StringBuilder headers = new StringBuilder();
+        final long latency;
+        final int bandwidth;
+        synchronized (this) {
+            latency = mLatency;
+            bandwidth = mBandwidth;
+            mRequestCount++;
+            final long now = mClock.now();
+            if (now >= mResetTime) {
+                mResetTime = (now / SECOND) * SECOND + mWindow;
+                mRemaining = mLimit;
+            }
+            final int perPage = getIntParameter(path, "per_page", 30);
+            final int page = getIntParameter(path, "page", 1);
+            final int first = (page - 1) * perPage;
+            if (mRemaining > 0 && path.startsWith(GRAPHQL_PATH)) {
+                mRemaining--;
+                status = 200;
+                body = getGraphQLPage(requestBody);
+            }
+            else if (mRemaining > 0 && first >= GHPage.MAX_SEARCH_RESULTS) {
+                mRemaining--;
+                status = 422;
+                body = "{\"message\": \"Only the first 1000 search results are available\"}";
+            }
+            else if (mRemaining > 0) {
+                status = 200;
+
+                //Star counts of results go down, so results of a star range are the ones after some index
+
+                final int rangeStart = getRangeStart(getParameter(path, "q"));
+                final int rangeCount = mTotalCount - rangeStart;
+                final int count = Math.max(0, Math.min(perPage, Math.min(rangeCount, GHPage.MAX_SEARCH_RESULTS) - first));
+                body = SearchPayloads.page(count, rangeStart + first, rangeCount, mItemPadding);
+                final String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+                headers.append("ETag: ").append(etag).append("\r\n");
+                if (etag.equals(ifNoneMatch)) {
+                    mNotModifiedCount++;
+                    status = 304;
+                    body = "";
+                }
+                else {
+                    mRemaining--;
+                }
+            }
+            else {
+                mRejectedCount++;
+                status = 403;
+                body = "{\"message\": \"API rate limit exceeded\"}";
+            }
+            headers.append(GHRateLimiter.HEADER_LIMIT).append(": ").append(mLimit).append("\r\n")
+                    .append(GHRateLimiter.HEADER_REMAINING).append(": ").append(mRemaining).append("\r\n")
+                    .append(GHRateLimiter.HEADER_RESET).append(": ").append(mResetTime / SECOND).append("\r\n");
+        }
+        final byte[] data = body.getBytes(SearchPayloads.UTF8);
+        synchronized (this) {
+            mSearchBytes += data.length;
+        }
+        final String reason = (status == 200 ? " OK" : status == 304 ? " Not Modified"
+                : status == 422 ? " Unprocessable Entity" : " Forbidden");
+        write(output, status + reason, JSON_TYPE, headers.toString(), data, latency, bandwidth);
+    }
+
+    private void respondAvatar(OutputStream output) throws IOException, InterruptedException {
+        final byte[] avatar;
+        final long latency;
+        final int bandwidth;
+        synchronized (this) {
+            avatar = mAvatar;
+            latency = mLatency;
+            bandwidth = mBandwidth;
+            mAvatarCount++;
+            mAvatarBytes += (avatar != null ? avatar.length : 0);
+        }
+        if (avatar == null) {
+            write(output, "404 Not Found", AVATAR_TYPE, "", new byte[0], latency, bandwidth);
+        }
+        else {
+            write(output, "200 OK", AVATAR_TYPE, "", avatar, latency, bandwidth);
+        }
+    }
+
+    /**
+     * Writes a response after the latency, the body goes in chunks paced by the bandwidth
+     */
+    private static void write(OutputStream output, String status, String contentType, String headers,
+                              byte[] data, long latency, int bandwidth) throws IOException, InterruptedException {
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+        final String head = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + data.length + "\r\n"
+                + "Connection: close\r\n"
+                + headers + "\r\n";
+        output.write(head.getBytes(SearchPayloads.UTF8));
+        if (bandwidth <= 0) {
+            output.write(data);
+        }
+        else {
+            final int chunkSize = Math.max(1, bandwidth / BANDWIDTH_CHUNKS_PER_SECOND);
+            for (int offset = 0; offset < data.length; offset += chunkSize) {
+                output.write(data, offset, Math.min(chunkSize, data.length - offset));
+                output.flush();
+                Thread.sleep(SECOND / BANDWIDTH_CHUNKS_PER_SECOND);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * @return GraphQL search response for the request body, the search goes on after the cursor given
+     */
+    private String getGraphQLPage(String requestBody) {
+        final JsonObject variables = new JsonParser().parse(requestBody).getAsJsonObject().getAsJsonObject("variables");
+        final JsonElement after = variables.get("after");
+        final int offset = (after != null && !after.isJsonNull() ? decodeCursor(after.getAsString()) : 0);
+        final int rangeStart = getRangeStart(variables.get("q").getAsString());
+        final int rangeCount = mTotalCount - rangeStart;
+        final int count = Math.max(0, Math.min(variables.get("first").getAsInt(),
+                Math.min(rangeCount, GHPage.MAX_SEARCH_RESULTS) - offset));
+        final String endCursor = (count > 0 ? makeCursor(offset + count)
+                : after != null && !after.isJsonNull() ? after.getAsString() : null);
+        return SearchPayloads.graphQLPage(count, rangeStart + offset, rangeCount, endCursor);
+    }
+
+    /**
+     * @return Cursor of the row at the offset, made the way search cursors of the API are
+     * (base64 of "cursor:" followed by the row count). Clients take it as opaque
+     */
+    public static String makeCursor(int offset) {
+        final byte[] bytes = (CURSOR_PREFIX + offset).getBytes(SearchPayloads.UTF8);
+        final StringBuilder cursor = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int i = 0; i < bytes.length; i += 3) {
+            final int chunk = ((bytes[i] & 0xff) << 16)
+                    | (i + 1 < bytes.length ? (bytes[i + 1] & 0xff) << 8 : 0)
+                    | (i + 2 < bytes.length ? bytes[i + 2] & 0xff : 0);
+            cursor.append(BASE64.charAt((chunk >> 18) & 0x3f)).append(BASE64.charAt((chunk >> 12) & 0x3f))
+                    .append(i + 1 < bytes.length ? BASE64.charAt((chunk >> 6) & 0x3f) : '=')
+                    .append(i + 2 < bytes.length ? BASE64.charAt(chunk & 0x3f) : '=');
+        }
+        return cursor.toString();
+    }
+
+    /**
+     * @return Number of rows before the one after the cursor
+     */
+    private static int decodeCursor(String cursor) {
+        final StringBuilder decoded = new StringBuilder();
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < cursor.length() && cursor.charAt(i) != '='; i++) {
+            bits = (bits << 6) | BASE64.indexOf(cursor.charAt(i));
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                decoded.append((char) ((bits >> bitCount) & 0xff));
+            }
+        }
+        if (!decoded.toString().startsWith(CURSOR_PREFIX)) {
+            throw new IllegalArgumentException("Bad cursor " + cursor);
+        }
+        return Integer.parseInt(decoded.substring(CURSOR_PREFIX.length()));
+    }
+
+    /**
+     * @return Index of the first result within the star range of the query (zero if there's no range)
+     */
+    private int getRangeStart(String query) {
+        final Matcher matcher = MAX_STARS.matcher(query != null ? query : "");
+        if (!matcher.find()) {
+            return 0;
+        }
+        final int maxStars = Integer.parseInt(matcher.group(1));
+        int low = 0;
+        int high = mTotalCount;
+        while (low < high) {
+            final int middle = (low + high) / 2;
+            if (SearchPayloads.starCount(middle) <= maxStars) {
+                high = middle;
+            }
+            else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static int getIntParameter(String path, String name, int defaultValue) {
+        final String value = getParameter(path, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return Decoded query parameter, or null if there's none
+     */
+    private static String getParameter(String path, String name) {
+        final int queryStart = path.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+        for (String parameter : path.substring(queryStart + 1).split("&")) {
+            final int separator = parameter.indexOf('=');
+            if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                try {
+                    return URLDecoder.decode(parameter.substring(separator + 1), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
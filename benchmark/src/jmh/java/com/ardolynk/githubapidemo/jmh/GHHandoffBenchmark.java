@@ -0,0 +1,65 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHItemCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Page round trip through a byte stream</p>
+ * <p>{@link java.io.Serializable} is the way pages were handed to the activity in a result
+ * <code>Bundle</code>, {@link GHItemCodec} is the encoding of the page cache, the search
+ * index and the list snapshot</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHHandoffBenchmark {
+
+    @Param({"30", "100", "1000"})
+    public int mItemCount;
+
+    private ArrayList<GHData.Item> mItems;
+
+    @Setup
+    public void setUp() throws IOException {
+        mItems = new ArrayList<GHData.Item>(GHPayloads.items(mItemCount, 0));
+    }
+
+    @Benchmark
+    public Object serializableRoundTrip() throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final ObjectOutputStream output = new ObjectOutputStream(buffer);
+        output.writeObject(mItems);
+        output.close();
+        final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        return input.readObject();
+    }
+
+    @Benchmark
+    public List<GHData.Item> itemCodecRoundTrip() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(buffer);
+        GHItemCodec.write(output, mItems);
+        output.close();
+        return GHItemCodec.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+}
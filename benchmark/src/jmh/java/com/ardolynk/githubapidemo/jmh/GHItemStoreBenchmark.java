@@ -0,0 +1,63 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHItemStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Heap footprint of loaded rows: {@link GHItemStore} against the list of items the adapter used to keep</p>
+ * <p>Both benchmarks build the rows from parsed items, so bytes allocated per operation
+ * (<code>gc.alloc.rate.norm</code>) are the footprint of the rows. For the list it's exactly what's kept,
+ * every item having strings of its own as parsed. For the store it's an upper bound, as it includes
+ * arrays outgrown and UTF-8 bytes of strings encoded on the way</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHItemStoreBenchmark {
+
+    @Param({"10000"})
+    public int mItemCount;
+
+    private List<GHData.Item> mItems;
+
+    @Setup
+    public void setUp() throws IOException {
+        mItems = GHPayloads.items(mItemCount, 0);
+    }
+
+    @Benchmark
+    public List<GHData.Item> itemList() {
+        final List<GHData.Item> list = new ArrayList<GHData.Item>();
+        for (GHData.Item source : mItems) {
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName(new String(source.getProjectName()));
+            item.setStarCount(source.getStarCount());
+            item.setProjectURL(new String(source.getProjectURL()));
+            item.setOwner(new GHData.Item.Owner(new String(source.getOwner().getLogin()),
+                    new String(source.getOwner().getAvatarLink())));
+            list.add(item);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public GHItemStore itemStore() {
+        final GHItemStore store = new GHItemStore();
+        store.addAll(mItems);
+        return store;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHItemStore;
+import com.ardolynk.githubapidemo.GHListDiff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>List merges done by <code>GHListAdapter.populateData</code>, on the adapter's {@link GHItemStore}</p>
+ * <p>Shown list of the given size gets a page appended (next page loaded), a page replaced
+ * (revalidated page delivered), or all rows merged by a diff (pull-to-refresh)</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHListMergeBenchmark {
+
+    private final static int PER_PAGE = 30;
+
+    @Param({"30", "100", "1000"})
+    public int mItemCount;
+
+    private List<GHData.Item> mShown;
+    private List<GHData.Item> mNextPage;
+    private List<GHData.Item> mRefreshed;
+    private GHItemStore mStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        mShown = GHPayloads.items(mItemCount, 0);
+        mNextPage = GHPayloads.items(PER_PAGE, mItemCount);
+
+        //Refreshed list: the top rows swapped and a few star counts changed
+
+        final ArrayList<GHData.Item> refreshed = new ArrayList<GHData.Item>(GHPayloads.items(mItemCount, 0));
+        if (refreshed.size() > 1) {
+            refreshed.add(0, refreshed.remove(1));
+        }
+        for (int i = 0; i < refreshed.size(); i += 10) {
+            refreshed.get(i).setStarCount(refreshed.get(i).getStarCount() + 1);
+        }
+        mRefreshed = refreshed;
+    }
+
+    @Setup(Level.Invocation)
+    public void fillStore() {
+        mStore = new GHItemStore();
+        mStore.addAll(mShown);
+    }
+
+    @Benchmark
+    public GHItemStore appendPage() {
+        mStore.addAll(mNextPage);
+        return mStore;
+    }
+
+    @Benchmark
+    public GHItemStore replacePage() {
+        mStore.replace(0, Math.min(PER_PAGE, mStore.size()), mNextPage);
+        return mStore;
+    }
+
+    @Benchmark
+    public GHItemStore refreshMerge() {
+        final GHListDiff diff = GHListDiff.compute(mStore, mRefreshed);
+        mStore.apply(diff, mRefreshed);
+        return mStore;
+    }
+}
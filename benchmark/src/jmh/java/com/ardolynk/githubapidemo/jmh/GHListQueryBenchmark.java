@@ -0,0 +1,78 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHItemStore;
+import com.ardolynk.githubapidemo.GHListQuery;
+import com.ardolynk.githubapidemo.SearchPayloads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>In-memory sort and filter of loaded rows by {@link GHListQuery}</p>
+ * <p>Shown list of the given size gets a page appended while sorted (the page is indexed and merged),
+ * or gets the order or a filter changed from the menu</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHListQueryBenchmark {
+
+    private final static int PER_PAGE = 100;
+    private final static GHListQuery.Order[] ORDERS = GHListQuery.Order.values();
+
+    @Param({"1000", "5000"})
+    public int mItemCount;
+
+    private List<GHData.Item> mShown;
+    private List<GHData.Item> mNextPage;
+    private GHItemStore mStore;
+    private GHListQuery mQuery;
+    private int mChange;
+
+    @Setup
+    public void setUp() throws IOException {
+        mShown = GHPayloads.items(mItemCount, 0);
+        mNextPage = GHPayloads.items(PER_PAGE, mItemCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillStore() {
+        mStore = new GHItemStore();
+        mStore.addAll(mShown);
+        mQuery = new GHListQuery(mStore);
+        mQuery.setOrder(GHListQuery.Order.OWNER);
+        mQuery.size();
+    }
+
+    @Benchmark
+    public int appendPage() {
+        mStore.addAll(mNextPage);
+        return mQuery.size();
+    }
+
+    @Benchmark
+    public int changeOrder() {
+        mQuery.setOrder(ORDERS[mChange++ % ORDERS.length]);
+        return mQuery.size();
+    }
+
+    @Benchmark
+    public int changeFilters() {
+        mChange++;
+        mQuery.setMinStars(mChange % 2 == 0 ? GHListQuery.NO_MIN_STARS : SearchPayloads.starCount(mItemCount / 2));
+        mQuery.setText(mChange % 3 == 0 ? null : "project-1");
+        return mQuery.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHMetrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cost of timing a pipeline stage with {@link GHMetrics}, it's to stay negligible next to
+ * any stage measured (a row bind takes tens of microseconds)</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GHMetricsBenchmark {
+
+    private final GHMetrics.Histogram mHistogram = new GHMetrics().histogram("stage");
+
+    @Benchmark
+    public GHMetrics.Histogram timedStage() {
+        mHistogram.stop(GHMetrics.Histogram.start());
+        return mHistogram;
+    }
+}
@@ -0,0 +1,74 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHDataAdapters;
+import com.ardolynk.githubapidemo.GHGraphQLParser;
+import com.ardolynk.githubapidemo.GHSearchParser;
+import com.ardolynk.githubapidemo.SearchPayloads;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Search page parsing throughput, and bytes allocated per page parsed (<code>gc.alloc.rate.norm</code>
+ * of the GC profiler the benchmarks run with)</p>
+ * <p>Compares the reflective binding the app used to do (response body as {@link String},
+ * then <code>mGson.fromJson(response, GHData.class)</code>) with {@link Gson} using the
+ * registered {@link GHDataAdapters}, and with {@link GHSearchParser} reading the body bytes.
+ * {@link GHGraphQLParser} reads a GraphQL response with the same items and only the fields shown</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GHParseBenchmark {
+
+    @Param({"30", "100", "1000"})
+    public int mItemCount;
+
+    private byte[] mBody;
+    private byte[] mGraphQLBody;
+    private String mResponse;
+    private Gson mReflectiveGson;
+    private Gson mAdapterGson;
+
+    @Setup
+    public void setUp() throws IOException {
+        mBody = SearchPayloads.pageBytes(mItemCount);
+        mResponse = new String(mBody, "UTF-8");
+        mGraphQLBody = SearchPayloads.graphQLPage(mItemCount, 0, mItemCount, null).getBytes(SearchPayloads.UTF8);
+        mReflectiveGson = new Gson();
+        mAdapterGson = GHDataAdapters.newGson();
+    }
+
+    @Benchmark
+    public GHData reflectiveGson() {
+        return mReflectiveGson.fromJson(mResponse, GHData.class);
+    }
+
+    @Benchmark
+    public GHData registeredAdapters() {
+        return mAdapterGson.fromJson(mResponse, GHData.class);
+    }
+
+    @Benchmark
+    public GHData streamingParser() throws IOException {
+        return GHSearchParser.parse(new InputStreamReader(new ByteArrayInputStream(mBody), "UTF-8"));
+    }
+
+    @Benchmark
+    public GHData graphQLParser() throws IOException {
+        return GHGraphQLParser.parse(new InputStreamReader(new ByteArrayInputStream(mGraphQLBody), "UTF-8"));
+    }
+}
@@ -0,0 +1,27 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHSearchParser;
+import com.ardolynk.githubapidemo.SearchPayloads;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Parsed search payloads for benchmarks working on items
+ */
+class GHPayloads {
+
+    private final static int TOTAL_COUNT = 10000;
+
+    private GHPayloads() {}
+
+    /**
+     * @param count Number of items
+     * @param firstIndex Index of the first item in the whole result list
+     */
+    static List<GHData.Item> items(int count, int firstIndex) throws IOException {
+        return GHSearchParser.parse(new StringReader(SearchPayloads.page(count, firstIndex, TOTAL_COUNT))).getItems();
+    }
+}
@@ -0,0 +1,95 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHSearchIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link GHSearchIndex} query latency with 10k to 100k indexed repositories</p>
+ * <p>Repositories are named with a few random words, owners have several repositories each</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHSearchIndexBenchmark {
+
+    private final static int PAGE_SIZE = 30;
+    private final static String LANGUAGE = "Kotlin";
+    private final static List<String> LANGUAGES = Collections.singletonList(LANGUAGE);
+    private final static String[] WORDS = {
+            "kotlin", "android", "coroutines", "flow", "compose", "ui", "network", "http", "client", "server",
+            "json", "parser", "image", "loader", "cache", "database", "sql", "orm", "test", "mock",
+            "awesome", "sample", "demo", "app", "library", "plugin", "gradle", "dsl", "multiplatform", "ktor",
+            "reactive", "rx", "arrow", "functional", "game", "engine", "chart", "view", "layout", "animation",
+            "camera", "media", "player", "auth", "security", "crypto", "date", "time", "logger", "utils"};
+
+    @Param({"10000", "30000", "100000"})
+    public int mItemCount;
+
+    @Param({"kot", "android", "coroutines flow", "net", "awesome ui", "user12"})
+    public String mQuery;
+
+    private File mFile;
+    private GHSearchIndex mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("index", null);
+        mIndex = new GHSearchIndex(mFile, mItemCount);
+        final List<GHData.Item> items = generate(mItemCount, mItemCount);
+        for (int first = 0; first < mItemCount; first += PAGE_SIZE) {
+            mIndex.add(LANGUAGE, items.subList(first, Math.min(mItemCount, first + PAGE_SIZE)));
+        }
+        mIndex.commit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public List<GHData.Item> query() {
+        return mIndex.query(mQuery, LANGUAGES, PAGE_SIZE);
+    }
+
+    private static List<GHData.Item> generate(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<GHData.Item> items = new ArrayList<GHData.Item>(count);
+        for (int i = 0; i < count; i++) {
+            final StringBuilder name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            final int wordCount = random.nextInt(3);
+            for (int j = 0; j < wordCount; j++) {
+                name.append(random.nextBoolean() ? '-' : '.').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            name.append(i);
+            final int ownerNum = random.nextInt(count / 4 + 1);
+            final GHData.Item.Owner owner = new GHData.Item.Owner("user" + ownerNum,
+                    "https://avatars.githubusercontent.com/u/" + ownerNum + "?v=4");
+            final GHData.Item item = new GHData.Item();
+            item.setProjectName(name.toString());
+            item.setStarCount(random.nextInt(50000));
+            item.setProjectURL("https://github.com/" + owner.getLogin() + "/" + item.getProjectName());
+            item.setOwner(owner);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,51 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHListSnapshot;
+import com.ardolynk.githubapidemo.GHPagePlan;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Reading the list saved on the previous run, it's done before the first frame on launch</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHSnapshotBenchmark {
+
+    private final static int PER_PAGE = 30;
+
+    @Param({"30", "60", "300"})
+    public int mItemCount;
+
+    private File mFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("list", ".snapshot");
+        new GHListSnapshot(GHPayloads.items(mItemCount, 0), mItemCount / PER_PAGE, true, "",
+                new GHPagePlan(PER_PAGE, PER_PAGE)).write(mFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public GHListSnapshot read() {
+        return GHListSnapshot.read(mFile);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHData;
+import com.ardolynk.githubapidemo.GHGraphQLParser;
+import com.ardolynk.githubapidemo.GHSearchParser;
+import com.ardolynk.githubapidemo.SearchPayloads;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Compares the REST search with the GraphQL one on 100 rows, as <code>StubGitHubServer</code> serves
+ * them: parse time per 100 rows, and response bytes per 100 rows reported as the
+ * <code>bytesPer100Rows</code> secondary result</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GHTransportBenchmark {
+
+    private final static int ROW_COUNT = 100;
+    private final static int TOTAL_COUNT = 5000;
+
+    //End cursor of the page as the stub makes it (base64 of "cursor:100")
+
+    private final static String END_CURSOR = "Y3Vyc29yOjEwMA==";
+
+    /**
+     * Response size of the page parsed, it's set rather than added up, so it's the same whatever
+     * the number of operations is
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Transferred {
+        public long bytesPer100Rows;
+    }
+
+    private byte[] mRestBody;
+    private byte[] mGraphQLBody;
+
+    @Setup
+    public void setUp() {
+        mRestBody = SearchPayloads.page(ROW_COUNT, 0, TOTAL_COUNT).getBytes(SearchPayloads.UTF8);
+        mGraphQLBody = SearchPayloads.graphQLPage(ROW_COUNT, 0, TOTAL_COUNT, END_CURSOR).getBytes(SearchPayloads.UTF8);
+    }
+
+    @Benchmark
+    public GHData rest(Transferred transferred) throws IOException {
+        transferred.bytesPer100Rows = mRestBody.length;
+        return GHSearchParser.parse(new InputStreamReader(new ByteArrayInputStream(mRestBody), "UTF-8"));
+    }
+
+    @Benchmark
+    public GHData graphQL(Transferred transferred) throws IOException {
+        transferred.bytesPer100Rows = mGraphQLBody.length;
+        return GHGraphQLParser.parse(new InputStreamReader(new ByteArrayInputStream(mGraphQLBody), "UTF-8"));
+    }
+}
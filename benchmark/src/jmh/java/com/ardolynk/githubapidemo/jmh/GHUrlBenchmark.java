@@ -0,0 +1,46 @@
+package com.ardolynk.githubapidemo.jmh;
+
+import com.ardolynk.githubapidemo.GHPageKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Page URL construction</p>
+ * <p>Compares <code>String.format</code> with <code>URLEncoder</code> (the way the URL was built
+ * in <code>processLoadingList</code>) with {@link GHPageKey#getUrl()}</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GHUrlBenchmark {
+
+    private final static String URL_TEMPLATE = "https://api.github.com/search/repositories?q=%s%%20language:Kotlin&sort=stars&order=desc&page=%d&per_page=%d";
+    private final static int PER_PAGE = 30;
+
+    @Param({"", "coroutines", "android gradle plugin"})
+    public String mSearchString;
+
+    private int mPage;
+
+    @Benchmark
+    public String formattedUrl() throws UnsupportedEncodingException {
+        mPage = (mPage % 30) + 1;
+        return String.format(URL_TEMPLATE, URLEncoder.encode(mSearchString, "UTF-8"), mPage, PER_PAGE);
+    }
+
+    @Benchmark
+    public String pageKeyUrl() {
+        mPage = (mPage % 30) + 1;
+        return new GHPageKey(mSearchString, "Kotlin", mPage, PER_PAGE).getUrl();
+    }
+}